@@ -0,0 +1,158 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import io.scif.util.FormatTools;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Accumulates the global minimum and maximum of each channel of an image,
+ * incrementally, as its raw pixel bytes stream past.
+ * <p>
+ * {@link OMEROFormat.Writer} feeds each plane through here while uploading,
+ * so that the statistics are known as soon as the upload completes.
+ * </p>
+ */
+public class ChannelStats {
+
+	private final int pixelType;
+	private final double[] min;
+	private final double[] max;
+
+	/**
+	 * @param channelCount Number of channels of the image.
+	 * @param pixelType Pixel type of the image, as a {@link FormatTools}
+	 *          constant.
+	 */
+	public ChannelStats(final int channelCount, final int pixelType) {
+		this.pixelType = pixelType;
+		min = new double[channelCount];
+		max = new double[channelCount];
+		Arrays.fill(min, Double.POSITIVE_INFINITY);
+		Arrays.fill(max, Double.NEGATIVE_INFINITY);
+	}
+
+	// -- ChannelStats methods --
+
+	/** Gets the number of channels. */
+	public int getChannelCount() {
+		return min.length;
+	}
+
+	/** Gets whether any pixels of the given channel have been seen. */
+	public boolean has(final int channel) {
+		return min[channel] <= max[channel];
+	}
+
+	/** Gets the minimum of the given channel, or +Infinity if none seen. */
+	public double getMin(final int channel) {
+		return min[channel];
+	}
+
+	/** Gets the maximum of the given channel, or -Infinity if none seen. */
+	public double getMax(final int channel) {
+		return max[channel];
+	}
+
+	/**
+	 * Includes the given pixel bytes in the statistics of the given channel.
+	 *
+	 * @param length Number of bytes; a multiple of the pixel size.
+	 * @param littleEndian Byte order of the pixels.
+	 */
+	public void add(final int channel, final byte[] bytes, final int offset,
+		final int length, final boolean littleEndian)
+	{
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length).slice()
+			.order(littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+		double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY;
+		switch (pixelType) {
+			case FormatTools.INT8:
+				for (int i = 0; i < length; i++) {
+					final byte v = buffer.get(i);
+					if (v < lo) lo = v;
+					if (v > hi) hi = v;
+				}
+				break;
+			case FormatTools.UINT8:
+			case FormatTools.BIT:
+				for (int i = 0; i < length; i++) {
+					final int v = buffer.get(i) & 0xff;
+					if (v < lo) lo = v;
+					if (v > hi) hi = v;
+				}
+				break;
+			case FormatTools.INT16:
+			case FormatTools.UINT16: {
+				final int mask = pixelType == FormatTools.UINT16 ? 0xffff : -1;
+				for (int i = 0; i < length / 2; i++) {
+					final int v = buffer.getShort(2 * i) & mask;
+					if (v < lo) lo = v;
+					if (v > hi) hi = v;
+				}
+				break;
+			}
+			case FormatTools.INT32:
+				for (int i = 0; i < length / 4; i++) {
+					final int v = buffer.getInt(4 * i);
+					if (v < lo) lo = v;
+					if (v > hi) hi = v;
+				}
+				break;
+			case FormatTools.UINT32:
+				for (int i = 0; i < length / 4; i++) {
+					final long v = buffer.getInt(4 * i) & 0xffffffffL;
+					if (v < lo) lo = v;
+					if (v > hi) hi = v;
+				}
+				break;
+			case FormatTools.FLOAT:
+				for (int i = 0; i < length / 4; i++) {
+					final float v = buffer.getFloat(4 * i);
+					// NB: NaN fails both comparisons, so is ignored.
+					if (v < lo) lo = v;
+					if (v > hi) hi = v;
+				}
+				break;
+			case FormatTools.DOUBLE:
+				for (int i = 0; i < length / 8; i++) {
+					final double v = buffer.getDouble(8 * i);
+					if (v < lo) lo = v;
+					if (v > hi) hi = v;
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported pixel type: " +
+					pixelType);
+		}
+		if (lo < min[channel]) min[channel] = lo;
+		if (hi > max[channel]) max[channel] = hi;
+	}
+
+}
@@ -25,10 +25,13 @@
 
 package net.imagej.omero;
 
+import io.scif.FormatException;
+import io.scif.ImageMetadata;
 import io.scif.Metadata;
 import io.scif.config.SCIFIOConfig;
 import io.scif.config.SCIFIOConfig.ImgMode;
 import io.scif.services.DatasetIOService;
+import io.scif.services.FormatService;
 
 import java.io.IOException;
 import java.lang.reflect.Array;
@@ -44,11 +47,14 @@ import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
 import net.imagej.Dataset;
+import net.imagej.DatasetService;
+import net.imagej.ImgPlus;
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
 import net.imagej.display.DatasetView;
 import net.imagej.display.ImageDisplay;
 import net.imagej.display.ImageDisplayService;
@@ -90,6 +96,8 @@ import org.scijava.util.Types;
 import Glacier2.CannotCreateSessionException;
 import Glacier2.PermissionDeniedException;
 import omero.ServerError;
+import omero.api.IProjectionPrx;
+import omero.constants.projection.ProjectionType;
 import omero.gateway.exception.DSAccessException;
 import omero.gateway.exception.DSOutOfServiceException;
 import omero.gateway.facility.BrowseFacility;
@@ -107,6 +115,7 @@ import omero.gateway.model.TableData;
 import omero.gateway.model.TableDataColumn;
 import omero.model.DatasetI;
 import omero.model.ImageI;
+import omero.model.Pixels;
 
 /**
  * Default ImageJ service for managing OMERO data conversion.
@@ -126,6 +135,12 @@ public class DefaultOMEROService extends AbstractService implements
 	@Parameter
 	private DatasetIOService datasetIOService;
 
+	@Parameter
+	private DatasetService datasetService;
+
+	@Parameter
+	private FormatService formatService;
+
 	@Parameter
 	private DisplayService displayService;
 
@@ -140,14 +155,27 @@ public class DefaultOMEROService extends AbstractService implements
 
 //-- Fields --
 
-	private final HashMap<OMEROLocation, OMEROSession> sessions = new HashMap<>();
+	private final OMEROSessionPool sessionPool =
+		new OMEROSessionPool(this::createSession);
 
-	private final ThreadLocal<OMEROSession> activeSessions = new ThreadLocal<>();
+	/** Session leased to each thread by {@link #session(OMEROLocation)}. */
+	private final ThreadLocal<OMEROSessionPool.Lease> activeSessions =
+		new ThreadLocal<>();
 
 	private final Map<Object, ROIData> savedRois =
 		new IdentityHashMap<>();
 	private final Map<Long, ROIData> downloadedROIs = new HashMap<>();
 
+	private final OMEROTileCache tileCache = new OMEROTileCache();
+
+	private final OMEROMetadataCache metadataCache = new OMEROMetadataCache();
+
+	private final OMERODiskCache diskCache = new OMERODiskCache();
+
+	/** Reader loading the cells of each open cached image. */
+	private final Map<Dataset, OMEROFormat.Reader> cachedImageReaders =
+		Collections.synchronizedMap(new IdentityHashMap<>());
+
 	// -- OMEROService methods --
 
 	@Override
@@ -458,24 +486,26 @@ public class DefaultOMEROService extends AbstractService implements
 		if (image == null) throw new IllegalArgumentException(
 			"Image cannot be null!");
 
-		final OMEROSession session = session(credentials);
-		long omeroImageID = -1;
-		final DataManagerFacility dm = session.getGateway().getFacility(
-			DataManagerFacility.class);
-
-		// Upload Image
-		omeroImageID = uploadImage(session.getClient(), image);
-
-		// Upload/update attachments
-		uploadImageAttachments(credentials, omeroImageID, uploadROIs, updateROIs,
-			uploadTables, rois, tables, tableNames);
-
-		// Attach image to Dataset
-		if (omeroDatasetID > 0) {
-			final ImageData imgData = new ImageData(new ImageI(omeroImageID, false));
-			final DatasetData dsData = new DatasetData(new DatasetI(omeroDatasetID,
-				false));
-			dm.addImageToDataset(session.getSecurityContext(), imgData, dsData);
+		try (final OMEROSessionPool.Lease lease = leaseSession(credentials)) {
+			final OMEROSession session = lease.getSession();
+			long omeroImageID = -1;
+			final DataManagerFacility dm = session.getGateway().getFacility(
+				DataManagerFacility.class);
+
+			// Upload Image
+			omeroImageID = uploadImage(session.getClient(), image);
+
+			// Upload/update attachments
+			uploadImageAttachments(credentials, omeroImageID, uploadROIs, updateROIs,
+				uploadTables, rois, tables, tableNames);
+
+			// Attach image to Dataset
+			if (omeroDatasetID > 0) {
+				final ImageData imgData = new ImageData(new ImageI(omeroImageID, false));
+				final DatasetData dsData = new DatasetData(new DatasetI(omeroDatasetID,
+					false));
+				dm.addImageToDataset(session.getSecurityContext(), imgData, dsData);
+			}
 		}
 	}
 
@@ -503,9 +533,8 @@ public class DefaultOMEROService extends AbstractService implements
 	public Dataset downloadImage(final omero.client client, final long imageID)
 		throws omero.ServerError, IOException
 	{
-		// TODO: Reuse existing client instead of creating a new connection.
-		// Will need to rethink how SCIFIO conveys source and destination metadata.
-		// The RandomAccessInput/OutputStream design is probably too narrow.
+		// NB: The OMERO format finds the client's session via the credentials.
+		adoptSession(client);
 		final String omeroSource = "omero:" + credentials(client) + "&imageID=" +
 			imageID;
 
@@ -514,14 +543,99 @@ public class DefaultOMEROService extends AbstractService implements
 		return datasetIOService.open(omeroSource, config);
 	}
 
+	@Override
+	public Dataset downloadCachedImage(final omero.client client,
+		final long imageID) throws omero.ServerError, IOException
+	{
+		final OMEROFormat.Metadata meta = parseImage(client, imageID);
+		// NB: The reader stays open until closeCachedImage, since the image
+		// loads its cells lazily.
+		final OMEROFormat.Reader reader;
+		try {
+			reader = (OMEROFormat.Reader) formatService.getFormatFromClass(
+				OMEROFormat.class).createReader();
+		}
+		catch (final FormatException exc) {
+			meta.close();
+			throw new IOException(exc);
+		}
+		reader.setMetadata(meta);
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		final Dataset dataset = datasetService.create((ImgPlus) OMEROCellLoader
+			.createImg(reader, 0));
+		cachedImageReaders.put(dataset, reader);
+		return dataset;
+	}
+
+	@Override
+	public void closeCachedImage(final Dataset dataset) throws IOException {
+		final OMEROFormat.Reader reader = cachedImageReaders.remove(dataset);
+		if (reader != null) close(reader);
+	}
+
+	@Override
+	public Dataset downloadProjection(final omero.client client,
+		final long imageID, final ProjectionType algorithm, final int zStart,
+		final int zEnd) throws omero.ServerError, IOException
+	{
+		final OMEROFormat.Metadata meta = parseImage(client, imageID);
+		try {
+			final ImageMetadata imageMeta = meta.get(0);
+			final int sizeC = meta.getSizeC();
+			final int sizeT = meta.getSizeT();
+			if (zStart < 0 || zEnd >= meta.getSizeZ() || zStart > zEnd) {
+				throw new IllegalArgumentException("Invalid Z range: " + zStart +
+					"-" + zEnd);
+			}
+
+			// create the projected dataset, with the Z axis collapsed
+			final AxisType[] axisTypes = { Axes.X, Axes.Y, Axes.CHANNEL, Axes.TIME };
+			final long[] dims = { meta.getSizeX(), meta.getSizeY(), sizeC, sizeT };
+			final int bpp = imageMeta.getBitsPerPixel() / 8;
+			final boolean floating = imageMeta.isFloatingPoint();
+			final Dataset dataset = datasetService.create(dims, meta.getName(),
+				axisTypes, imageMeta.getBitsPerPixel(), imageMeta.isSigned(), floating);
+			for (int d = 0; d < axisTypes.length; d++) {
+				dataset.setAxis(imageMeta.getAxis(axisTypes[d]).copy(), d);
+			}
+
+			// project each channel and timepoint on the server
+			final Pixels pixels = meta.getSession().loadPixels(meta);
+			final IProjectionPrx projection = //
+				meta.getSession().getSession().getProjectionService();
+			for (int t = 0; t < sizeT; t++) {
+				for (int c = 0; c < sizeC; c++) {
+					final byte[] bytes = projection.projectStack(meta.getPixelsID(), //
+						pixels.getPixelsType(), algorithm, t, c, 1, zStart, zEnd);
+					final Object plane = PixelUtils.makeArray(bpp, floating, //
+						bytes.length / bpp);
+					PixelUtils.decode(bytes, plane);
+					dataset.setPlane(t * sizeC + c, plane);
+				}
+			}
+			return dataset;
+		}
+		finally {
+			// NB: Hand back the session leased to parse the metadata.
+			meta.close();
+		}
+	}
+
 	@Override
 	public long uploadImage(final omero.client client, final Dataset dataset)
 		throws omero.ServerError, IOException
 	{
-		// TODO: Reuse existing client instead of creating a new connection.
-		// Will need to rethink how SCIFIO conveys source and destination metadata.
-		// The RandomAccessInput/OutputStream design is probably too narrow.
+		return uploadImage(client, dataset, 1);
+	}
+
+	@Override
+	public long uploadImage(final omero.client client, final Dataset dataset,
+		final int streams) throws omero.ServerError, IOException
+	{
+		// NB: The OMERO format finds the client's session via the credentials.
+		adoptSession(client);
 		final String omeroDestination = "name=" + dataset.getName() + "&" +
+			(streams > 1 ? "uploadStreams=" + streams + "&" : "") + //
 			credentials(client) //
 			+ ".omero"; // FIXME: Remove this after SCIFIO doesn't need it anymore.
 
@@ -541,20 +655,22 @@ public class DefaultOMEROService extends AbstractService implements
 	{
 		final TableData omeroTable = convertOMEROTable(imageJTable);
 		long id = -1;
-		final OMEROSession session = session(credentials);
-		// Get image
-		final BrowseFacility browseFacility = session.getGateway().getFacility(
-			BrowseFacility.class);
-		final ImageData image = browseFacility.getImage(session
-			.getSecurityContext(), imageID);
-
-		// attach table to image
-		final TablesFacility tablesFacility = session.getGateway().getFacility(
-			TablesFacility.class);
-		final TableData stored = tablesFacility.addTable(session
-			.getSecurityContext(), image, name, omeroTable);
-		id = stored.getOriginalFileId();
-		return id;
+		try (final OMEROSessionPool.Lease lease = leaseSession(credentials)) {
+			final OMEROSession session = lease.getSession();
+			// Get image
+			final BrowseFacility browseFacility = session.getGateway().getFacility(
+				BrowseFacility.class);
+			final ImageData image = browseFacility.getImage(session
+				.getSecurityContext(), imageID);
+
+			// attach table to image
+			final TablesFacility tablesFacility = session.getGateway().getFacility(
+				TablesFacility.class);
+			final TableData stored = tablesFacility.addTable(session
+				.getSecurityContext(), image, name, omeroTable);
+			id = stored.getOriginalFileId();
+			return id;
+		}
 	}
 
 	@Override
@@ -581,39 +697,41 @@ public class DefaultOMEROService extends AbstractService implements
 		final long tableID) throws ServerError, ExecutionException,
 		DSOutOfServiceException, DSAccessException
 	{
-		final OMEROSession session = session(credentials);
-		final TablesFacility tableService = session.getGateway().getFacility(
-			TablesFacility.class);
-		final TableData table = tableService.getTable(session.getSecurityContext(),
-			tableID, 0, Integer.MAX_VALUE - 1);
-
-		final TableDataColumn[] omeroColumns = table.getColumns();
-		final Object[][] data = table.getData();
-
-		final Table<?, ?> imageJTable = TableUtils.createImageJTable(omeroColumns);
-		imageJTable.setRowCount((int) table.getNumberOfRows());
-
-		boolean colsCreated = false;
-		if (!(imageJTable instanceof GenericTable)) {
-			imageJTable.appendColumns(omeroColumns.length);
-			colsCreated = true;
-		}
-
-		for (int i = 0; i < omeroColumns.length; i++) {
-			if (!colsCreated) {
-				final Column<?> imageJCol = TableUtils.createImageJColumn(
-					omeroColumns[i]);
-				TableUtils.populateImageJColumn(omeroColumns[i].getType(),
-					data[omeroColumns[i].getIndex()], imageJCol);
-				((GenericTable) imageJTable).add(omeroColumns[i].getIndex(), imageJCol);
+		try (final OMEROSessionPool.Lease lease = leaseSession(credentials)) {
+			final OMEROSession session = lease.getSession();
+			final TablesFacility tableService = session.getGateway().getFacility(
+				TablesFacility.class);
+			final TableData table = tableService.getTable(session.getSecurityContext(),
+				tableID, 0, Integer.MAX_VALUE - 1);
+
+			final TableDataColumn[] omeroColumns = table.getColumns();
+			final Object[][] data = table.getData();
+
+			final Table<?, ?> imageJTable = TableUtils.createImageJTable(omeroColumns);
+			imageJTable.setRowCount((int) table.getNumberOfRows());
+
+			boolean colsCreated = false;
+			if (!(imageJTable instanceof GenericTable)) {
+				imageJTable.appendColumns(omeroColumns.length);
+				colsCreated = true;
 			}
-			else {
-				TableUtils.populateImageJColumn(omeroColumns[i].getType(),
-					data[omeroColumns[i].getIndex()], imageJTable.get(i));
-				imageJTable.get(i).setHeader(omeroColumns[i].getName());
+
+			for (int i = 0; i < omeroColumns.length; i++) {
+				if (!colsCreated) {
+					final Column<?> imageJCol = TableUtils.createImageJColumn(
+						omeroColumns[i]);
+					TableUtils.populateImageJColumn(omeroColumns[i].getType(),
+						data[omeroColumns[i].getIndex()], imageJCol);
+					((GenericTable) imageJTable).add(omeroColumns[i].getIndex(), imageJCol);
+				}
+				else {
+					TableUtils.populateImageJColumn(omeroColumns[i].getType(),
+						data[omeroColumns[i].getIndex()], imageJTable.get(i));
+					imageJTable.get(i).setHeader(omeroColumns[i].getName());
+				}
 			}
+			return imageJTable;
 		}
-		return imageJTable;
 	}
 
 	@Override
@@ -621,19 +739,21 @@ public class DefaultOMEROService extends AbstractService implements
 		final long imageID) throws ExecutionException, DSOutOfServiceException,
 		DSAccessException, ServerError
 	{
-		final OMEROSession session = session(credentials);
-		final TablesFacility tableService = session.getGateway().getFacility(
-			TablesFacility.class);
+		try (final OMEROSessionPool.Lease lease = leaseSession(credentials)) {
+			final OMEROSession session = lease.getSession();
+			final TablesFacility tableService = session.getGateway().getFacility(
+				TablesFacility.class);
 
-		final Collection<FileAnnotationData> files = tableService
-			.getAvailableTables(session.getSecurityContext(), new ImageData(
-				new ImageI(imageID, false)));
+			final Collection<FileAnnotationData> files = tableService
+				.getAvailableTables(session.getSecurityContext(), new ImageData(
+					new ImageI(imageID, false)));
 
-		final List<Table<?, ?>> tables = new ArrayList<>(files.size());
-		for (final FileAnnotationData file : files)
-			tables.add(downloadTable(credentials, file.getFileID()));
+			final List<Table<?, ?>> tables = new ArrayList<>(files.size());
+			for (final FileAnnotationData file : files)
+				tables.add(downloadTable(credentials, file.getFileID()));
 
-		return tables;
+			return tables;
+		}
 	}
 
 	@Override
@@ -642,27 +762,29 @@ public class DefaultOMEROService extends AbstractService implements
 		DSOutOfServiceException, DSAccessException
 	{
 		final ROITree roiTree = new DefaultROITree();
-		final OMEROSession session = session(credentials);
-		final ROIFacility roifac = session.getGateway().getFacility(
-			ROIFacility.class);
-
-		if (roifac.getROICount(session.getSecurityContext(), imageID) == 0)
-			return roiTree;
-
-		final List<ROIResult> roiresults = roifac.loadROIs(session
-			.getSecurityContext(), imageID);
-		final Iterator<ROIResult> r = roiresults.iterator();
-		while (r.hasNext()) {
-			final ROIResult res = r.next();
-			final Collection<ROIData> rois = res.getROIs();
-			for (final ROIData roi : rois) {
-				final TreeNode<?> ijRoi = convertService.convert(roi, TreeNode.class);
-				if (ijRoi == null) throw new IllegalArgumentException(
-					"ROIData cannot be converted to ImageJ ROI");
-				roiTree.children().add(ijRoi);
+		try (final OMEROSessionPool.Lease lease = leaseSession(credentials)) {
+			final OMEROSession session = lease.getSession();
+			final ROIFacility roifac = session.getGateway().getFacility(
+				ROIFacility.class);
+
+			if (roifac.getROICount(session.getSecurityContext(), imageID) == 0)
+				return roiTree;
+
+			final List<ROIResult> roiresults = roifac.loadROIs(session
+				.getSecurityContext(), imageID);
+			final Iterator<ROIResult> r = roiresults.iterator();
+			while (r.hasNext()) {
+				final ROIResult res = r.next();
+				final Collection<ROIData> rois = res.getROIs();
+				for (final ROIData roi : rois) {
+					final TreeNode<?> ijRoi = convertService.convert(roi, TreeNode.class);
+					if (ijRoi == null) throw new IllegalArgumentException(
+						"ROIData cannot be converted to ImageJ ROI");
+					roiTree.children().add(ijRoi);
+				}
 			}
+			return roiTree;
 		}
-		return roiTree;
 	}
 
 	@Override
@@ -670,15 +792,17 @@ public class DefaultOMEROService extends AbstractService implements
 		final long roiID) throws DSOutOfServiceException, DSAccessException,
 		ExecutionException
 	{
-		final OMEROSession session = session(credentials);
-		final ROIFacility roifac = session.getGateway().getFacility(
-			ROIFacility.class);
-		final ROIResult roi = roifac.loadROI(session.getSecurityContext(), roiID);
-		final ROIData rd = roi.getROIs().iterator().next();
-		final TreeNode<?> treeNode = convertService.convert(rd, TreeNode.class);
-		final ROITree tree = new DefaultROITree();
-		tree.children().add(treeNode);
-		return tree;
+		try (final OMEROSessionPool.Lease lease = leaseSession(credentials)) {
+			final OMEROSession session = lease.getSession();
+			final ROIFacility roifac = session.getGateway().getFacility(
+				ROIFacility.class);
+			final ROIResult roi = roifac.loadROI(session.getSecurityContext(), roiID);
+			final ROIData rd = roi.getROIs().iterator().next();
+			final TreeNode<?> treeNode = convertService.convert(rd, TreeNode.class);
+			final ROITree tree = new DefaultROITree();
+			tree.children().add(treeNode);
+			return tree;
+		}
 	}
 
 	@Override
@@ -707,44 +831,46 @@ public class DefaultOMEROService extends AbstractService implements
 		final long imageID) throws ExecutionException, DSOutOfServiceException,
 		DSAccessException
 	{
-		final OMEROSession session = session(credentials);
-		final Interval interval = getImageInterval(session, imageID);
-		final Pair<List<OMEROROICollection>, List<TreeNode<?>>> splitROIs = split(
-			ijROIs);
-		final List<ROIData> savedOMERORois = new ArrayList<>();
-		final ROIFacility roifac = session.getGateway().getFacility(
-			ROIFacility.class);
-
-		// FIXME: This is a lot of server calls
-
-		// Handle ROIs which originated in ImageJ
-		for (final TreeNode<?> ijROI : splitROIs.getB()) {
-			final List<ROIData> roiData = convertOMEROROI(ijROI, interval);
-			clearROIs(roiData);
-			final Collection<ROIData> saved = roifac.saveROIs(session
-				.getSecurityContext(), imageID, roiData);
-			addROIMapping(ijROI.data(), saved.iterator().next());
-			savedOMERORois.add(saved.iterator().next());
-		}
-
-		// Handle ROIs which originated in OMERO
-		for (final OMEROROICollection orc : splitROIs.getA()) {
-			final List<ROIData> roiData = convertOMEROROI(orc, interval);
-			if (downloadedROIs.containsKey(roiData.get(0).getId())) downloadedROIs
-				.remove(roiData.get(0).getId());
-			clearROIs(roiData);
-			final Collection<ROIData> saved = roifac.saveROIs(session
-				.getSecurityContext(), imageID, roiData);
-			final ROIData savedRoi = saved.iterator().next();
-
-			// NB: If updated later, the id will match correctly
-			updateROIData(orc, savedRoi);
-			downloadedROIs.put(savedRoi.getId(), savedRoi);
-
-			savedOMERORois.add(savedRoi);
-		}
-
-		return savedOMERORois;
+		try (final OMEROSessionPool.Lease lease = leaseSession(credentials)) {
+			final OMEROSession session = lease.getSession();
+			final Interval interval = getImageInterval(session, imageID);
+			final Pair<List<OMEROROICollection>, List<TreeNode<?>>> splitROIs = split(
+				ijROIs);
+			final List<ROIData> savedOMERORois = new ArrayList<>();
+			final ROIFacility roifac = session.getGateway().getFacility(
+				ROIFacility.class);
+
+			// FIXME: This is a lot of server calls
+
+			// Handle ROIs which originated in ImageJ
+			for (final TreeNode<?> ijROI : splitROIs.getB()) {
+				final List<ROIData> roiData = convertOMEROROI(ijROI, interval);
+				clearROIs(roiData);
+				final Collection<ROIData> saved = roifac.saveROIs(session
+					.getSecurityContext(), imageID, roiData);
+				addROIMapping(ijROI.data(), saved.iterator().next());
+				savedOMERORois.add(saved.iterator().next());
+			}
+
+			// Handle ROIs which originated in OMERO
+			for (final OMEROROICollection orc : splitROIs.getA()) {
+				final List<ROIData> roiData = convertOMEROROI(orc, interval);
+				if (downloadedROIs.containsKey(roiData.get(0).getId())) downloadedROIs
+					.remove(roiData.get(0).getId());
+				clearROIs(roiData);
+				final Collection<ROIData> saved = roifac.saveROIs(session
+					.getSecurityContext(), imageID, roiData);
+				final ROIData savedRoi = saved.iterator().next();
+
+				// NB: If updated later, the id will match correctly
+				updateROIData(orc, savedRoi);
+				downloadedROIs.put(savedRoi.getId(), savedRoi);
+
+				savedOMERORois.add(savedRoi);
+			}
+
+			return savedOMERORois;
+		}
 	}
 
 	@Override
@@ -753,62 +879,64 @@ public class DefaultOMEROService extends AbstractService implements
 		final long imageID) throws ExecutionException, DSOutOfServiceException,
 		DSAccessException
 	{
-		final OMEROSession session = session(credentials);
-		final Interval interval = getImageInterval(session, imageID);
-		final Pair<List<OMEROROICollection>, List<TreeNode<?>>> splitROIs = split(
-			ijROIs);
-		final List<ROIData> newROIs = new ArrayList<>();
-		final List<Long> ids = new ArrayList<>();
-		final ROIFacility roifac = session.getGateway().getFacility(ROIFacility.class);
-		final DataManagerFacility dm = session.getGateway().getFacility(
-			DataManagerFacility.class);
-
-		// Handle ROIs which originated in OMERO
-		for (final OMEROROICollection orc : splitROIs.getA()) {
-			ROIData converted = convertOMEROROI(orc, interval).get(0);
-			if (downloadedROIs.containsKey(converted.getId())) converted =
-				downloadedROIs.get(converted.getId());
-			final DataObject savedOMERO = dm.saveAndReturnObject(session
-				.getSecurityContext(), converted);
-			if (!(savedOMERO instanceof ROIData)) throw new IllegalArgumentException(
-				"ROI was not returned by OMERO");
-			final ROIData savedROI = (ROIData) savedOMERO;
-			downloadedROIs.put(savedROI.getId(), savedROI);
-			updateROIData(orc, savedROI);
-			ids.add(savedROI.getId());
-		}
-
-		// Handle ROIs which originated in ImageJ
-		for (final TreeNode<?> dn : splitROIs.getB()) {
-			final List<ROIData> converted = convertOMEROROI(dn, interval);
-			final Collection<ROIData> saved = roifac.saveROIs(session
-				.getSecurityContext(), imageID, converted);
-			if (getROIMapping(dn.data()) == null) newROIs.add(saved.iterator()
-				.next());
-			addROIMapping(dn.data(), saved.iterator().next());
-			ids.add(saved.iterator().next().getId());
-		}
-
-		// Check if any ROIs must be deleted
-		final Collection<ROIResult> roisOnServer = roifac.loadROIs(session
-			.getSecurityContext(), imageID);
-		for (final ROIResult result : roisOnServer) {
-			for (final ROIData roi : result.getROIs()) {
-				if (!ids.contains(roi.getId())) {
-					dm.delete(session.getSecurityContext(), roi.asIObject());
-
-					// check if deleted ROI was mapped, if so remove mapping
-					if (downloadedROIs.containsKey(roi.getId())) downloadedROIs.remove(roi
-						.getId());
-					for (final Object key : savedRois.keySet()) {
-						if (savedRois.get(key).getId() == roi.getId()) savedRois.remove(
-							key);
+		try (final OMEROSessionPool.Lease lease = leaseSession(credentials)) {
+			final OMEROSession session = lease.getSession();
+			final Interval interval = getImageInterval(session, imageID);
+			final Pair<List<OMEROROICollection>, List<TreeNode<?>>> splitROIs = split(
+				ijROIs);
+			final List<ROIData> newROIs = new ArrayList<>();
+			final List<Long> ids = new ArrayList<>();
+			final ROIFacility roifac = session.getGateway().getFacility(ROIFacility.class);
+			final DataManagerFacility dm = session.getGateway().getFacility(
+				DataManagerFacility.class);
+
+			// Handle ROIs which originated in OMERO
+			for (final OMEROROICollection orc : splitROIs.getA()) {
+				ROIData converted = convertOMEROROI(orc, interval).get(0);
+				if (downloadedROIs.containsKey(converted.getId())) converted =
+					downloadedROIs.get(converted.getId());
+				final DataObject savedOMERO = dm.saveAndReturnObject(session
+					.getSecurityContext(), converted);
+				if (!(savedOMERO instanceof ROIData)) throw new IllegalArgumentException(
+					"ROI was not returned by OMERO");
+				final ROIData savedROI = (ROIData) savedOMERO;
+				downloadedROIs.put(savedROI.getId(), savedROI);
+				updateROIData(orc, savedROI);
+				ids.add(savedROI.getId());
+			}
+
+			// Handle ROIs which originated in ImageJ
+			for (final TreeNode<?> dn : splitROIs.getB()) {
+				final List<ROIData> converted = convertOMEROROI(dn, interval);
+				final Collection<ROIData> saved = roifac.saveROIs(session
+					.getSecurityContext(), imageID, converted);
+				if (getROIMapping(dn.data()) == null) newROIs.add(saved.iterator()
+					.next());
+				addROIMapping(dn.data(), saved.iterator().next());
+				ids.add(saved.iterator().next().getId());
+			}
+
+			// Check if any ROIs must be deleted
+			final Collection<ROIResult> roisOnServer = roifac.loadROIs(session
+				.getSecurityContext(), imageID);
+			for (final ROIResult result : roisOnServer) {
+				for (final ROIData roi : result.getROIs()) {
+					if (!ids.contains(roi.getId())) {
+						dm.delete(session.getSecurityContext(), roi.asIObject());
+
+						// check if deleted ROI was mapped, if so remove mapping
+						if (downloadedROIs.containsKey(roi.getId())) downloadedROIs.remove(roi
+							.getId());
+						for (final Object key : savedRois.keySet()) {
+							if (savedRois.get(key).getId() == roi.getId()) savedRois.remove(
+								key);
+						}
 					}
 				}
 			}
-		}
 
-		return newROIs;
+			return newROIs;
+		}
 	}
 
 	@Override
@@ -868,15 +996,42 @@ public class DefaultOMEROService extends AbstractService implements
 
 	@Override
 	public OMEROSession session(final OMEROLocation location) {
-		final OMEROSession session = sessions.computeIfAbsent(location,
-			c2 -> createSession(c2));
-		activeSessions.set(session);
-		return session;
+		// NB: Each thread keeps its leased session while it stays on the same
+		// location, so parallel threads get independent connections.
+		final OMEROSessionPool.Lease active = activeSessions.get();
+		if (active != null && sessionPool.contains(location, active
+			.getSession()))
+		{
+			return active.getSession();
+		}
+		final OMEROSessionPool.Lease lease = sessionPool.lease(location);
+		if (lease == null) return null;
+		if (active != null) active.close();
+		activeSessions.set(lease);
+		return lease.getSession();
+	}
+
+	@Override
+	public OMEROSessionPool.Lease leaseSession(final OMEROLocation location) {
+		final OMEROSessionPool.Lease lease = sessionPool.lease(location);
+		if (lease == null) {
+			throw new IllegalStateException("Cannot connect to OMERO server " +
+				location.getServer());
+		}
+		return lease;
+	}
+
+	@Override
+	public OMEROSessionPool.Lease leaseSession(final omero.client client)
+		throws ServerError, IOException
+	{
+		return leaseSession(adoptSession(client));
 	}
 
 	@Override
 	public OMEROSession session() {
-		return activeSessions.get();
+		final OMEROSessionPool.Lease active = activeSessions.get();
+		return active == null ? null : active.getSession();
 	}
 
 	@Override
@@ -892,20 +1047,135 @@ public class DefaultOMEROService extends AbstractService implements
 		return null;
 	}
 
+	@Override
+	public void releaseSession() {
+		final OMEROSessionPool.Lease active = activeSessions.get();
+		if (active == null) return;
+		activeSessions.remove();
+		active.close();
+	}
+
 	@Override
 	public void removeSession(final OMEROSession session) {
-		if (session == null || !sessions.containsValue(session)) return;
-		if (Objects.equals(activeSessions.get(), session)) activeSessions.set(null);
-		for (final OMEROLocation l : sessions.keySet()) {
-			if (Objects.equals(sessions.get(l), session)) {
-				sessions.remove(l);
-				return;
+		if (session == null) return;
+		final OMEROSessionPool.Lease active = activeSessions.get();
+		if (active != null && active.getSession() == session) {
+			activeSessions.remove();
+		}
+		sessionPool.remove(session);
+	}
+
+	@Override
+	public OMEROSessionPool getSessionPool() {
+		return sessionPool;
+	}
+
+	@Override
+	public OMEROTileCache getTileCache() {
+		return tileCache;
+	}
+
+	@Override
+	public OMEROMetadataCache getMetadataCache() {
+		return metadataCache;
+	}
+
+	@Override
+	public OMERODiskCache getDiskCache() {
+		return diskCache;
+	}
+
+	// -- Service methods --
+
+	@Override
+	public void initialize() {
+		metadataCache.setLogService(log);
+	}
+
+	// -- Disposable methods --
+
+	@Override
+	public void dispose() {
+		final List<OMEROFormat.Reader> readers;
+		synchronized (cachedImageReaders) {
+			readers = new ArrayList<>(cachedImageReaders.values());
+			cachedImageReaders.clear();
+		}
+		for (final OMEROFormat.Reader reader : readers) {
+			try {
+				close(reader);
+			}
+			catch (final IOException exc) {
+				log.error("Cannot close cached image reader", exc);
 			}
 		}
+		sessionPool.close();
 	}
 
 	// -- Helper methods --
 
+	/**
+	 * Caches an {@link OMEROSession} which reuses the given client's existing
+	 * login, under the credentials generated by {@link #credentials}. Without
+	 * this, opening those credentials would log in to OMERO all over again.
+	 *
+	 * @return the credentials under which the session is cached
+	 */
+	private OMEROLocation adoptSession(final omero.client client)
+		throws ServerError, IOException
+	{
+		final OMEROLocation location;
+		try {
+			location = new OMEROLocation(getHost(client), Integer.parseInt(client
+				.getProperty("omero.port")), client.getSessionId());
+		}
+		catch (final URISyntaxException exc) {
+			throw new IOException(exc);
+		}
+		if (sessionPool.contains(location)) return location;
+		try {
+			sessionPool.add(location, new DefaultOMEROSession(location, client,
+				this));
+		}
+		catch (final PermissionDeniedException | CannotCreateSessionException exc) {
+			throw new IOException("Cannot reuse OMERO session", exc);
+		}
+		return location;
+	}
+
+	/** Parses the metadata of the given image, reusing the client's session. */
+	/**
+	 * Closes the given reader of a cached image, handing back the sessions
+	 * leased by both the reader and its metadata.
+	 */
+	private static void close(final OMEROFormat.Reader reader)
+		throws IOException
+	{
+		final OMEROFormat.Metadata meta = reader.getMetadata();
+		try {
+			reader.close();
+		}
+		finally {
+			if (meta != null) meta.close();
+		}
+	}
+
+	private OMEROFormat.Metadata parseImage(final omero.client client,
+		final long imageID) throws ServerError, IOException
+	{
+		// NB: The OMERO format finds the client's session via the credentials.
+		adoptSession(client);
+		final String omeroSource = "omero:" + credentials(client) + "&imageID=" +
+			imageID;
+		try {
+			return (OMEROFormat.Metadata) formatService.getFormatFromClass(
+				OMEROFormat.class).createParser().parse(omeroSource);
+		}
+		catch (final FormatException exc) {
+			throw new IOException(exc);
+		}
+	}
+
 	/**
 	 * Generates an OMERO source string fragment with credentials matching the
 	 * given client.
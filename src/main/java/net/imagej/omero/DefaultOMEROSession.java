@@ -55,6 +55,8 @@ import omero.model.IObject;
 import omero.model.Image;
 import omero.model.Pixels;
 import omero.model.PixelsType;
+import omero.sys.EventContext;
+import omero.sys.ParametersI;
 
 /**
  * Helper class for managing OMERO client sessions.
@@ -67,13 +69,39 @@ public class DefaultOMEROSession implements OMEROSession {
                 net.imagej.omero.SSLUtils.fixDisabledAlgorithms();
         }
 
+	// -- Constants --
+
+	/**
+	 * System property specifying the interval, in seconds, at which owned
+	 * clients ping the server to keep their sessions alive; 0 disables.
+	 */
+	public static final String KEEP_ALIVE_PROPERTY = "imagej.omero.keepAlive";
+
+	/** Default keep-alive interval, in seconds. */
+	public static final int DEFAULT_KEEP_ALIVE = 60;
+
+	/** Number of times to try logging in again before giving up. */
+	private static final int MAX_RECONNECT_ATTEMPTS = 6;
+
+	/** Delay before the second attempt to log in again, in ms. */
+	private static final long INITIAL_RECONNECT_DELAY = 500;
+
+	/** Longest delay between attempts to log in again, in ms. */
+	private static final long MAX_RECONNECT_DELAY = 30 * 1000;
+
 	// -- Fields --
 
-	private omero.client client;
-	private ServiceFactoryPrx session;
-	private ExperimenterData experimenter;
-	private Gateway gateway;
-	private SecurityContext ctx;
+	private final OMEROLocation credentials;
+	private volatile omero.client client;
+
+	/** Whether the client was created by, and hence belongs to, this session. */
+	private boolean ownsClient;
+	private volatile ServiceFactoryPrx session;
+	private volatile ExperimenterData experimenter;
+	private volatile Gateway gateway;
+	private volatile SecurityContext ctx;
+	private EventContext eventContext;
+	private RawPixelsStorePool pixelsPool;
 	private final OMEROService omeroService;
 
 	// -- Constructors --
@@ -94,32 +122,25 @@ public class DefaultOMEROSession implements OMEROSession {
 				"Cannot create OMEROSession: OMEROLocation must specify username and " +
 					"password OR session ID");
 
+		this.credentials = credentials;
+
 		// initialize the client
-		boolean close = false;
 		if (c == null) {
-			final String server = credentials.getServer();
-			if (server != null) {
-				client = new omero.client(server, credentials.getPort());
-			}
-			else client = new omero.client();
+			client = createClient(credentials);
+			ownsClient = true;
 		}
 		else {
 			client = c;
-			close = true;
+			ownsClient = false;
 		}
 
-		if (credentials.getUser() != null && credentials.getPassword() != null) {
-			final String user = credentials.getUser();
-			final String password = credentials.getPassword();
-			session = client.createSession(user, password);
-		}
-		else {
-			session = client.joinSession(credentials.getSessionID());
-		}
+		// reuse the client's existing login, if it has one
+		final ServiceFactoryPrx active = activeSession(client);
+		session = active != null ? active : login(client, credentials);
 
-		setGateway();
-		setExperimenter(credentials);
-		setSecurityContext(credentials);
+		// NB: The gateway, experimenter and security context are initialized
+		// lazily, on first use, so that sessions used only for pixels and Blitz
+		// services log in just once.
 
 		// Until imagej-omero #30 is resolved; see:
 		// https://github.com/imagej/imagej-omero/issues/30
@@ -128,7 +149,9 @@ public class DefaultOMEROSession implements OMEROSession {
 //			session = client.getSession();
 //		}
 
-		session.detachOnDestroy();
+		// NB: Leave the lifecycle of a reused login to its owner.
+		if (active == null) session.detachOnDestroy();
+		if (ownsClient) keepAlive(client);
 		this.omeroService = omeroService;
 	}
 
@@ -146,17 +169,41 @@ public class DefaultOMEROSession implements OMEROSession {
 
 	@Override
 	public SecurityContext getSecurityContext() {
-		return ctx;
+		final SecurityContext c = ctx;
+		if (c != null) return c;
+		synchronized (this) {
+			if (ctx == null) ctx = new SecurityContext(eventContext().groupId);
+			return ctx;
+		}
 	}
 
 	@Override
 	public ExperimenterData getExperimenter() {
-		return experimenter;
+		final ExperimenterData e = experimenter;
+		if (e != null) return e;
+		synchronized (this) {
+			if (experimenter == null) {
+				try {
+					experimenter = new ExperimenterData(session.getAdminService()
+						.getExperimenter(eventContext().userId));
+				}
+				catch (final ServerError err) {
+					throw new IllegalStateException("Cannot load OMERO experimenter",
+						err);
+				}
+			}
+			return experimenter;
+		}
 	}
 
 	@Override
 	public Gateway getGateway() {
-		return gateway;
+		final Gateway g = gateway;
+		if (g != null) return g;
+		synchronized (this) {
+			if (gateway == null) gateway = connectGateway();
+			return gateway;
+		}
 	}
 
 	@Override
@@ -170,22 +217,47 @@ public class DefaultOMEROSession implements OMEROSession {
 		Pixels pixels = meta.getPixels();
 		if (pixels != null) return pixels;
 
-		// NB: We cannot write:
-		//
-		// loadImage(meta).getPixels(0)
-		//
-		// because retrieving an Image is not enough to
-		// retrieve all fields of the linked Pixels.
-
-		// load the pixels ID from the remote server
-		final long pixelsID = loadPixelsID(meta);
-		meta.setPixelsID(pixelsID);
-
-		// load the Pixels from the remote server
-		pixels = session.getPixelsService().retrievePixDescription(pixelsID);
-		meta.setPixels(pixels);
+		// return Pixels cached by another reader or writer, if available
+		final OMEROMetadataCache cache = omeroService.getMetadataCache();
+		pixels = meta.getPixelsID() != 0 ? //
+			cache.getPixels(credentials, meta.getPixelsID()) : //
+			meta.getImageID() != 0 ? //
+				cache.getImagePixels(credentials, meta.getImageID()) : null;
+		if (pixels != null) return cachePixels(meta, pixels);
+
+		// NB: Load the Pixels together with their Image, pixel type, channels
+		// and update event in a single query, rather than looking up the image,
+		// the pixels ID, the pixels description and the name one at a time.
+		final ParametersI params = new ParametersI();
+		final String where;
+		if (meta.getPixelsID() != 0) {
+			where = "p.id = :id";
+			params.addId(meta.getPixelsID());
+		}
+		else {
+			if (meta.getImageID() == 0) throw new IllegalArgumentException(
+				"Image ID is unset");
+			where = "i.id = :id";
+			params.addId(meta.getImageID());
+		}
+		final List<IObject> results = session.getQueryService().findAllByQuery(
+			"select p from Pixels as p " + //
+				"join fetch p.image as i " + //
+				"join fetch p.pixelsType " + //
+				"left outer join fetch p.channels as c " + //
+				"left outer join fetch c.logicalChannel " + //
+				"left outer join fetch c.statsInfo " + //
+				"left outer join fetch p.details.updateEvent " + //
+				"where " + where + " order by p.id", params);
+		if (results == null || results.isEmpty()) {
+			throw new IllegalArgumentException("Invalid " + (meta
+				.getPixelsID() != 0 ? "pixels ID: " + meta.getPixelsID()
+					: "image ID: " + meta.getImageID()));
+		}
+		pixels = (Pixels) results.get(0);
+		cache.putPixels(credentials, pixels);
 
-		return pixels;
+		return cachePixels(meta, pixels);
 	}
 
 	@Override
@@ -197,14 +269,20 @@ public class DefaultOMEROSession implements OMEROSession {
 		final long imageID = meta.getImageID();
 		if (imageID == 0) throw new IllegalArgumentException("Image ID is unset");
 
-		// load the Image from the remote server
-		final List<Long> ids = Arrays.asList(imageID);
-		final List<Image> images = session.getContainerService().getImages("Image",
-			ids, null);
-		if (images == null || images.isEmpty()) {
-			throw new IllegalArgumentException("Invalid image ID: " + imageID);
+		// return Image cached by another reader or writer, if available
+		final OMEROMetadataCache cache = omeroService.getMetadataCache();
+		image = cache.getImage(credentials, imageID);
+		if (image == null) {
+			// load the Image from the remote server
+			final List<Long> ids = Arrays.asList(imageID);
+			final List<Image> images = session.getContainerService().getImages(
+				"Image", ids, null);
+			if (images == null || images.isEmpty()) {
+				throw new IllegalArgumentException("Invalid image ID: " + imageID);
+			}
+			image = images.get(0);
+			cache.putImage(credentials, image);
 		}
-		image = images.get(0);
 		meta.setImage(image);
 
 		return image;
@@ -265,11 +343,62 @@ public class DefaultOMEROSession implements OMEROSession {
 		return store;
 	}
 
+	@Override
+	public void reconnect(final ServiceFactoryPrx failed) throws ServerError {
+		// NB: A session joined by ID cannot log in again once it has expired,
+		// so it is rejoined just once, without waiting to retry.
+		final boolean retry = credentials.getUser() != null && //
+			credentials.getPassword() != null;
+
+		long delay = INITIAL_RECONNECT_DELAY;
+		for (int attempt = 1;; attempt++) {
+			// NB: Sleep between attempts without holding the lock, so that other
+			// threads are not blocked from the session meanwhile.
+			synchronized (this) {
+				if (failed != null && failed != session) return; // reconnected
+				try {
+					relogin();
+					return;
+				}
+				catch (final PermissionDeniedException exc) {
+					// NB: Trying again with the same credentials will not help.
+					throw serverError(exc);
+				}
+				catch (final ServerError | CannotCreateSessionException
+						| Ice.LocalException exc)
+				{
+					if (!retry || attempt >= MAX_RECONNECT_ATTEMPTS) {
+						throw exc instanceof ServerError ? (ServerError) exc
+							: serverError(exc);
+					}
+				}
+			}
+			try {
+				Thread.sleep(delay);
+			}
+			catch (final InterruptedException exc) {
+				Thread.currentThread().interrupt();
+				throw serverError(exc);
+			}
+			delay = Math.min(2 * delay, MAX_RECONNECT_DELAY);
+		}
+	}
+
+	@Override
+	public synchronized RawPixelsStorePool getPixelsPool() {
+		if (pixelsPool == null) pixelsPool = new RawPixelsStorePool(session);
+		return pixelsPool;
+	}
+
 	// -- Closeable methods --
 
 	@Override
 	public void close() {
-		if (client != null) client.__del__();
+		synchronized (this) {
+			if (pixelsPool != null) pixelsPool.close();
+			pixelsPool = null;
+		}
+		if (client != null && ownsClient) client.__del__();
 		client = null;
 		session = null;
 		if (gateway != null) gateway.disconnect();
@@ -278,6 +407,85 @@ public class DefaultOMEROSession implements OMEROSession {
 
 	// -- Helper methods --
 
+	/**
+	 * Logs in with a new client, then replaces the client, session, gateway
+	 * and pixels store pool of the failed login.
+	 */
+	private void relogin() throws ServerError, PermissionDeniedException,
+		CannotCreateSessionException
+	{
+		final omero.client newClient = createClient(credentials);
+		final ServiceFactoryPrx newSession;
+		try {
+			newSession = login(newClient, credentials);
+			newSession.detachOnDestroy();
+		}
+		catch (final ServerError | PermissionDeniedException
+				| CannotCreateSessionException | RuntimeException exc)
+		{
+			newClient.__del__();
+			throw exc;
+		}
+		keepAlive(newClient);
+
+		// replace the failed login; the gateway reconnects lazily
+		final omero.client oldClient = client;
+		final boolean ownedOldClient = ownsClient;
+		final Gateway oldGateway = gateway;
+		client = newClient;
+		ownsClient = true;
+		session = newSession;
+		gateway = null;
+		experimenter = null;
+		ctx = null;
+		eventContext = null;
+		if (pixelsPool != null) pixelsPool.close();
+		pixelsPool = null;
+		if (oldGateway != null) oldGateway.disconnect();
+		if (ownedOldClient) oldClient.__del__();
+	}
+
+	private static omero.client createClient(final OMEROLocation credentials) {
+		final String server = credentials.getServer();
+		if (server == null) return new omero.client();
+		return new omero.client(server, credentials.getPort());
+	}
+
+	/** Logs in with the given credentials' password or session ID. */
+	private static ServiceFactoryPrx login(final omero.client c,
+		final OMEROLocation credentials) throws ServerError,
+		PermissionDeniedException, CannotCreateSessionException
+	{
+		if (credentials.getUser() != null && credentials.getPassword() != null) {
+			return c.createSession(credentials.getUser(), credentials
+				.getPassword());
+		}
+		return c.joinSession(credentials.getSessionID());
+	}
+
+	/** Starts pinging the server periodically, so the session stays alive. */
+	private static void keepAlive(final omero.client c) {
+		final int seconds = Integer.getInteger(KEEP_ALIVE_PROPERTY,
+			DEFAULT_KEEP_ALIVE);
+		if (seconds > 0) c.enableKeepAlive(seconds);
+	}
+
+	private static ServerError serverError(final Throwable cause) {
+		final ServerError err = new ServerError();
+		err.initCause(cause);
+		return err;
+	}
+
+	/** Gets the client's active session, or null if it is not logged in. */
+	private static ServiceFactoryPrx activeSession(final omero.client c) {
+		try {
+			return c.getSession();
+		}
+		catch (final omero.ClientError err) {
+			return null;
+		}
+	}
+
 	private ImageData createImage(final OMEROFormat.Metadata meta)
 		throws ServerError, FormatException
 	{
@@ -312,6 +520,24 @@ public class DefaultOMEROSession implements OMEROSession {
 		return new ImageData(results.get(0));
 	}
 
+	/** Caches the given Pixels, and their Image and its name, on the metadata. */
+	private static Pixels cachePixels(final OMEROFormat.Metadata meta,
+		final Pixels pixels)
+	{
+		final Image image = pixels.getImage();
+		final long imageID = image.getId().getValue();
+		meta.setPixelsID(pixels.getId().getValue());
+		meta.setPixels(pixels);
+		if (meta.getImageID() == 0) meta.setImageID(imageID);
+		if (meta.getImageID() == imageID) {
+			if (meta.getImage() == null) meta.setImage(image);
+			if (meta.getName() == null && image.getName() != null) {
+				meta.setName(image.getName().getValue());
+			}
+		}
+		return pixels;
+	}
+
 	private PixelsType getPixelsType(final int pixelType) throws ServerError,
 		FormatException
 	{
@@ -321,14 +547,22 @@ public class DefaultOMEROSession implements OMEROSession {
 	private PixelsType getPixelsType(final String pixelType) throws ServerError,
 		FormatException
 	{
+		final OMEROMetadataCache cache = omeroService.getMetadataCache();
+		final PixelsType cached = cache.getPixelsType(credentials, pixelType);
+		if (cached != null) return cached;
+
+		// NB: Cache all pixel types at once, since the server returns them all.
+		PixelsType match = null;
 		final List<IObject> list = session.getPixelsService().getAllEnumerations(
 			PixelsType.class.getName());
 		final Iterator<IObject> iter = list.iterator();
 		while (iter.hasNext()) {
 			final PixelsType type = (PixelsType) iter.next();
+			cache.putPixelsType(credentials, type);
 			final String value = type.getValue().getValue();
-			if (value.equals(pixelType)) return type;
+			if (value.equals(pixelType)) match = type;
 		}
+		if (match != null) return match;
 		throw new FormatException("Invalid pixel type: " + pixelType);
 	}
 
@@ -344,47 +578,40 @@ public class DefaultOMEROSession implements OMEROSession {
 	}
 
 	/**
-	 * Creates a SecurityConext which is linked to the group the user belongs to.
+	 * Gets the user and group of the session, loading them from the server as
+	 * needed.
 	 */
-	private void setSecurityContext(final OMEROLocation credentials)
-		throws ServerError
-	{
-		if (experimenter == null) setExperimenter(credentials);
-		ctx = new SecurityContext(experimenter.getGroupId());
+	private synchronized EventContext eventContext() {
+		if (eventContext == null) {
+			try {
+				eventContext = session.getAdminService().getEventContext();
+			}
+			catch (final ServerError err) {
+				throw new IllegalStateException("Cannot load OMERO event context",
+					err);
+			}
+		}
+		return eventContext;
 	}
 
 	/**
-	 * Attempts to connect to the gateway using the given credentials. If it can
-	 * successfully connect, then it sets experimenter.
+	 * Creates a gateway which joins this session, rather than logging in
+	 * again with the user's password.
 	 */
-	private void setExperimenter(final OMEROLocation credentials)
-		throws ServerError
-	{
-		final LoginCredentials cred;
-		if (credentials.getSessionID() != null) cred = new LoginCredentials(
-			credentials.getSessionID(), null, credentials.getServer(), credentials
-				.getPort());
-		else cred = new LoginCredentials(credentials.getUser(), credentials
-			.getPassword(), credentials.getServer(), credentials.getPort());
-
-		if (gateway == null) setGateway();
-
+	private Gateway connectGateway() {
+		final Logger simpleLogger = new SimpleLogger();
+		final Gateway g = new Gateway(simpleLogger);
+		final LoginCredentials cred = new LoginCredentials(client.getSessionId(),
+			null, credentials.getServer(), credentials.getPort());
 		try {
-			experimenter = gateway.connect(cred);
+			final ExperimenterData user = g.connect(cred);
+			if (experimenter == null) experimenter = user;
+			return g;
 		}
 		catch (final DSOutOfServiceException exc) {
-			final ServerError err = new ServerError();
-			err.initCause(exc);
-			throw err;
+			g.disconnect();
+			throw new IllegalStateException("Cannot connect OMERO gateway", exc);
 		}
 	}
 
-	/**
-	 * Creates a new gateway for the session.
-	 */
-	private void setGateway() {
-		final Logger simpleLogger = new SimpleLogger();
-		gateway = new Gateway(simpleLogger);
-	}
-
 }
@@ -62,7 +62,6 @@ import omero.RLong;
 import omero.ServerError;
 import omero.api.IQueryPrx;
 import omero.gateway.Gateway;
-import omero.gateway.LoginCredentials;
 import omero.gateway.SecurityContext;
 import omero.gateway.exception.DSAccessException;
 import omero.gateway.exception.DSOutOfServiceException;
@@ -71,14 +70,11 @@ import omero.gateway.facility.DataManagerFacility;
 import omero.gateway.facility.ROIFacility;
 import omero.gateway.facility.TablesFacility;
 import omero.gateway.model.DatasetData;
-import omero.gateway.model.ExperimenterData;
 import omero.gateway.model.FileAnnotationData;
 import omero.gateway.model.ImageData;
 import omero.gateway.model.ROIData;
 import omero.gateway.model.ShapeData;
 import omero.gateway.model.TableData;
-import omero.log.Logger;
-import omero.log.SimpleLogger;
 import omero.model.DatasetImageLink;
 import omero.model.FileAnnotation;
 import omero.model.FileAnnotationI;
@@ -144,10 +140,10 @@ public class ModuleAdapter extends AbstractContextual {
 	private final ModuleItem<?> imageOutput;
 
 	/**
-	 * The OMERO gateway which can be used to connect users to OMERO, or create
+	 * The OMERO gateway of the client's session, which can be used to create
 	 * various facilities for searching OMERO Datasets, Projects, etc.
 	 */
-	private final Gateway gateway;
+	private Gateway gateway;
 
 	// -- Constructor --
 
@@ -159,10 +155,6 @@ public class ModuleAdapter extends AbstractContextual {
 		this.client = client;
 		imageInput = getSingleImage(info.inputs());
 		imageOutput = getSingleImage(info.outputs());
-
-		// Create gateway
-		final Logger simpleLogger = new SimpleLogger();
-		this.gateway = new Gateway(simpleLogger);
 	}
 
 	// -- ModuleAdapter methods --
@@ -250,7 +242,6 @@ public class ModuleAdapter extends AbstractContextual {
 
 		// Create output links, and upload ROIs/Tables
 		createOutputLinks(inputImages, outputImages, outputAttach);
-		gateway.disconnect();
 
 		log.debug(info.getTitle() + ": completed execution");
 	}
@@ -383,34 +374,6 @@ public class ModuleAdapter extends AbstractContextual {
 		return String.format("%0" + outputDigits + "d", num);
 	}
 
-	/**
-	 * Creates an ExperimenterData OMERO object which is connected to the gateway.
-	 */
-	private ExperimenterData createUser() {
-		String host = client.getProperty("omero.host");
-		if (host.equals("")) {
-			String router = client.getProperty("omero.ClientCallback.Router");
-			String[] comp = router.split("\\s+");
-			for (int i = 0; i < comp.length; i++) {
-				if (comp[i].equals("-h")) {
-					host = comp[i + 1];
-					break;
-				}
-			}
-		}
-		final LoginCredentials cred = new LoginCredentials(client.getSessionId(),
-			null, host, Integer.parseInt(client.getProperty("omero.port")));
-
-		try {
-			return gateway.connect(cred);
-		}
-		catch (final DSOutOfServiceException err) {
-			log.error(err.getMessage());
-		}
-
-		return null;
-	}
-
 	/**
 	 * Attempts to attach the outputs to the appropriate items.
 	 */
@@ -418,27 +381,33 @@ public class ModuleAdapter extends AbstractContextual {
 	private void createOutputLinks(final Map<String, Long> inputImages,
 		final Map<String, Long> outputImages,
 		final Map<ModuleItem<?>, Object> outputs) throws ExecutionException,
-		ServerError, DSOutOfServiceException, DSAccessException
+		ServerError, IOException, DSOutOfServiceException, DSAccessException
 	{
-		final ExperimenterData user = createUser();
-		final BrowseFacility browse = gateway.getFacility(BrowseFacility.class);
-		final DataManagerFacility dm = gateway.getFacility(
-			DataManagerFacility.class);
-		final SecurityContext ctx = new SecurityContext(user.getGroupId());
-		final IQueryPrx query = gateway.getQueryService(ctx);
-
-		for (ModuleItem<?> item : outputs.keySet()) {
-			final Object o = outputs.get(item);
-			if (o instanceof RLong) attachImageToDataset((RLong) o, item, inputImages,
-				browse, query, dm, ctx);
-			else if (o instanceof TableData) attachTableToImages(item, (TableData) o,
-				inputImages, outputImages, dm, ctx);
-			else if (o instanceof ROIData) attachRoiToImages(item, (ROIData) o,
-				inputImages, outputImages, ctx);
-			else if (o instanceof Collection) attachRoisToImages(item,
-				(Collection<ROIData>) o, inputImages, outputImages, ctx);
-			else throw new IllegalArgumentException("Unsupported type: " + o
-				.getClass());
+		// NB: Reuse the client's login, and the gateway joined to it.
+		try (final OMEROSessionPool.Lease lease = omeroService.leaseSession(
+			client))
+		{
+			final OMEROSession session = lease.getSession();
+			gateway = session.getGateway();
+			final BrowseFacility browse = gateway.getFacility(BrowseFacility.class);
+			final DataManagerFacility dm = gateway.getFacility(
+				DataManagerFacility.class);
+			final SecurityContext ctx = session.getSecurityContext();
+			final IQueryPrx query = gateway.getQueryService(ctx);
+
+			for (ModuleItem<?> item : outputs.keySet()) {
+				final Object o = outputs.get(item);
+				if (o instanceof RLong) attachImageToDataset((RLong) o, item,
+					inputImages, browse, query, dm, ctx);
+				else if (o instanceof TableData) attachTableToImages(item,
+					(TableData) o, inputImages, outputImages, dm, ctx);
+				else if (o instanceof ROIData) attachRoiToImages(item, (ROIData) o,
+					inputImages, outputImages, ctx);
+				else if (o instanceof Collection) attachRoisToImages(item,
+					(Collection<ROIData>) o, inputImages, outputImages, ctx);
+				else throw new IllegalArgumentException("Unsupported type: " + o
+					.getClass());
+			}
 		}
 	}
 
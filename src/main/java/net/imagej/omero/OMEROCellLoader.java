@@ -0,0 +1,171 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import io.scif.ImageMetadata;
+import io.scif.util.FormatTools;
+
+import net.imagej.ImgPlus;
+import net.imagej.axis.Axes;
+import net.imagej.axis.CalibratedAxis;
+import net.imglib2.cache.img.CellLoader;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgFactory;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgOptions;
+import net.imglib2.cache.img.SingleCellArrayImg;
+import net.imglib2.img.Img;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * An ImgLib2 {@link CellLoader} which fills each cell of a cached cell image
+ * directly from a tile of OMERO pixels, decoding the bytes into the cell's
+ * primitive array, without going through SCIFIO planes.
+ * <p>
+ * Each cell spans one plane: its Z, C and T dimensions have length 1. Tiles
+ * are read via {@link OMEROFormat.Reader#openTile}, and so benefit from the
+ * reader's tile caches, read-ahead and reconnection after a lost session.
+ * </p>
+ */
+public class OMEROCellLoader<T extends NativeType<T>> implements
+	CellLoader<T>
+{
+
+	private final OMEROFormat.Reader reader;
+	private final int imageIndex;
+	private final int xIndex, yIndex, zIndex, cIndex, tIndex;
+
+	/**
+	 * Creates a loader for the given image of the given reader's metadata.
+	 *
+	 * @param reader Reader of the pixels, initialized with their metadata.
+	 * @param imageIndex Image to read, i.e. the resolution level.
+	 */
+	public OMEROCellLoader(final OMEROFormat.Reader reader,
+		final int imageIndex)
+	{
+		this.reader = reader;
+		this.imageIndex = imageIndex;
+		final ImageMetadata imageMeta = reader.getMetadata().get(imageIndex);
+		xIndex = imageMeta.getAxisIndex(Axes.X);
+		yIndex = imageMeta.getAxisIndex(Axes.Y);
+		zIndex = imageMeta.getAxisIndex(Axes.Z);
+		cIndex = imageMeta.getAxisIndex(Axes.CHANNEL);
+		tIndex = imageMeta.getAxisIndex(Axes.TIME);
+	}
+
+	// -- OMEROCellLoader methods --
+
+	/**
+	 * Creates a lazily loaded image of the given reader's pixels, with one
+	 * cell per server tile.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static ImgPlus<?> createImg(final OMEROFormat.Reader reader,
+		final int imageIndex)
+	{
+		final OMEROFormat.Metadata meta = reader.getMetadata();
+		final ImageMetadata imageMeta = meta.get(imageIndex);
+		final long[] dims = imageMeta.getAxesLengths();
+
+		// one plane per cell, tiled like the server's pixels
+		final int[] cellDims = new int[dims.length];
+		for (int d = 0; d < dims.length; d++) {
+			cellDims[d] = 1;
+		}
+		final int xIndex = imageMeta.getAxisIndex(Axes.X);
+		final int yIndex = imageMeta.getAxisIndex(Axes.Y);
+		cellDims[xIndex] = cellSize(meta.getTileSizeX(), dims[xIndex]);
+		cellDims[yIndex] = cellSize(meta.getTileSizeY(), dims[yIndex]);
+
+		final ReadOnlyCachedCellImgFactory factory =
+			new ReadOnlyCachedCellImgFactory(ReadOnlyCachedCellImgOptions.options()
+				.cellDimensions(cellDims));
+		final NativeType type = type(imageMeta.getPixelType());
+		final Img img = factory.create(dims, type, //
+			new OMEROCellLoader(reader, imageIndex));
+
+		final CalibratedAxis[] axes = imageMeta.getAxes().toArray(
+			new CalibratedAxis[0]);
+		return new ImgPlus(img, imageMeta.getName(), axes);
+	}
+
+	// -- CellLoader methods --
+
+	@Override
+	public void load(final SingleCellArrayImg<T, ?> cell) throws Exception {
+		final int[] pos = { pos(cell, zIndex), pos(cell, cIndex), //
+			pos(cell, tIndex) };
+		final byte[] tile = reader.openTile(imageIndex, pos, //
+			(int) cell.min(xIndex), (int) cell.min(yIndex), //
+			(int) cell.dimension(xIndex), (int) cell.dimension(yIndex));
+		PixelUtils.decode(tile, cell.getStorageArray());
+	}
+
+	// -- Utility methods --
+
+	/** Gets the ImgLib2 type corresponding to the given SCIFIO pixel type. */
+	static NativeType<?> type(final int pixelType) {
+		switch (pixelType) {
+			case FormatTools.INT8:
+				return new ByteType();
+			case FormatTools.UINT8:
+				return new UnsignedByteType();
+			case FormatTools.INT16:
+				return new ShortType();
+			case FormatTools.UINT16:
+				return new UnsignedShortType();
+			case FormatTools.INT32:
+				return new IntType();
+			case FormatTools.UINT32:
+				return new UnsignedIntType();
+			case FormatTools.FLOAT:
+				return new FloatType();
+			case FormatTools.DOUBLE:
+				return new DoubleType();
+			default:
+				throw new IllegalArgumentException("Unsupported pixel type: " + //
+					FormatTools.getPixelTypeString(pixelType));
+		}
+	}
+
+	// -- Helper methods --
+
+	private static int pos(final SingleCellArrayImg<?, ?> cell, final int d) {
+		return d < 0 ? 0 : (int) cell.min(d);
+	}
+
+	private static int cellSize(final int tileSize, final long length) {
+		return (int) (tileSize > 0 ? Math.min(tileSize, length) : length);
+	}
+
+}
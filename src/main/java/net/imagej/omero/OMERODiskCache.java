@@ -0,0 +1,492 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A persistent on-disk cache of pixel tiles downloaded from OMERO, so that
+ * unchanged images need not be downloaded again by later sessions.
+ * <p>
+ * Each tile is stored in its own chunk file, grouped by server, by the group
+ * and user it was read as, by pixels ID and by a version string identifying
+ * the state of the pixels on the server, such as their checksum and last
+ * update event. Tiles of another version are
+ * never returned, and are deleted once tiles of a newer version are stored.
+ * Chunk files are read via memory mapping.
+ * </p>
+ * <p>
+ * An in-memory index of the chunk files, in access order, is built from the
+ * directory on first use. Whenever the total size exceeds the configured
+ * byte budget, the least recently used tiles are deleted until the total is
+ * back down to a fraction {@value #LOW_WATERMARK} of the budget. File I/O happens outside
+ * the index's lock, so readers do not wait for each other's disk accesses.
+ * </p>
+ * <p>
+ * The cache is disabled until a directory is configured, either via
+ * {@link #setDirectory} or the {@value #DIRECTORY_PROPERTY} system property.
+ * A single instance is shared by all {@link OMEROFormat.Reader}s via
+ * {@link OMEROService#getDiskCache()}.
+ * </p>
+ */
+public class OMERODiskCache {
+
+	/** System property specifying the cache directory. */
+	public static final String DIRECTORY_PROPERTY = "imagej.omero.cache.dir";
+
+	/** System property specifying the byte budget of the cache. */
+	public static final String MAX_BYTES_PROPERTY = "imagej.omero.cache.maxBytes";
+
+	/** Default byte budget for cached tile data: 16 GB. */
+	public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024 * 1024;
+
+	/** Fraction of the byte budget down to which eviction deletes tiles. */
+	public static final double LOW_WATERMARK = 0.9;
+
+	private static final String SUFFIX = ".tile";
+
+	// -- Fields --
+
+	private Path directory;
+	private long maxBytes;
+
+	/** Sizes of the indexed chunk files, in access order. */
+	private final LinkedHashMap<Path, Long> index = //
+		new LinkedHashMap<>(16, 0.75f, true);
+
+	/** Whether the index includes the chunk files already in the directory. */
+	private boolean scanned;
+
+	/** Total size of the indexed chunk files. */
+	private long bytes;
+
+	// -- Constructors --
+
+	public OMERODiskCache() {
+		final String dir = System.getProperty(DIRECTORY_PROPERTY);
+		setDirectory(dir == null || dir.isEmpty() ? null : Paths.get(dir));
+		setMaxBytes(Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES));
+	}
+
+	public OMERODiskCache(final Path directory, final long maxBytes) {
+		setDirectory(directory);
+		setMaxBytes(maxBytes);
+	}
+
+	// -- OMERODiskCache methods --
+
+	/**
+	 * Gets the cached tile with the given key and version, or null if the tile
+	 * is not cached, or the cache is disabled.
+	 */
+	public byte[] get(final OMEROTileCache.Key key, final String version) {
+		final Path file;
+		synchronized (this) {
+			if (directory == null) return null;
+			file = file(key, version);
+		}
+		scan();
+		final byte[] data;
+		try (final FileChannel channel = FileChannel.open(file,
+			StandardOpenOption.READ))
+		{
+			final MappedByteBuffer buffer = channel.map(
+				FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			data = new byte[buffer.capacity()];
+			buffer.get(data);
+		}
+		catch (final IOException exc) {
+			synchronized (this) {
+				final Long size = index.remove(file);
+				if (size != null) bytes -= size;
+			}
+			return null;
+		}
+		synchronized (this) {
+			record(file, data.length);
+		}
+		// NB: The modification time records the last access across processes.
+		touch(file);
+		return data;
+	}
+
+	/**
+	 * Stores the given tile data with the given key and version, deleting any
+	 * tiles of other versions of the same pixels, and evicting least recently
+	 * used tiles as needed to stay within the byte budget. Does nothing if the
+	 * cache is disabled.
+	 */
+	public void put(final OMEROTileCache.Key key, final String version,
+		final byte[] data)
+	{
+		if (data == null) return;
+		final Path file;
+		synchronized (this) {
+			if (directory == null || data.length > maxBytes) return;
+			file = file(key, version);
+		}
+		scan();
+		try {
+			final Path versionDir = file.getParent();
+			if (!Files.isDirectory(versionDir)) {
+				deleteStaleVersions(versionDir);
+				Files.createDirectories(versionDir);
+			}
+
+			// NB: Write to a temporary file first, so that other processes
+			// sharing the cache never see a partially written tile.
+			final Path temp = Files.createTempFile(versionDir, "tile", ".tmp");
+			try (final FileChannel channel = FileChannel.open(temp,
+				StandardOpenOption.WRITE))
+			{
+				final ByteBuffer buffer = ByteBuffer.wrap(data);
+				while (buffer.hasRemaining()) channel.write(buffer);
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (final IOException exc) {
+			// NB: The cache is best effort; the tile can always be downloaded.
+			return;
+		}
+		final List<Path> victims;
+		synchronized (this) {
+			record(file, data.length);
+			victims = evict();
+		}
+		delete(victims);
+	}
+
+	/**
+	 * Deletes all cached tiles of the given pixels on the given server, for
+	 * every group and user.
+	 */
+	public void invalidate(final String host, final int port,
+		final long pixelsID)
+	{
+		final Path serverDir;
+		synchronized (this) {
+			if (directory == null) return;
+			serverDir = directory.resolve(serverName(host, port));
+		}
+		final String name = Long.toString(pixelsID);
+		final List<Path> pixelsDirs = new ArrayList<>();
+		for (final Path groupDir : subdirectories(serverDir)) {
+			for (final Path userDir : subdirectories(groupDir)) {
+				pixelsDirs.add(userDir.resolve(name));
+			}
+		}
+		synchronized (this) {
+			for (final Path pixelsDir : pixelsDirs) {
+				forget(pixelsDir);
+			}
+		}
+		for (final Path pixelsDir : pixelsDirs) {
+			delete(pixelsDir);
+		}
+	}
+
+	/** Deletes all cached tiles. */
+	public void clear() {
+		final Path dir;
+		synchronized (this) {
+			if (directory == null) return;
+			dir = directory;
+			index.clear();
+			bytes = 0;
+			scanned = true;
+		}
+		try (final DirectoryStream<Path> dirs = Files.newDirectoryStream(dir)) {
+			for (final Path d : dirs) {
+				delete(d);
+			}
+		}
+		catch (final IOException exc) {
+			// NB: Nothing cached yet.
+		}
+	}
+
+	/** Gets whether a cache directory is configured. */
+	public synchronized boolean isEnabled() {
+		return directory != null;
+	}
+
+	/** Gets the cache directory, or null if the cache is disabled. */
+	public synchronized Path getDirectory() {
+		return directory;
+	}
+
+	/** Sets the cache directory; null disables the cache. */
+	public synchronized void setDirectory(final Path directory) {
+		this.directory = directory;
+		index.clear();
+		bytes = 0;
+		scanned = false;
+	}
+
+	/** Gets the total number of bytes of indexed tile data. */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/** Gets the byte budget for cached tile data. */
+	public synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/** Sets the byte budget, evicting tiles as needed to stay within it. */
+	public void setMaxBytes(final long maxBytes) {
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("Negative byte budget: " + maxBytes);
+		}
+		final List<Path> victims;
+		synchronized (this) {
+			this.maxBytes = maxBytes;
+			victims = evict();
+		}
+		delete(victims);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "OMERODiskCache[directory=" + directory + ", bytes=" + bytes +
+			"/" + maxBytes + "]";
+	}
+
+	// -- Helper methods --
+
+	private Path file(final OMEROTileCache.Key key, final String version) {
+		final String name = key.getLevel() + "_" + key.getZ() + "_" + //
+			key.getC() + "_" + key.getT() + "_" + key.getX() + "_" + //
+			key.getY() + "_" + key.getW() + "_" + key.getH() + SUFFIX;
+		return directory.resolve(serverName(key.getHost(), key.getPort())) //
+			.resolve(Long.toString(key.getGroupID())) //
+			.resolve(Long.toString(key.getUserID())) //
+			.resolve(Long.toString(key.getPixelsID())) //
+			.resolve(sanitize(version)).resolve(name);
+	}
+
+	/**
+	 * Indexes the chunk files already in the cache directory, once. The
+	 * directory is walked without holding the lock; tiles indexed meanwhile
+	 * count as more recently used than those found on disk.
+	 */
+	private void scan() {
+		final Path dir;
+		synchronized (this) {
+			if (scanned || directory == null) return;
+			dir = directory;
+		}
+		final List<Chunk> chunks = chunks(dir);
+		chunks.sort(Comparator.comparing(c -> c.lastAccess));
+		final List<Path> victims;
+		synchronized (this) {
+			if (scanned || !dir.equals(directory)) return;
+			final Map<Path, Long> recent = new LinkedHashMap<>(index);
+			index.clear();
+			bytes = 0;
+			for (final Chunk chunk : chunks) {
+				record(chunk.path, chunk.size);
+			}
+			for (final Map.Entry<Path, Long> entry : recent.entrySet()) {
+				record(entry.getKey(), entry.getValue());
+			}
+			scanned = true;
+			victims = evict();
+		}
+		delete(victims);
+	}
+
+	/** Deletes the sibling directories of the given version directory. */
+	private void deleteStaleVersions(final Path versionDir) throws IOException {
+		final Path pixelsDir = versionDir.getParent();
+		if (!Files.isDirectory(pixelsDir)) return;
+		try (final DirectoryStream<Path> dirs = //
+			Files.newDirectoryStream(pixelsDir))
+		{
+			for (final Path dir : dirs) {
+				if (dir.equals(versionDir)) continue;
+				synchronized (this) {
+					forget(dir);
+				}
+				delete(dir);
+			}
+		}
+	}
+
+	/** Indexes the given chunk file as the most recently used. */
+	private void record(final Path file, final long size) {
+		final Long previous = index.put(file, size);
+		bytes += size - (previous == null ? 0 : previous);
+	}
+
+	/** Removes all chunk files under the given directory from the index. */
+	private void forget(final Path path) {
+		final Iterator<Map.Entry<Path, Long>> iter = index.entrySet().iterator();
+		while (iter.hasNext()) {
+			final Map.Entry<Path, Long> entry = iter.next();
+			if (!entry.getKey().startsWith(path)) continue;
+			bytes -= entry.getValue();
+			iter.remove();
+		}
+	}
+
+	/**
+	 * Removes least recently used tiles from the index, if over budget, until
+	 * below the low watermark.
+	 *
+	 * @return the chunk files to delete
+	 */
+	private List<Path> evict() {
+		if (bytes <= maxBytes) return Collections.emptyList();
+		final long target = (long) (maxBytes * LOW_WATERMARK);
+		final List<Path> victims = new ArrayList<>();
+		final Iterator<Map.Entry<Path, Long>> iter = index.entrySet().iterator();
+		while (bytes > target && iter.hasNext()) {
+			final Map.Entry<Path, Long> entry = iter.next();
+			victims.add(entry.getKey());
+			bytes -= entry.getValue();
+			iter.remove();
+		}
+		return victims;
+	}
+
+	/** Lists all chunk files in the given directory. */
+	private static List<Chunk> chunks(final Path dir) {
+		if (!Files.isDirectory(dir)) return new ArrayList<>();
+		try (final Stream<Path> files = Files.walk(dir)) {
+			return files.filter(f -> f.toString().endsWith(SUFFIX)) //
+				.map(Chunk::new).collect(Collectors.toList());
+		}
+		catch (final IOException | RuntimeException exc) {
+			// NB: Modified concurrently; index what can be found later.
+			return new ArrayList<>();
+		}
+	}
+
+	/** Lists the directories in the given directory, if it exists. */
+	private static List<Path> subdirectories(final Path dir) {
+		final List<Path> dirs = new ArrayList<>();
+		if (!Files.isDirectory(dir)) return dirs;
+		try (final DirectoryStream<Path> entries = Files.newDirectoryStream(dir,
+			Files::isDirectory))
+		{
+			for (final Path entry : entries) {
+				dirs.add(entry);
+			}
+		}
+		catch (final IOException exc) {
+			// NB: Modified concurrently; nothing more to find.
+		}
+		return dirs;
+	}
+
+	private static void delete(final List<Path> files) {
+		for (final Path file : files) {
+			try {
+				Files.deleteIfExists(file);
+			}
+			catch (final IOException exc) {
+				// NB: Perhaps still mapped or in use; the next scan finds it.
+			}
+		}
+	}
+
+	private static void delete(final Path path) {
+		try (final Stream<Path> files = Files.walk(path)) {
+			files.sorted(Comparator.reverseOrder()).forEach(f -> {
+				try {
+					Files.deleteIfExists(f);
+				}
+				catch (final IOException exc) {
+					// NB: Leave it for a later eviction.
+				}
+			});
+		}
+		catch (final IOException exc) {
+			// NB: Already gone.
+		}
+	}
+
+	private static void touch(final Path file) {
+		try {
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System
+				.currentTimeMillis()));
+		}
+		catch (final IOException exc) {
+			// NB: Evicted concurrently.
+		}
+	}
+
+	private static String serverName(final String host, final int port) {
+		return sanitize(host + "_" + port);
+	}
+
+	private static String sanitize(final String name) {
+		return name.replaceAll("[^A-Za-z0-9_-]", "_");
+	}
+
+	// -- Helper classes --
+
+	/** A chunk file holding one cached tile. */
+	private static class Chunk {
+
+		private final Path path;
+		private long size;
+		private FileTime lastAccess = FileTime.fromMillis(0);
+
+		private Chunk(final Path path) {
+			this.path = path;
+			try {
+				size = Files.size(path);
+				lastAccess = Files.getLastModifiedTime(path);
+			}
+			catch (final IOException exc) {
+				// NB: Deleted concurrently; treat as empty.
+			}
+		}
+	}
+
+}
@@ -45,6 +45,7 @@ import io.scif.util.FormatTools;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -52,7 +53,16 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import net.imagej.axis.Axes;
@@ -68,11 +78,15 @@ import org.scijava.Priority;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
 import org.scijava.table.Table;
+import org.scijava.thread.ThreadService;
 import org.scijava.util.ArrayUtils;
 
 import omero.RInt;
 import omero.ServerError;
+import omero.api.Callback_RawPixelsStore_getTile;
 import omero.api.RawPixelsStorePrx;
+import omero.api.ResolutionDescription;
+import omero.api.ServiceFactoryPrx;
 import omero.gateway.Gateway;
 import omero.gateway.SecurityContext;
 import omero.gateway.exception.DSAccessException;
@@ -81,12 +95,18 @@ import omero.gateway.facility.BrowseFacility;
 import omero.gateway.facility.DataManagerFacility;
 import omero.gateway.model.DatasetData;
 import omero.gateway.model.ImageData;
+import omero.model.Channel;
+import omero.model.Event;
+import omero.model.IObject;
 import omero.model.Image;
 import omero.model.Length;
 import omero.model.Pixels;
+import omero.model.StatsInfo;
+import omero.model.StatsInfoI;
 import omero.model.Time;
 import omero.model.enums.UnitsLength;
 import omero.model.enums.UnitsTime;
+import omero.sys.ParametersI;
 
 /**
  * A SCIFIO {@link Format} which provides read/write access to pixels on an
@@ -176,18 +196,123 @@ public class OMEROFormat extends AbstractFormat {
 		@Field
 		private String pixelType;
 
+		/** Width of the server's native tiles. */
+		@Field
+		private int tileSizeX;
+
+		/** Height of the server's native tiles. */
+		@Field
+		private int tileSizeY;
+
 		@Field
 		private ROITree rois;
 
 		@Field
 		private List<Table<?, ?>> tables;
 
+		/** Minimum size of the session's pool of pixels stores for reading. */
+		@Field(label = "Pixels store pool size")
+		private int poolSize = RawPixelsStorePool.DEFAULT_MAX_SIZE;
+
+		/** Maximum number of planes to read ahead during sequential access. */
+		@Field(label = "Read-ahead depth")
+		private int prefetch = 4;
+
+		/**
+		 * Number of consecutive Z planes to fetch in a single request; 1 fetches
+		 * each plane separately.
+		 */
+		@Field(label = "Plane batch size")
+		private int batchSize = 1;
+
+		/** Left edge of the region to read; 0 starts at the image edge. */
+		@Field(label = "Crop X")
+		private int cropX;
+
+		/** Top edge of the region to read; 0 starts at the image edge. */
+		@Field(label = "Crop Y")
+		private int cropY;
+
+		/** Width of the region to read; 0 extends to the image edge. */
+		@Field(label = "Crop width")
+		private int cropWidth;
+
+		/** Height of the region to read; 0 extends to the image edge. */
+		@Field(label = "Crop height")
+		private int cropHeight;
+
+		/** First Z plane to read. */
+		@Field(label = "First Z")
+		private int zStart;
+
+		/** Last Z plane to read, inclusive; -1 reads through the last plane. */
+		@Field(label = "Last Z")
+		private int zEnd = -1;
+
+		/** First timepoint to read. */
+		@Field(label = "First T")
+		private int tStart;
+
+		/** Last timepoint to read, inclusive; -1 reads through the last one. */
+		@Field(label = "Last T")
+		private int tEnd = -1;
+
+		/** Comma-separated indices of the channels to read; null reads all. */
+		@Field(label = "Channels")
+		private String channels;
+
+		/**
+		 * Number of planes which may wait to be uploaded in the background; 0
+		 * uploads each plane synchronously.
+		 */
+		@Field(label = "Upload queue size")
+		private int uploadQueueSize;
+
+		/**
+		 * Number of background threads uploading queued planes, each with its
+		 * own raw pixels store.
+		 */
+		@Field(label = "Upload threads")
+		private int uploadThreads = 1;
+
+		/**
+		 * Number of raw pixels stores writing concurrently to the new image;
+		 * more than one implies a background upload, with a thread per store.
+		 */
+		@Field(label = "Upload streams")
+		private int uploadStreams = 1;
+
+		/**
+		 * Path to a local journal of uploaded planes, from which an interrupted
+		 * upload can be resumed; null to upload without a journal.
+		 */
+		@Field(label = "Upload journal")
+		private String journal;
+
 		/** Cached {@code Image} descriptor. */
 		private Image image;
 
 		/** Cached {@code Pixels} descriptor. */
 		private Pixels pixels;
 
+		/** Widths of the server's resolution levels, full resolution first. */
+		private int[] resolutionSizeX;
+
+		/** Heights of the server's resolution levels, full resolution first. */
+		private int[] resolutionSizeY;
+
+		/** OMERO session used to parse this metadata, reused for reading. */
+		private OMEROSession session;
+
+		/** Lease of {@link #session}, handed back when this metadata closes. */
+		private OMEROSessionPool.Lease lease;
+
+		/** Axis mappings of each image, computed on first use. */
+		private volatile AxisMap[] axisMaps;
+
+		/** Parsed channel list, with the string it was parsed from. */
+		private volatile ChannelList parsedChannels;
+
 		// -- io.scif.omero.OMEROFormat.Metadata methods --
 
 		public OMEROLocation getCredentials() {
@@ -258,6 +383,14 @@ public class OMEROFormat extends AbstractFormat {
 			return pixelType;
 		}
 
+		public int getTileSizeX() {
+			return tileSizeX;
+		}
+
+		public int getTileSizeY() {
+			return tileSizeY;
+		}
+
 		public ROITree getRois() {
 			return rois;
 		}
@@ -266,6 +399,175 @@ public class OMEROFormat extends AbstractFormat {
 			return tables;
 		}
 
+		public int getPoolSize() {
+			return poolSize;
+		}
+
+		public int getPrefetch() {
+			return prefetch;
+		}
+
+		public int getBatchSize() {
+			return batchSize;
+		}
+
+		public int getCropX() {
+			return cropX;
+		}
+
+		public int getCropY() {
+			return cropY;
+		}
+
+		public int getCropWidth() {
+			return cropWidth;
+		}
+
+		public int getCropHeight() {
+			return cropHeight;
+		}
+
+		public int getZStart() {
+			return zStart;
+		}
+
+		public int getZEnd() {
+			return zEnd;
+		}
+
+		public int getTStart() {
+			return tStart;
+		}
+
+		public int getTEnd() {
+			return tEnd;
+		}
+
+		public String getChannels() {
+			return channels;
+		}
+
+		public int getUploadQueueSize() {
+			return uploadQueueSize;
+		}
+
+		public int getUploadThreads() {
+			return uploadThreads;
+		}
+
+		public int getUploadStreams() {
+			return uploadStreams;
+		}
+
+		public String getJournal() {
+			return journal;
+		}
+
+		/** Gets the number of Z planes to read. */
+		public int getSubsetSizeZ() {
+			return (zEnd < 0 ? sizeZ - 1 : zEnd) - zStart + 1;
+		}
+
+		/** Gets the number of channels to read. */
+		public int getSubsetSizeC() {
+			return channels == null ? sizeC : channelIndices().length;
+		}
+
+		/** Gets the number of timepoints to read. */
+		public int getSubsetSizeT() {
+			return (tEnd < 0 ? sizeT - 1 : tEnd) - tStart + 1;
+		}
+
+		/**
+		 * Gets the region to read of the given resolution level, in that
+		 * level's pixel coordinates.
+		 *
+		 * @return the region, as an {x, y, width, height} array
+		 */
+		public int[] getCrop(final int resolution) {
+			return getCrop(resolution, new int[4]);
+		}
+
+		/**
+		 * Gets the region to read of the given resolution level, storing it into
+		 * the given {x, y, width, height} array.
+		 */
+		public int[] getCrop(final int resolution, final int[] crop) {
+			final long levelSizeX = getResolutionSizeX(resolution);
+			final long levelSizeY = getResolutionSizeY(resolution);
+			if (sizeX <= 0 || sizeY <= 0) {
+				crop[0] = crop[1] = 0;
+				crop[2] = (int) levelSizeX;
+				crop[3] = (int) levelSizeY;
+				return crop;
+			}
+			final int w = cropWidth > 0 ? cropWidth : sizeX - cropX;
+			final int h = cropHeight > 0 ? cropHeight : sizeY - cropY;
+			final int x = (int) (cropX * levelSizeX / sizeX);
+			final int y = (int) (cropY * levelSizeY / sizeY);
+			crop[0] = x;
+			crop[1] = y;
+			crop[2] = (int) Math.max(1, Math.min(w * levelSizeX / sizeX,
+				levelSizeX - x));
+			crop[3] = (int) Math.max(1, Math.min(h * levelSizeY / sizeY,
+				levelSizeY - y));
+			return crop;
+		}
+
+		/**
+		 * Converts the given Z, C and T positions within the subset to be read
+		 * into positions within the pixels on the server.
+		 */
+		public int[] toServerZCT(final int[] zct) {
+			return toServerZCT(zct, new int[3]);
+		}
+
+		/**
+		 * Converts the given Z, C and T positions within the subset to be read
+		 * into positions within the pixels on the server, storing them into the
+		 * given array, which may be the same as the input.
+		 */
+		public int[] toServerZCT(final int[] zct, final int[] serverZCT) {
+			final int c = channels == null ? zct[1] : channelIndices()[zct[1]];
+			serverZCT[0] = zStart + zct[0];
+			serverZCT[1] = c;
+			serverZCT[2] = tStart + zct[2];
+			return serverZCT;
+		}
+
+		/**
+		 * Verifies that the subset to be read lies within the pixels.
+		 *
+		 * @throws FormatException if the crop region, Z or T range, or channel
+		 *           list is out of bounds
+		 */
+		public void checkSubset() throws FormatException {
+			if (cropX < 0 || cropY < 0 || cropWidth < 0 || cropHeight < 0 ||
+				cropX + Math.max(cropWidth, 1) > sizeX ||
+				cropY + Math.max(cropHeight, 1) > sizeY)
+			{
+				throw new FormatException("Invalid crop region: " + cropX + "," +
+					cropY + " " + cropWidth + "x" + cropHeight);
+			}
+			if (zStart < 0 || zEnd >= sizeZ || getSubsetSizeZ() < 1) {
+				throw new FormatException("Invalid Z range: " + zStart + "-" + zEnd);
+			}
+			if (tStart < 0 || tEnd >= sizeT || getSubsetSizeT() < 1) {
+				throw new FormatException("Invalid T range: " + tStart + "-" + tEnd);
+			}
+			if (channels == null) return;
+			try {
+				final int[] indices = channelIndices();
+				if (indices.length == 0) throw new NumberFormatException();
+				for (final int c : indices) {
+					if (c < 0 || c >= sizeC) throw new NumberFormatException();
+				}
+			}
+			catch (final NumberFormatException exc) {
+				throw new FormatException("Invalid channel list: " + channels);
+			}
+		}
+
 		public Image getImage() {
 			return image;
 		}
@@ -274,6 +576,71 @@ public class OMEROFormat extends AbstractFormat {
 			return pixels;
 		}
 
+		/**
+		 * Gets the number of resolution levels of the pixels. Each level is
+		 * exposed as a separate SCIFIO image, starting with the full resolution
+		 * at image index 0.
+		 */
+		public int getResolutionCount() {
+			return resolutionSizeX == null ? 1 : resolutionSizeX.length;
+		}
+
+		/** Gets the width of the given resolution level. */
+		public int getResolutionSizeX(final int resolution) {
+			return resolutionSizeX == null ? sizeX : resolutionSizeX[resolution];
+		}
+
+		/** Gets the height of the given resolution level. */
+		public int getResolutionSizeY(final int resolution) {
+			return resolutionSizeY == null ? sizeY : resolutionSizeY[resolution];
+		}
+
+		/**
+		 * Gets the server resolution level (as passed to
+		 * {@link RawPixelsStorePrx#setResolutionLevel}) of the given image.
+		 * OMERO numbers its levels from the lowest resolution upward, whereas
+		 * the images are ordered from the full resolution downward.
+		 *
+		 * @return the server level, or {@link RawPixelsStorePool#DEFAULT_LEVEL}
+		 *         if the pixels have only one resolution
+		 */
+		public int getServerLevel(final int imageIndex) {
+			final int resolutionCount = getResolutionCount();
+			return resolutionCount == 1 ? RawPixelsStorePool.DEFAULT_LEVEL
+				: resolutionCount - 1 - imageIndex;
+		}
+
+		public OMEROSession getSession() {
+			return session;
+		}
+
+		/**
+		 * Sets the dimensions of the server's resolution levels, ordered from
+		 * the full resolution downward.
+		 */
+		public void setResolutionSizes(final int[] sizeX, final int[] sizeY) {
+			if (sizeX != null && (sizeY == null || sizeX.length != sizeY.length)) {
+				throw new IllegalArgumentException("Mismatched resolution sizes");
+			}
+			resolutionSizeX = sizeX;
+			resolutionSizeY = sizeY;
+		}
+
+		public void setSession(final OMEROSession session) {
+			setSession((OMEROSessionPool.Lease) null);
+			this.session = session;
+		}
+
+		/**
+		 * Sets the session of the given lease, which this metadata hands back
+		 * when closed.
+		 */
+		public void setSession(final OMEROSessionPool.Lease lease) {
+			if (this.lease != null && this.lease != lease) this.lease.close();
+			this.lease = lease;
+			session = lease == null ? null : lease.getSession();
+		}
+
 		public void setName(final String name) {
 			this.name = name;
 		}
@@ -350,6 +717,14 @@ public class OMEROFormat extends AbstractFormat {
 			this.pixelType = pixelType;
 		}
 
+		public void setTileSizeX(final int tileSizeX) {
+			this.tileSizeX = tileSizeX;
+		}
+
+		public void setTileSizeY(final int tileSizeY) {
+			this.tileSizeY = tileSizeY;
+		}
+
 		public void setRois(final ROITree rois) {
 			this.rois = rois;
 		}
@@ -358,6 +733,70 @@ public class OMEROFormat extends AbstractFormat {
 			this.tables = tables;
 		}
 
+		public void setPoolSize(final int poolSize) {
+			this.poolSize = poolSize;
+		}
+
+		public void setPrefetch(final int prefetch) {
+			this.prefetch = prefetch;
+		}
+
+		public void setBatchSize(final int batchSize) {
+			this.batchSize = batchSize;
+		}
+
+		public void setCropX(final int cropX) {
+			this.cropX = cropX;
+		}
+
+		public void setCropY(final int cropY) {
+			this.cropY = cropY;
+		}
+
+		public void setCropWidth(final int cropWidth) {
+			this.cropWidth = cropWidth;
+		}
+
+		public void setCropHeight(final int cropHeight) {
+			this.cropHeight = cropHeight;
+		}
+
+		public void setZStart(final int zStart) {
+			this.zStart = zStart;
+		}
+
+		public void setZEnd(final int zEnd) {
+			this.zEnd = zEnd;
+		}
+
+		public void setTStart(final int tStart) {
+			this.tStart = tStart;
+		}
+
+		public void setTEnd(final int tEnd) {
+			this.tEnd = tEnd;
+		}
+
+		public void setChannels(final String channels) {
+			this.channels = channels;
+		}
+
+		public void setUploadQueueSize(final int uploadQueueSize) {
+			this.uploadQueueSize = uploadQueueSize;
+		}
+
+		public void setUploadThreads(final int uploadThreads) {
+			this.uploadThreads = uploadThreads;
+		}
+
+		public void setUploadStreams(final int uploadStreams) {
+			this.uploadStreams = uploadStreams;
+		}
+
+		public void setJournal(final String journal) {
+			this.journal = journal;
+		}
+
 		public void setImage(final Image image) {
 			this.image = image;
 			if (image == null) return;
@@ -384,8 +823,31 @@ public class OMEROFormat extends AbstractFormat {
 			}
 		}
 
+		/**
+		 * Gets the mapping of the given image's axes onto OMERO's dimensions,
+		 * computing it only once per image.
+		 */
+		AxisMap axisMap(final int imageIndex) {
+			final ImageMetadata imageMeta = get(imageIndex);
+			AxisMap[] maps = axisMaps;
+			if (maps == null || maps.length != getImageCount()) {
+				maps = axisMaps = new AxisMap[getImageCount()];
+			}
+			AxisMap axisMap = maps[imageIndex];
+			if (axisMap == null || !axisMap.isFor(imageMeta)) {
+				axisMap = maps[imageIndex] = new AxisMap(imageMeta);
+			}
+			return axisMap;
+		}
+
 		// -- io.scif.Metadata methods --
 
+		@Override
+		public void close(final boolean fileOnly) throws IOException {
+			if (!fileOnly) setSession((OMEROSessionPool.Lease) null);
+			super.close(fileOnly);
+		}
+
 		@Override
 		public void populateImageMetadata() {
 			// TODO: Consider whether this check is really the right approach.
@@ -393,6 +855,37 @@ public class OMEROFormat extends AbstractFormat {
 			// metadata fields overwrite the values populated by the ImgSaver.
 			if (getImageCount() > 0) return; // already populated
 
+			// populate SCIFIO ImageMetadata, one image per resolution level
+			final int resolutionCount = getResolutionCount();
+			createImageMetadata(resolutionCount);
+			for (int r = 0; r < resolutionCount; r++) {
+				final ImageMetadata imageMeta = get(r);
+				populateImageMetadata(imageMeta, getResolutionSizeX(r),
+					getResolutionSizeY(r), getCrop(r));
+				imageMeta.setName(r == 0 ? name : name + " (resolution " + r + ")");
+			}
+
+			// NB: ROIs and tables are relative to the full resolution image.
+			get(0).setROIs(rois);
+			get(0).setTables(tables);
+		}
+
+		// -- Helper methods --
+
+		/** Gets the parsed channel list, parsing it only when it changes. */
+		private int[] channelIndices() {
+			final String list = channels;
+			final ChannelList parsed = parsedChannels;
+			if (parsed != null && parsed.source == list) return parsed.indices;
+			final int[] indices = Arrays.stream(list.split(",")).map(String::trim) //
+				.mapToInt(Integer::parseInt).toArray();
+			parsedChannels = new ChannelList(list, indices);
+			return indices;
+		}
+
+		private void populateImageMetadata(final ImageMetadata imageMeta,
+			final int levelSizeX, final int levelSizeY, final int[] crop)
+		{
 			// construct dimensional axes
 			final LinearAxis xAxis = axis(Axes.X, physSizeX);
 			final LinearAxis yAxis = axis(Axes.Y, physSizeY);
@@ -404,21 +897,43 @@ public class OMEROFormat extends AbstractFormat {
 			// should take care of dimension swapping incompatible orderings.
 			// But for now, this sidesteps the issue.
 			final CalibratedAxis[] axes = { xAxis, yAxis, cAxis, zAxis, tAxis };
-			final long[] axisLengths = { sizeX, sizeY, sizeC, sizeZ, sizeT };
+			final long[] axisLengths = { crop[2], crop[3], getSubsetSizeC(),
+				getSubsetSizeZ(), getSubsetSizeT() };
+
+			// downsampled levels have correspondingly larger pixels
+			if (levelSizeX != sizeX) {
+				xAxis.setScale(xAxis.scale() * sizeX / levelSizeX);
+			}
+			if (levelSizeY != sizeY) {
+				yAxis.setScale(yAxis.scale() * sizeY / levelSizeY);
+			}
+
+			// subsets start away from the origin
+			xAxis.setOrigin(crop[0] * xAxis.scale());
+			yAxis.setOrigin(crop[1] * yAxis.scale());
+			zAxis.setOrigin(zStart * zAxis.scale());
+			tAxis.setOrigin(tStart * tAxis.scale());
 
 			// obtain pixel type
 			final int pixType = FormatTools.pixelTypeFromString(pixelType);
 
-			// populate SCIFIO ImageMetadata
-			createImageMetadata(1);
-			final ImageMetadata imageMeta = get(0);
-			imageMeta.setName(name);
 			imageMeta.setAxes(axes, axisLengths);
 			imageMeta.setPixelType(pixType);
+			imageMeta.setLittleEndian(false); // OMERO transfers big-endian pixels
 			imageMeta.setMetadataComplete(true);
 			imageMeta.setOrderCertain(true);
-			imageMeta.setROIs(rois);
-			imageMeta.setTables(tables);
+		}
+
+		/** A channel list, parsed from the given string. */
+		private static class ChannelList {
+
+			private final String source;
+			private final int[] indices;
+
+			private ChannelList(final String source, final int[] indices) {
+				this.source = source;
+				this.indices = indices;
+			}
 		}
 	}
 
@@ -438,13 +953,18 @@ public class OMEROFormat extends AbstractFormat {
 			// parse OMERO credentials from source string
 			parseArguments(metadataService, stream.getFileName(), meta);
 
-			// initialize OMERO session
-			final OMEROSession session;
+			// initialize OMERO session, leased until the metadata is closed
+			final OMEROSessionPool.Lease lease = omeroService.leaseSession(meta
+				.getCredentials());
 			final Pixels pix;
+			boolean parsed = false;
 			try {
-				session = omeroService.session(meta.getCredentials());
+				final OMEROSession session = lease.getSession();
 				pix = session.loadPixels(meta);
 				session.loadImageName(meta);
+				loadStoreInfo(session, meta);
+				meta.setSession(lease);
+				parsed = true;
 			}
 			catch (final ServerError err) {
 				throw communicationException(err);
@@ -452,6 +972,9 @@ public class OMEROFormat extends AbstractFormat {
 			catch (final Ice.LocalException exc) {
 				throw versionException(exc);
 			}
+			finally {
+				if (!parsed) lease.close();
+			}
 
 			// Set table and rois to lazy loaders
 			meta.setRois(new LazyROITree(null, meta.getImageID(), //
@@ -476,68 +999,323 @@ public class OMEROFormat extends AbstractFormat {
 
 			// parse pixel type
 			meta.setPixelType(pix.getPixelsType().getValue().getValue());
+
+			meta.checkSubset();
+		}
+
+		/**
+		 * Records the server's native tile size, and the dimensions of the
+		 * pixels' resolution levels, if any.
+		 */
+		private void loadStoreInfo(final OMEROSession session,
+			final Metadata meta) throws ServerError
+		{
+			final RawPixelsStorePool pool = session.getPixelsPool();
+			final RawPixelsStorePrx store = pool.lease(meta.getPixelsID());
+			try {
+				final int[] tileSize = store.getTileSize();
+				meta.setTileSizeX(tileSize[0]);
+				meta.setTileSizeY(tileSize[1]);
+				if (store.getResolutionLevels() <= 1) return;
+				final List<ResolutionDescription> levels = new ArrayList<>();
+				for (final ResolutionDescription level : store
+					.getResolutionDescriptions())
+				{
+					levels.add(level);
+				}
+				levels.sort((a, b) -> Integer.compare(b.sizeX, a.sizeX));
+				final int[] sizeX = new int[levels.size()];
+				final int[] sizeY = new int[levels.size()];
+				for (int r = 0; r < sizeX.length; r++) {
+					sizeX[r] = levels.get(r).sizeX;
+					sizeY[r] = levels.get(r).sizeY;
+				}
+				meta.setResolutionSizes(sizeX, sizeY);
+			}
+			finally {
+				pool.release(store);
+			}
 		}
 
 	}
 
 	public static class Reader extends ByteArrayReader<Metadata> {
 
+		/** Size in bytes above which a tile is fetched in parallel pieces. */
+		private static final long TILED_FETCH_THRESHOLD = 4 * 1024 * 1024;
+
+		/** Maximum size in bytes of a batched multi-plane request. */
+		private static final long MAX_BATCH_BYTES = 64 * 1024 * 1024;
+
 		@Parameter
 		private OMEROService omeroService;
 
-		private OMEROSession session;
-		private RawPixelsStorePrx store;
+		@Parameter
+		private ThreadService threadService;
+
+		// NB: The session is assigned last, publishing the other fields to all
+		// threads calling openPlane concurrently.
+		private volatile OMEROSession session;
+		private volatile RawPixelsStorePool pool;
+
+		/** Lease of the session, if not provided by the metadata. */
+		private OMEROSessionPool.Lease lease;
+		private SequentialAccessDetector detector;
+
+		/** Version of the pixels on the server, for the on-disk cache. */
+		private String version;
+
+		/** Server, group and user of the session, scoping the cached tiles. */
+		private String host;
+		private int port;
+		private long groupID;
+		private long userID;
+
+		/** Background read-ahead fetches, which may not yet have completed. */
+		private final Map<OMEROTileCache.Key, Future<byte[]>> prefetches =
+			new ConcurrentHashMap<>();
+
+		/** Reusable arrays and lookup key of each thread reading planes. */
+		private final ThreadLocal<ReadState> readState = ThreadLocal.withInitial(
+			ReadState::new);
 
 		@Override
 		public ByteArrayPlane openPlane(final int imageIndex, final long planeIndex,
 			final ByteArrayPlane plane, final Interval bounds,
 			final SCIFIOConfig config) throws FormatException, IOException
 		{
-			// TODO: Consider whether to reuse OMERO session from the parsing step.
 			if (session == null) initSession();
 
-			final AxisMap axisMap = new AxisMap(getMetadata().get(imageIndex));
-			final int[] zct = axisMap.zct(planeIndex);
+			// NB: Reuse the plane's buffer, and this thread's position arrays and
+			// lookup key, so that reading cached tiles allocates nothing.
+			final ReadState state = readState.get();
+			getMetadata().axisMap(imageIndex).zct(planeIndex, state.pos);
+			plane.setData(readTile(imageIndex, state, i(bounds.min(0)), //
+				i(bounds.min(1)), i(bounds.dimension(0)), i(bounds.dimension(1)),
+				plane.getData()));
+			return plane;
+		}
+
+		/**
+		 * Reads a tile of the plane at the given position, through the same
+		 * caches, read-ahead and reconnection as {@link #openPlane}.
+		 *
+		 * @param imageIndex Image, i.e. resolution level, of the plane.
+		 * @param pos Z, C and T position of the plane, within the subset of the
+		 *          pixels being read.
+		 * @return the tile's pixels, in OMERO's big-endian byte order
+		 */
+		public byte[] openTile(final int imageIndex, final int[] pos, final int x,
+			final int y, final int w, final int h) throws FormatException
+		{
+			if (session == null) initSession();
+
+			final ReadState state = readState.get();
+			System.arraycopy(pos, 0, state.pos, 0, state.pos.length);
+			return readTile(imageIndex, state, x, y, w, h, null);
+		}
+
+		/**
+		 * Reads the given plane without blocking. The tile is served from the
+		 * caches if possible; otherwise it is requested from the server via an
+		 * asynchronous Ice invocation, so no thread waits for the response.
+		 *
+		 * @see #openPlanesAsync
+		 */
+		public CompletableFuture<ByteArrayPlane> openPlaneAsync(
+			final int imageIndex, final long planeIndex, final Interval bounds)
+			throws FormatException
+		{
+			return openPlanesAsync(imageIndex, new long[] { planeIndex },
+				new Interval[] { bounds }).get(0);
+		}
+
+		/**
+		 * Reads many planes, or tiles thereof, without blocking. Tiles not in
+		 * the caches are all requested at once over a single leased pixels store,
+		 * via asynchronous Ice invocations; the store is returned to the pool once
+		 * every response has arrived. If the pool has no free store, the requests
+		 * are sent in the background once one is released. Downloaded tiles are
+		 * cached on the thread service, not on Ice's threads. Futures of failed
+		 * requests complete exceptionally with the {@link ServerError} or
+		 * {@link Ice.LocalException} raised.
+		 *
+		 * @param imageIndex Image, i.e. resolution level, of the planes.
+		 * @param planeIndices Indices of the planes to read.
+		 * @param bounds Region to read of each plane, matching the plane indices.
+		 * @return one future per plane, in the same order as the plane indices
+		 */
+		public List<CompletableFuture<ByteArrayPlane>> openPlanesAsync(
+			final int imageIndex, final long[] planeIndices, final Interval[] bounds)
+			throws FormatException
+		{
+			if (planeIndices.length != bounds.length) {
+				throw new IllegalArgumentException("Mismatched plane bounds");
+			}
+			if (session == null) initSession();
+
+			final Metadata meta = getMetadata();
+			final ImageMetadata imageMeta = meta.get(imageIndex);
+			final AxisMap axisMap = meta.axisMap(imageIndex);
+			final int[] crop = meta.getCrop(imageIndex);
+			final int level = meta.getServerLevel(imageIndex);
+			final OMEROTileCache cache = omeroService.getTileCache();
+
+			final List<CompletableFuture<ByteArrayPlane>> futures =
+				new ArrayList<>(planeIndices.length);
+			AsyncLease lease = null;
 			try {
-				final int x = i(bounds.min(0));
-				final int y = i(bounds.min(1));
-				final int w = i(bounds.dimension(0));
-				final int h = i(bounds.dimension(1));
-				if (log().isDebug()) {
-					log().debug("openPlane:" + //
-						" z:" + zct[0] + " c:" + zct[1] + " t:" + zct[2] + //
-						" x:" + x + " y:" + y + " w:" + w + " h:" + h);
+				for (int i = 0; i < planeIndices.length; i++) {
+					final int[] zct = meta.toServerZCT(axisMap.zct(planeIndices[i]));
+					final int x = crop[0] + i(bounds[i].min(0));
+					final int y = crop[1] + i(bounds[i].min(1));
+					final int w = i(bounds[i].dimension(0));
+					final int h = i(bounds[i].dimension(1));
+					final OMEROTileCache.Key key = key(level, zct, x, y, w, h);
+					final ByteArrayPlane plane = //
+						new ByteArrayPlane(getContext(), imageMeta, bounds[i]);
+
+					byte[] tile = cache.get(key);
+					if (tile == null) tile = readDiskCache(key);
+					if (tile != null) {
+						plane.setData(tile);
+						futures.add(CompletableFuture.completedFuture(plane));
+						continue;
+					}
+
+					if (lease == null) lease = new AsyncLease(level);
+					futures.add(lease.getTile(key, plane));
 				}
-				final byte[] tile = store.getTile(zct[0], zct[1], zct[2], x, y, w, h);
-				plane.setData(tile);
-			}
-			catch (final ServerError err) {
-				throw communicationException(err);
 			}
-			catch (final Ice.LocalException exc) {
-				throw versionException(exc);
+			finally {
+				if (lease != null) lease.submitted();
 			}
+			return futures;
+		}
 
-			return plane;
+		/**
+		 * Gets the width of the server's native tiles, so that each cell of a
+		 * lazily loaded image corresponds to exactly one server tile.
+		 */
+		@Override
+		public long getOptimalTileWidth(final int imageIndex) {
+			final long tileWidth = getMetadata().getTileSizeX();
+			if (tileWidth <= 0) return super.getOptimalTileWidth(imageIndex);
+			return Math.min(tileWidth, getMetadata().get(imageIndex)
+				.getAxisLength(Axes.X));
 		}
 
+		/**
+		 * Gets the height of the server's native tiles, so that each cell of a
+		 * lazily loaded image corresponds to exactly one server tile.
+		 */
 		@Override
-		public void close() {
-			if (session != null) ((DefaultOMEROSession) session).close();
-			session = null;
-			store = null;
+		public long getOptimalTileHeight(final int imageIndex) {
+			final long tileHeight = getMetadata().getTileSizeY();
+			if (tileHeight <= 0) return super.getOptimalTileHeight(imageIndex);
+			return Math.min(tileHeight, getMetadata().get(imageIndex)
+				.getAxisLength(Axes.Y));
 		}
 
 		@Override
-		protected String[] createDomainArray() {
+		public void close(final boolean fileOnly) throws IOException {
+			if (!fileOnly) {
+				synchronized (this) {
+					for (final Future<byte[]> prefetch : prefetches.values()) {
+						prefetch.cancel(false);
+					}
+					prefetches.clear();
+					// NB: Hand the session back to the OMERO service, which may reuse
+					// it for other readers.
+					if (lease != null) lease.close();
+					lease = null;
+					session = null;
+					pool = null;
+					detector = null;
+				}
+			}
+			super.close(fileOnly);
+		}
+
+		@Override
+		protected String[] createDomainArray() {
 			// FIXME: Decide on the proper domains to report here.
 			return new String[] { FormatTools.LM_DOMAIN };
 		}
 
-		private void initSession() throws FormatException {
+		private synchronized void initSession() throws FormatException {
+			if (session != null) return; // initialized by another thread
 			try {
-				session = omeroService.session(getMetadata().getCredentials());
-				store = session.openPixels(getMetadata());
+				final Metadata meta = getMetadata();
+				if (meta.getSession() == null && lease == null) {
+					lease = omeroService.leaseSession(meta.getCredentials());
+				}
+				final OMEROSession s = meta.getSession() != null ? meta.getSession()
+					: lease.getSession();
+				s.loadPixelsID(meta);
+				pool = s.getPixelsPool();
+				pool.ensureMaxSize(meta.getPoolSize());
+				if (meta.getTileSizeX() <= 0 || meta.getTileSizeY() <= 0) {
+					final RawPixelsStorePrx store = pool.lease(meta.getPixelsID());
+					try {
+						final int[] tileSize = store.getTileSize();
+						meta.setTileSizeX(tileSize[0]);
+						meta.setTileSizeY(tileSize[1]);
+					}
+					finally {
+						pool.release(store);
+					}
+				}
+				if (meta.getPrefetch() > 0) {
+					detector = new SequentialAccessDetector(meta.getSubsetSizeZ(), //
+						meta.getSubsetSizeC(), meta.getSubsetSizeT(), meta.getPrefetch());
+				}
+				if (meta.getPixels() != null) version = version(meta.getPixels());
+				final OMEROLocation credentials = meta.getCredentials();
+				if (credentials != null) {
+					host = credentials.getServer();
+					port = credentials.getPort();
+				}
+				groupID = s.getSecurityContext().getGroupID();
+				userID = s.getExperimenter().getId();
+				session = s;
+			}
+			catch (final ServerError | IllegalStateException err) {
+				throw communicationException(err);
+			}
+			catch (final Ice.LocalException exc) {
+				throw versionException(exc);
+			}
+		}
+
+		/**
+		 * Reads a tile of the plane at the thread's current position, in the
+		 * given buffer if possible.
+		 */
+		private byte[] readTile(final int imageIndex, final ReadState state,
+			final int x, final int y, final int w, final int h, final byte[] buffer)
+			throws FormatException
+		{
+			final Metadata meta = getMetadata();
+			final int[] zct = meta.toServerZCT(state.pos, state.zct);
+			final int[] crop = meta.getCrop(imageIndex, state.crop);
+			final int bpp = meta.get(imageIndex).getBitsPerPixel() / 8;
+			final int level = meta.getServerLevel(imageIndex);
+			final int tileX = crop[0] + x;
+			final int tileY = crop[1] + y;
+			if (log().isDebug()) {
+				log().debug("openTile:" + //
+					" z:" + zct[0] + " c:" + zct[1] + " t:" + zct[2] + //
+					" x:" + tileX + " y:" + tileY + " w:" + w + " h:" + h);
+			}
+			final OMEROTileCache.Key key = state.key.set(host, port, groupID, //
+				userID, meta.getPixelsID(), level, zct[0], zct[1], zct[2], tileX, tileY,
+				w, h);
+			try {
+				final byte[] tile = obtainTile(key, level, zct, tileX, tileY, w, h,
+					bpp, buffer);
+				prefetch(state, level, tileX, tileY, w, h, bpp);
+				return tile;
 			}
 			catch (final ServerError err) {
 				throw communicationException(err);
@@ -547,19 +1325,498 @@ public class OMEROFormat extends AbstractFormat {
 			}
 		}
 
+		/**
+		 * Obtains the given tile from the shared tile cache, from a pending
+		 * read-ahead fetch, from the on-disk cache, or else from the server.
+		 */
+		private byte[] obtainTile(final OMEROTileCache.Key key, final int level,
+			final int[] zct, final int x, final int y, final int w, final int h,
+			final int bpp, final byte[] buffer) throws ServerError
+		{
+			final OMEROTileCache cache = omeroService.getTileCache();
+			byte[] tile = cache.get(key, buffer);
+			if (tile != null) return tile;
+
+			final Future<byte[]> pending = prefetches.get(key);
+			if (pending != null) {
+				try {
+					return pending.get();
+				}
+				catch (final InterruptedException exc) {
+					Thread.currentThread().interrupt();
+					throw serverError(exc);
+				}
+				catch (final ExecutionException exc) {
+					log().debug("Read-ahead of " + key + " failed", exc);
+				}
+			}
+
+			tile = readDiskCache(key);
+			if (tile != null) return tile;
+
+			final int depth = batchDepth(level, zct, x, y, w, h, bpp);
+			if (depth > 1) return fetchStack(level, zct, x, y, w, h, bpp, depth);
+
+			tile = fetchTile(level, zct, x, y, w, h, bpp);
+			store(key, tile);
+			return tile;
+		}
+
+		/**
+		 * Gets the given tile from the on-disk cache, if present, promoting it
+		 * into the shared tile cache.
+		 */
+		private byte[] readDiskCache(final OMEROTileCache.Key key) {
+			if (version == null) return null;
+			final byte[] tile = omeroService.getDiskCache().get(key, version);
+			if (tile != null) omeroService.getTileCache().put(key, tile);
+			return tile;
+		}
+
+		/** Stores a downloaded tile into the shared and on-disk caches. */
+		private void store(final OMEROTileCache.Key key, final byte[] tile) {
+			omeroService.getTileCache().put(key, tile);
+			if (version != null) omeroService.getDiskCache().put(key, version, tile);
+		}
+
+		/**
+		 * Gets the number of consecutive Z planes, starting with the given one, to
+		 * fetch in a single batched request. The batch ends before any plane which
+		 * is already cached or being read ahead.
+		 */
+		private int batchDepth(final int level, final int[] zct, final int x,
+			final int y, final int w, final int h, final int bpp)
+		{
+			final Metadata meta = getMetadata();
+			final long planeBytes = Math.max(1, (long) w * h * bpp);
+			final int depth = (int) Math.min(Math.min(meta.getBatchSize(), //
+				meta.getZStart() + meta.getSubsetSizeZ() - zct[0]), //
+				MAX_BATCH_BYTES / planeBytes);
+			final OMEROTileCache cache = omeroService.getTileCache();
+			for (int i = 1; i < depth; i++) {
+				final int[] pos = { zct[0] + i, zct[1], zct[2] };
+				final OMEROTileCache.Key key = key(level, pos, x, y, w, h);
+				if (cache.contains(key) || prefetches.containsKey(key)) return i;
+			}
+			return depth;
+		}
+
+		/**
+		 * Downloads the given tile of several consecutive Z planes in one
+		 * hypercube request, storing each plane's tile in the tile cache.
+		 *
+		 * @return the tile of the first plane
+		 */
+		private byte[] fetchStack(final int level, final int[] zct, final int x,
+			final int y, final int w, final int h, final int bpp, final int depth)
+			throws ServerError
+		{
+			final List<Integer> offset = Arrays.asList(x, y, zct[0], zct[1], zct[2]);
+			final List<Integer> size = Arrays.asList(w, h, depth, 1, 1);
+			final List<Integer> step = Arrays.asList(1, 1, 1, 1, 1);
+
+			final byte[] stack = withStore(level, store -> store.getHypercube(offset,
+				size, step));
+
+			// split the hypercube into consecutive planes
+			final int planeSize = w * h * bpp;
+			byte[] first = null;
+			for (int i = 0; i < depth; i++) {
+				final byte[] tile = Arrays.copyOfRange(stack, i * planeSize, //
+					(i + 1) * planeSize);
+				final int[] pos = { zct[0] + i, zct[1], zct[2] };
+				store(key(level, pos, x, y, w, h), tile);
+				if (i == 0) first = tile;
+			}
+			return first;
+		}
+
+		/**
+		 * Downloads the given tile from the server. Tiles too large for a single
+		 * request are split along the server's tile grid, and the pieces fetched
+		 * concurrently by at most as many workers as the pool has stores.
+		 */
+		private byte[] fetchTile(final int level, final int[] zct, final int x,
+			final int y, final int w, final int h, final int bpp) throws ServerError
+		{
+			final List<int[]> pieces = (long) w * h * bpp <= TILED_FETCH_THRESHOLD
+				? null : tiles(x, y, w, h, getMetadata().getTileSizeX(), //
+					getMetadata().getTileSizeY());
+			if (pieces == null || pieces.size() == 1) {
+				return getTile(level, zct, x, y, w, h);
+			}
+
+			// NB: Each worker claims the next unfetched piece until none remain,
+			// so a large tile never queues more tasks than there are stores.
+			final byte[] tile = new byte[w * h * bpp];
+			final AtomicInteger next = new AtomicInteger();
+			final int workerCount = Math.min(pieces.size(), //
+				Math.max(1, pool.getMaxSize()));
+			final List<Future<byte[]>> workers = new ArrayList<>(workerCount);
+			for (int i = 0; i < workerCount; i++) {
+				workers.add(threadService.run(() -> {
+					try {
+						for (int n; (n = next.getAndIncrement()) < pieces.size();) {
+							final int[] p = pieces.get(n);
+							final byte[] piece = getTile(level, zct, p[0], p[1], p[2], p[3]);
+							// assemble the piece into its region of the tile
+							final int rowLength = p[2] * bpp;
+							for (int row = 0; row < p[3]; row++) {
+								final int offset = ((p[1] - y + row) * w + p[0] - x) * bpp;
+								System.arraycopy(piece, row * rowLength, tile, offset,
+									rowLength);
+							}
+						}
+					}
+					catch (final ServerError | RuntimeException exc) {
+						// NB: Stop the other workers claiming further pieces.
+						next.set(pieces.size());
+						throw exc;
+					}
+					return tile;
+				}));
+			}
+			for (final Future<byte[]> worker : workers) {
+				result(worker);
+			}
+			return tile;
+		}
+
+		private byte[] getTile(final int level, final int[] zct, final int x,
+			final int y, final int w, final int h) throws ServerError
+		{
+			return withStore(level, store -> store.getTile(zct[0], zct[1], zct[2],
+				x, y, w, h));
+		}
+
+		/**
+		 * Performs the given operation with a store leased from the pool. If the
+		 * connection or session was lost, logs in again and retries once.
+		 */
+		private <T> T withStore(final int level, final StoreOperation<T> op)
+			throws ServerError
+		{
+			for (int attempt = 0;; attempt++) {
+				final OMEROSession s = session;
+				final ServiceFactoryPrx sf = s.getSession();
+				// NB: Another reader of the session may have reconnected it,
+				// closing the pool of its previous login.
+				if (pool.isClosed()) resetPool(s);
+				final RawPixelsStorePool p = pool;
+				RawPixelsStorePrx store = null;
+				try {
+					store = p.lease(getMetadata().getPixelsID(), level);
+					final T result = op.apply(store);
+					p.release(store);
+					return result;
+				}
+				catch (final ServerError | RuntimeException exc) {
+					if (store != null) {
+						if (exc instanceof Ice.LocalException) p.discard(store);
+						else p.release(store);
+					}
+					// NB: Another thread may have replaced or closed the pool already.
+					final boolean lost = OMEROUtils.isSessionLost(exc);
+					final boolean stale = p != pool || p.isClosed();
+					if (attempt > 0 || !lost && !stale) throw exc;
+					if (lost) s.reconnect(sf);
+					resetPool(s);
+				}
+			}
+		}
+
+		/** Switches to the session's current pixels store pool. */
+		private synchronized void resetPool(final OMEROSession s) {
+			final RawPixelsStorePool p = s.getPixelsPool();
+			if (p == pool) return;
+			p.ensureMaxSize(getMetadata().getPoolSize());
+			pool = p;
+		}
+
+		/**
+		 * Fetches upcoming planes in the background, if the reads so far are
+		 * walking sequentially through Z, C or T. Upcoming planes which are
+		 * already cached or being fetched cost no allocation.
+		 *
+		 * @param state read state whose position is that of the plane just read,
+		 *          within the subset of the pixels being read.
+		 */
+		private void prefetch(final ReadState state, final int level,
+			final int x, final int y, final int w, final int h, final int bpp)
+		{
+			final SequentialAccessDetector d = detector;
+			if (d == null) return;
+			final int[][] upcoming = state.upcoming(getMetadata().getPrefetch());
+			final int count = d.access(level, state.pos, x, y, w, h, upcoming);
+			if (count == 0) return;
+
+			// NB: Completed fetches are already in the tile cache.
+			if (!prefetches.isEmpty()) prefetches.values().removeIf(Future::isDone);
+
+			final OMEROTileCache cache = omeroService.getTileCache();
+			for (int i = 0; i < count; i++) {
+				final int[] zct = getMetadata().toServerZCT(upcoming[i],
+					state.nextZCT);
+				final OMEROTileCache.Key key = state.nextKey.set(host, port, groupID,
+					userID, getMetadata().getPixelsID(), level, zct[0], zct[1], zct[2],
+					x, y, w, h);
+				if (cache.contains(key) || prefetches.containsKey(key)) continue;
+				final int[] fetchZCT = zct.clone();
+				prefetches.computeIfAbsent(key.copy(), k -> threadService.run(() -> {
+					final byte[] cached = readDiskCache(k);
+					if (cached != null) return cached;
+					final byte[] tile = fetchTile(level, fetchZCT, x, y, w, h, bpp);
+					store(k, tile);
+					return tile;
+				}));
+			}
+		}
+
+		private OMEROTileCache.Key key(final int level, final int[] zct,
+			final int x, final int y, final int w, final int h)
+		{
+			return new OMEROTileCache.Key(host, port, groupID, userID, //
+				getMetadata().getPixelsID(), level, zct[0], zct[1], zct[2], x, y, w, h);
+		}
+
+		/**
+		 * Identifies the current state of the given pixels on the server: their
+		 * checksum and the event which last updated them.
+		 */
+		private static String version(final Pixels pixels) {
+			final String sha1 = pixels.getSha1() == null ? "" : //
+				pixels.getSha1().getValue();
+			final Event update = pixels.getDetails() == null ? null : //
+				pixels.getDetails().getUpdateEvent();
+			final long eventID = update == null || update.getId() == null ? 0 : //
+				update.getId().getValue();
+			return sha1 + "-" + eventID;
+		}
+
+		/**
+		 * A pixels store leased for a batch of asynchronous tile requests, and
+		 * returned to the pool once the last response has arrived.
+		 */
+		private class AsyncLease {
+
+			private final int level;
+			private final RawPixelsStorePool pool;
+			private volatile RawPixelsStorePrx store;
+
+			/** Requests awaiting a store, if none was free when submitted. */
+			private final List<TileRequest> queued = new ArrayList<>();
+
+			/** Outstanding requests, plus one until all have been submitted. */
+			private final AtomicInteger outstanding = new AtomicInteger(1);
+
+			private volatile boolean broken;
+
+			private AsyncLease(final int level) throws FormatException {
+				this.level = level;
+				if (Reader.this.pool.isClosed()) resetPool(session);
+				pool = Reader.this.pool;
+				try {
+					store = pool.tryLease(getMetadata().getPixelsID(), level);
+				}
+				catch (final ServerError err) {
+					throw communicationException(err);
+				}
+				catch (final Ice.LocalException exc) {
+					throw versionException(exc);
+				}
+			}
+
+			private CompletableFuture<ByteArrayPlane> getTile(
+				final OMEROTileCache.Key key, final ByteArrayPlane plane)
+			{
+				final CompletableFuture<ByteArrayPlane> future =
+					new CompletableFuture<>();
+				outstanding.incrementAndGet();
+				final TileRequest request = new TileRequest(key, plane, future);
+				if (store == null) queued.add(request);
+				else send(request);
+				return future;
+			}
+
+			/** Signals that all requests of the batch have been submitted. */
+			private void submitted() {
+				if (queued.isEmpty()) {
+					done();
+					return;
+				}
+				// NB: The pool is exhausted. Rather than blocking the caller, wait
+				// for a store in the background, then send the queued requests.
+				threadService.run(() -> {
+					try {
+						store = pool.lease(getMetadata().getPixelsID(), level);
+					}
+					catch (final ServerError | RuntimeException exc) {
+						for (final TileRequest request : queued) {
+							request.future.completeExceptionally(exc);
+						}
+						return;
+					}
+					for (final TileRequest request : queued) {
+						send(request);
+					}
+					done();
+				});
+			}
+
+			private void send(final TileRequest request) {
+				final OMEROTileCache.Key key = request.key;
+				final ByteArrayPlane plane = request.plane;
+				final CompletableFuture<ByteArrayPlane> future = request.future;
+				try {
+					store.begin_getTile(key.getZ(), key.getC(), key.getT(), key.getX(),
+						key.getY(), key.getW(), key.getH(),
+						new Callback_RawPixelsStore_getTile()
+						{
+
+							@Override
+							public void response(final byte[] tile) {
+								plane.setData(tile);
+								future.complete(plane);
+								// NB: Do not block the Ice thread with cache writes.
+								threadService.run(() -> store(key, tile));
+								done();
+							}
+
+							@Override
+							public void exception(final Ice.LocalException exc) {
+								broken = true;
+								future.completeExceptionally(exc);
+								done();
+							}
+
+							@Override
+							public void exception(final Ice.UserException exc) {
+								future.completeExceptionally(exc);
+								done();
+							}
+						});
+				}
+				catch (final Ice.LocalException exc) {
+					broken = true;
+					future.completeExceptionally(exc);
+					done();
+				}
+			}
+
+			private void done() {
+				if (outstanding.decrementAndGet() > 0) return;
+				if (broken) pool.discard(store);
+				else pool.release(store);
+			}
+		}
+
+		/** Reusable arrays and lookup key of one thread's plane reads. */
+		private static class ReadState {
+
+			/** Z, C and T position within the subset being read. */
+			private final int[] pos = new int[3];
+
+			/** Z, C and T position within the pixels on the server. */
+			private final int[] zct = new int[3];
+
+			/** Region to read of the current resolution level. */
+			private final int[] crop = new int[4];
+
+			private final OMEROTileCache.Key key = new OMEROTileCache.Key(null, 0,
+				0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+			/** Z, C and T positions of the planes predicted to be read next. */
+			private int[][] upcoming = new int[0][];
+
+			/** Z, C and T position on the server of a predicted plane. */
+			private final int[] nextZCT = new int[3];
+
+			private final OMEROTileCache.Key nextKey = new OMEROTileCache.Key(null,
+				0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+			/** Gets room for the given number of predicted planes. */
+			private int[][] upcoming(final int depth) {
+				if (upcoming.length < depth) upcoming = new int[depth][3];
+				return upcoming;
+			}
+		}
+
+		/** A tile requested via an {@link AsyncLease}. */
+		private static class TileRequest {
+
+			private final OMEROTileCache.Key key;
+			private final ByteArrayPlane plane;
+			private final CompletableFuture<ByteArrayPlane> future;
+
+			private TileRequest(final OMEROTileCache.Key key,
+				final ByteArrayPlane plane,
+				final CompletableFuture<ByteArrayPlane> future)
+			{
+				this.key = key;
+				this.plane = plane;
+				this.future = future;
+			}
+		}
+
+		private static byte[] result(final Future<byte[]> future)
+			throws ServerError
+		{
+			try {
+				return future.get();
+			}
+			catch (final InterruptedException exc) {
+				Thread.currentThread().interrupt();
+				throw serverError(exc);
+			}
+			catch (final ExecutionException exc) {
+				final Throwable cause = exc.getCause();
+				if (cause instanceof ServerError) throw (ServerError) cause;
+				if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+				throw serverError(cause);
+			}
+		}
+
 	}
 
 	public static class Writer extends AbstractWriter<Metadata> {
 
+		/**
+		 * Size in bytes above which a plane is sent as several tiles, keeping
+		 * each request well under the Ice message size limit.
+		 */
+		private static final long TILED_WRITE_THRESHOLD = 16 * 1024 * 1024;
+
 		@Parameter
 		private MetadataService metadataService;
 
 		@Parameter
 		private OMEROService omeroService;
 
+		@Parameter
+		private ThreadService threadService;
+
+		private OMEROSessionPool.Lease lease;
 		private OMEROSession session;
 		private RawPixelsStorePrx store;
 
+		/** Session proxy to which the writer's store belongs. */
+		private ServiceFactoryPrx storeSession;
+
+		/** Background uploader, or null to upload synchronously. */
+		private Uploader uploader;
+
+		/** Journal of uploaded pieces, or null if not journaling. */
+		private OMEROUploadJournal journal;
+
+		/** Per-channel statistics of the pixels written so far. */
+		private ChannelStats stats;
+
+		/** Reusable (Z, C, T) position of the plane being written. */
+		private final int[] zct = new int[3];
+
+		/** Reusable buffer for planes or pieces needing to be copied. */
+		private byte[] buffer;
+
 		@Override
 		public void writePlane(final int imageIndex, final long planeIndex,
 			final Plane plane, final Interval bounds) throws FormatException,
@@ -567,52 +1824,60 @@ public class OMEROFormat extends AbstractFormat {
 		{
 			if (session == null) initSession();
 			final ImageMetadata imageMeta = getMetadata().get(imageIndex);
-			final AxisMap axisMap = new AxisMap(imageMeta);
-
-			// Record where, if anywhere, ZCT are within the planar axes.
-			// The simplest case is that planarAxes == {X, Y}.
-			// But Z, C and/or T might appear as additional planar axes.
-			// To support that, we will need to chop up the P-dimensional
-			// "SCIFIO plane" into multiple 2-dimensional "OMERO planes."
-			final CalibratedAxis zAxis = axisMap.axis(Axes.Z);
-			final CalibratedAxis cAxis = axisMap.axis(Axes.CHANNEL);
-			final CalibratedAxis tAxis = axisMap.axis(Axes.TIME);
-			final List<CalibratedAxis> planarAxes = imageMeta.getAxesPlanar();
-			final int zpi = planarAxes.indexOf(zAxis);
-			final int cpi = planarAxes.indexOf(cAxis);
-			final int tpi = planarAxes.indexOf(tAxis);
+			final AxisMap axisMap = getMetadata().axisMap(imageIndex);
 
-			// Compute how many bytes OMERO expects per 2-dimensional plane.
+			// NB: Z, C and/or T might appear as additional planar axes.
+			// To support that, we chop up the P-dimensional "SCIFIO plane"
+			// into multiple 2-dimensional "OMERO planes." The axis map knows
+			// where, if anywhere, ZCT are within the planar axes.
+
+			// Compute the region of each 2-dimensional plane being written,
+			// and how many bytes it spans.
 			final long sizeX = axisMap.length(Axes.X);
 			final long sizeY = axisMap.length(Axes.Y);
+			final int x = i(bounds.min(0));
+			final int y = i(bounds.min(1));
+			final int w = i(bounds.dimension(0));
+			final int h = i(bounds.dimension(1));
 			final long bpp = imageMeta.getBitsPerPixel();
 			assert bpp % 8 == 0;
+			final int bytesPerPixel = (int) bpp / 8;
 			final int bytesPerPlane = //
-				ArrayUtils.safeMultiply32(sizeX, sizeY, bpp / 8);
-
-			// Compute the "extra" dimensional lengths:
-			// lengths of planar dimensions beyond the first 2.
-			final long[] planarLengths = imageMeta.getAxesLengthsPlanar();
-			final long[] extraLengths = new long[planarLengths.length - 2];
-			System.arraycopy(planarLengths, 2, extraLengths, 0, extraLengths.length);
+				ArrayUtils.safeMultiply32(w, h, bytesPerPixel);
+
+			// Partial planes, and planes too large for a single message, are
+			// sent as tiles: bands of whole rows, or pieces of a row if even a
+			// single row is too large.
+			final boolean wholePlane = //
+				x == 0 && y == 0 && w == sizeX && h == sizeY;
+			final List<int[]> pieces;
+			if (wholePlane && bytesPerPlane <= TILED_WRITE_THRESHOLD) pieces = null;
+			else {
+				final long rowBytes = (long) w * bytesPerPixel;
+				final int rows = (int) Math.min(h, TILED_WRITE_THRESHOLD / rowBytes);
+				pieces = rows > 0 ? tiles(x, y, w, h, x + w, rows) : //
+					tiles(x, y, w, h, (int) (TILED_WRITE_THRESHOLD / bytesPerPixel), 1);
+			}
 
 			// Compute the base (Z, C, T) coordinates for this SCIFIO plane.
 			// This will be the coordinates of _non-planar_ Z, C and/or T axes.
-			final int[] zct = axisMap.zct(planeIndex);
+			final int[] zct = axisMap.zct(planeIndex, this.zct);
 
 			final byte[] allBytes = plane.getBytes();
 
 			// Emit some initial debugging info.
 			if (log().isDebug()) {
+				final List<CalibratedAxis> planarAxes = imageMeta.getAxesPlanar();
 				log().debug("writePlane:" + //
 					" imageIndex:" + imageIndex + " planeIndex:" + planeIndex + //
 					" planarAxes:" + axesToString(imageMeta, planarAxes) + //
-					" planarLengths:" + Arrays.toString(planarLengths) + //
-					" extraLengths:" + Arrays.toString(extraLengths) + //
+					" planarLengths:" + //
+					Arrays.toString(imageMeta.getAxesLengthsPlanar()) + //
 					" sizeX:" + sizeX + " sizeY:" + sizeY + //
+					" x:" + x + " y:" + y + " w:" + w + " h:" + h + //
 					" bpp:" + bpp + " bytesPerPlane:" + bytesPerPlane + //
 					" totalBytes:" + allBytes.length + //
-					" zpi:" + zpi + " cpi:" + cpi + " tpi:" + tpi + //
+					" pieces:" + (pieces == null ? 1 : pieces.size()) + //
 					" zct:" + Arrays.toString(zct));
 			}
 
@@ -620,38 +1885,42 @@ public class OMEROFormat extends AbstractFormat {
 			// OMERO wants data as 2D planes; i.e., planarAxisCount of 2.
 			assert allBytes.length % bytesPerPlane == 0;
 			final int plane2DCount = allBytes.length / bytesPerPlane;
-			final byte[] data = new byte[bytesPerPlane];
+			final boolean swap = imageMeta.isLittleEndian();
+			if (imageIndex == 0 && stats == null) {
+				stats = new ChannelStats(i(Math.max(1, axisMap.length(Axes.CHANNEL))),
+					imageMeta.getPixelType());
+			}
 			for (int p = 0; p < plane2DCount; p++) {
 				final int offset = p * bytesPerPlane;
 				// Compute the OMERO (Z, C, T) coordinates.
 				// This will be the non-planar-axis (Z, C, T) coordinates,
 				// plus the planar-axis (Z, C, T) adjustments.
-				final long[] extraPos = FormatTools.rasterToPosition(extraLengths, p);
-				final int zPlanar = zpi < 2 ? 0 : i(extraPos[zpi - 2]);
-				final int cPlanar = cpi < 2 ? 0 : i(extraPos[cpi - 2]);
-				final int tPlanar = tpi < 2 ? 0 : i(extraPos[tpi - 2]);
-				final int z = zct[0] + zPlanar;
-				final int c = zct[1] + cPlanar;
-				final int t = zct[2] + tPlanar;
+				final int z = zct[0] + axisMap.planarOffset(0, p);
+				final int c = zct[1] + axisMap.planarOffset(1, p);
+				final int t = zct[2] + axisMap.planarOffset(2, p);
 
 				// Emit some details for debugging.
 				if (log().isDebug()) {
 					log().debug("writePlane:" + //
 						" z:" + z + " c:" + c + " t:" + t + //
 						" p:" + p + " offset:" + offset + //
-						" len:" + data.length + " total:" + allBytes.length);
+						" len:" + bytesPerPlane + " total:" + allBytes.length);
 				}
 
-				// Feed the plane to OMERO.
-				System.arraycopy(allBytes, offset, data, 0, data.length);
-				try {
-					store.setPlane(data, z, c, t);
+				// Include the plane in the channel statistics.
+				if (imageIndex == 0) {
+					stats.add(c, allBytes, offset, bytesPerPlane, swap);
 				}
-				catch (final ServerError err) {
-					throw writerException(err, imageIndex, planeIndex);
+
+				// Feed the plane, or its pieces, to OMERO.
+				if (pieces == null) {
+					write(allBytes, offset, x, y, w, x, y, w, h, bytesPerPixel, swap,
+						wholePlane, z, c, t, imageIndex, planeIndex);
+					continue;
 				}
-				catch (final Ice.LocalException exc) {
-					throw versionException(exc);
+				for (final int[] r : pieces) {
+					write(allBytes, offset, x, y, w, r[0], r[1], r[2], r[3],
+						bytesPerPixel, swap, false, z, c, t, imageIndex, planeIndex);
 				}
 			}
 		}
@@ -668,30 +1937,86 @@ public class OMEROFormat extends AbstractFormat {
 		}
 
 		@Override
-		public void close() {
+		public void close() throws IOException {
+			// finish any background uploads, only saving if all succeeded
+			FormatException failure = null;
+			if (uploader != null) {
+				try {
+					uploader.finish();
+				}
+				catch (final FormatException exc) {
+					failure = exc;
+				}
+				uploader = null;
+			}
+
+			boolean saved = false;
 			if (store != null) {
 				// save the data
 				try {
-					// store resultant image ID into the metadata
-					final Image image = store.save().getImage();
-					getMetadata().setImageID(image.getId().getValue());
-
-					// try to attach image to dataset
-					if (session.getExperimenter() != null && //
-						session.getGateway() != null && getMetadata().getDatasetID() != 0)
-					{
-						attachImageToDataset(image, getMetadata().getDatasetID());
+					if (failure == null) {
+						// store resultant image ID into the metadata
+						final Pixels pixels = save();
+						final Image image = pixels.getImage();
+						getMetadata().setImageID(image.getId().getValue());
+
+						// record the channel statistics computed while writing
+						if (stats != null) {
+							try {
+								saveStats(pixels.getId().getValue());
+							}
+							catch (final ServerError | Ice.LocalException exc) {
+								log().warn("Cannot save channel statistics", exc);
+							}
+						}
+
+						// try to attach image to dataset
+						// NB: Check the dataset ID first, to avoid connecting the
+						// session's gateway needlessly.
+						if (getMetadata().getDatasetID() != 0) {
+							try {
+								attachImageToDataset(image, getMetadata().getDatasetID());
+							}
+							catch (final IllegalStateException exc) {
+								// NB: The gateway or experimenter could not be loaded.
+								log().error("Error attaching image to OMERO dataset", exc);
+							}
+						}
+
+						// NB: Drop any descriptors cached before these writes, e.g. by
+						// the reader of an image being resumed.
+						omeroService.getMetadataCache().invalidatePixels(getMetadata()
+							.getCredentials(), pixels.getId().getValue());
+						omeroService.getMetadataCache().invalidateImage(getMetadata()
+							.getCredentials(), image.getId().getValue());
+						if (journal != null) invalidateTiles(pixels.getId().getValue());
+						saved = true;
 					}
 
 					store.close();
 				}
-				catch (final ServerError err) {
-					log().error("Error communicating with OMERO", err);
+				catch (final ServerError | Ice.LocalException exc) {
+					log().error("Error communicating with OMERO", exc);
+				}
+			}
+			// NB: Keep the journal of an unsaved image, to resume it later.
+			if (journal != null) {
+				try {
+					if (saved) journal.delete();
+					else journal.close();
+				}
+				catch (final IOException exc) {
+					log().warn("Cannot finish upload journal", exc);
 				}
 			}
+			journal = null;
+			stats = null;
 			store = null;
-			if (session != null) ((DefaultOMEROSession) session).close();
+			// NB: Hand the session back to the OMERO service, which may reuse it.
+			if (lease != null) lease.close();
+			lease = null;
 			session = null;
+			if (failure != null) throw new IOException(failure);
 		}
 
 		@Override
@@ -708,12 +2033,236 @@ public class OMEROFormat extends AbstractFormat {
 				// This is set in the method: AbstractWriter#setDest(String, int).
 				parseArguments(metadataService, meta.getDatasetName(), meta);
 
-				session = omeroService.session(meta.getCredentials());
-				store = session.createPixels(meta);
+				if (lease == null) {
+					lease = omeroService.leaseSession(meta.getCredentials());
+				}
+				session = lease.getSession();
+				if (meta.getJournal() != null) {
+					journal = new OMEROUploadJournal(Paths.get(meta.getJournal()),
+						signature(meta));
+				}
+				if (journal != null && journal.isResumed()) {
+					// reattach to the pixels of the interrupted upload
+					meta.setImageID(journal.getImageID());
+					meta.setPixelsID(journal.getPixelsID());
+					// NB: Tiles read from the partially written pixels are stale.
+					invalidateTiles(journal.getPixelsID());
+					store = session.openPixels(meta);
+					storeSession = session.getSession();
+					log().info("Resuming upload of image " + journal.getImageID() +
+						": " + journal.getWrittenCount() + " pieces already written");
+				}
+				else {
+					store = session.createPixels(meta);
+					storeSession = session.getSession();
+					if (journal != null) {
+						journal.start(meta.getImageID(), meta.getPixelsID());
+					}
+				}
+				final int streams = Math.max(1, meta.getUploadStreams());
+				if (meta.getUploadQueueSize() > 0 || streams > 1) {
+					// NB: Additional stores write to the same pixels, each from its
+					// own thread, so disjoint planes are uploaded concurrently.
+					// A store is not shared between threads, so each upload thread
+					// gets one of its own.
+					final int workers = Math.max(streams, meta.getUploadThreads());
+					final List<RawPixelsStorePrx> stores = new ArrayList<>();
+					stores.add(store);
+					try {
+						while (stores.size() < workers) {
+							stores.add(session.openPixels(meta));
+						}
+					}
+					catch (final ServerError | RuntimeException exc) {
+						for (int i = 1; i < stores.size(); i++) {
+							discard(stores.get(i));
+						}
+						throw exc;
+					}
+					uploader = new Uploader(stores, //
+						Math.max(workers, meta.getUploadQueueSize()));
+				}
 			}
 			catch (final ServerError err) {
 				throw communicationException(err);
 			}
+			catch (final IOException exc) {
+				throw new FormatException("Cannot open upload journal", exc);
+			}
+		}
+
+		/**
+		 * Discards the tiles of the given pixels from the shared tile cache and
+		 * the on-disk cache, as the pixels are being written again.
+		 */
+		private void invalidateTiles(final long pixelsID) {
+			final OMEROLocation location = getMetadata().getCredentials();
+			omeroService.getTileCache().invalidate(location.getServer(), location
+				.getPort(), pixelsID);
+			omeroService.getDiskCache().invalidate(location.getServer(), location
+				.getPort(), pixelsID);
+		}
+
+		/**
+		 * Sets the global minimum and maximum of each channel of the given
+		 * pixels, as computed while writing them.
+		 */
+		private void saveStats(final long pixelsID) throws ServerError {
+			final ServiceFactoryPrx sf = session.getSession();
+			final Pixels pixels = (Pixels) sf.getQueryService().findByQuery(
+				"select p from Pixels as p " + //
+					"join fetch p.channels as c " + //
+					"left outer join fetch c.statsInfo " + //
+					"where p.id = :id", new ParametersI().addId(pixelsID));
+			final List<IObject> channels = new ArrayList<>();
+			for (int c = 0; c < pixels.sizeOfChannels(); c++) {
+				if (c >= stats.getChannelCount() || !stats.has(c)) continue;
+				final Channel channel = pixels.getChannel(c);
+				StatsInfo info = channel.getStatsInfo();
+				if (info == null) {
+					info = new StatsInfoI();
+					channel.setStatsInfo(info);
+				}
+				info.setGlobalMin(omero.rtypes.rdouble(stats.getMin(c)));
+				info.setGlobalMax(omero.rtypes.rdouble(stats.getMax(c)));
+				channels.add(channel);
+			}
+			sf.getUpdateService().saveArray(channels);
+		}
+
+		/** Gets a string identifying the image being written, for the journal. */
+		private static String signature(final Metadata meta) {
+			final ImageMetadata imageMeta = meta.get(0);
+			return meta.getName() + " " + //
+				Arrays.toString(imageMeta.getAxesLengths()) + " " + //
+				FormatTools.getPixelTypeString(imageMeta.getPixelType());
+		}
+
+		/**
+		 * Sends a rectangle of a 2-dimensional plane to OMERO, in OMERO's byte
+		 * order, either directly or via the background uploader.
+		 *
+		 * @param src Bytes of the region being written, starting at the given
+		 *          offset, with rows of the given region width.
+		 * @param wholePlane Whether the rectangle is the entire plane.
+		 */
+		private void write(final byte[] src, final int offset, final int regionX,
+			final int regionY, final int regionW, final int x, final int y,
+			final int w, final int h, final int bytesPerPixel, final boolean swap,
+			final boolean wholePlane, final int z, final int c, final int t,
+			final int imageIndex, final long planeIndex) throws FormatException
+		{
+			// skip pieces uploaded before an interruption
+			if (journal != null && journal.isWritten(z, c, t, x, y, w, h)) return;
+
+			// A big-endian region is passed along without copying; otherwise,
+			// the rectangle is copied into a reusable buffer.
+			final int length = w * h * bytesPerPixel;
+			final byte[] data;
+			if (uploader == null && !swap && offset == 0 && length == src.length) {
+				data = src;
+			}
+			else {
+				data = uploader == null ? buffer(length) : uploader.buffer(length);
+				final int rowLength = w * bytesPerPixel;
+				for (int row = 0; row < h; row++) {
+					final int srcOffset = offset + //
+						((y - regionY + row) * regionW + x - regionX) * bytesPerPixel;
+					PixelUtils.copy(src, srcOffset, data, row * rowLength, rowLength,
+						bytesPerPixel, swap);
+				}
+			}
+
+			final Upload upload = new Upload(data, wholePlane, z, c, t, x, y, w, h,
+				imageIndex, planeIndex);
+			if (uploader != null) {
+				uploader.put(upload);
+				return;
+			}
+			try {
+				sendDirect(upload);
+				record(upload);
+			}
+			catch (final ServerError | IOException exc) {
+				throw writerException(exc, imageIndex, planeIndex);
+			}
+			catch (final Ice.LocalException exc) {
+				throw versionException(exc);
+			}
+		}
+
+		private static void send(final RawPixelsStorePrx store,
+			final Upload upload) throws ServerError
+		{
+			if (upload.wholePlane) {
+				store.setPlane(upload.data, upload.z, upload.c, upload.t);
+			}
+			else {
+				store.setTile(upload.data, upload.z, upload.c, upload.t, upload.x,
+					upload.y, upload.w, upload.h);
+			}
+		}
+
+		private static void discard(final RawPixelsStorePrx store) {
+			try {
+				store.close();
+			}
+			catch (final ServerError | Ice.LocalException exc) {
+				// NB: The store is being discarded anyway.
+			}
+		}
+
+		/**
+		 * Sends the given piece through the writer's own store. If the
+		 * connection or session was lost, logs in again and retries once.
+		 */
+		private void sendDirect(final Upload upload) throws ServerError {
+			try {
+				send(store, upload);
+			}
+			catch (final ServerError | Ice.LocalException exc) {
+				if (!OMEROUtils.isSessionLost(exc)) throw exc;
+				reopen();
+				send(store, upload);
+			}
+		}
+
+		/**
+		 * Saves the written pixels, first reopening the writer's store if the
+		 * session was lost and logged in again since it was opened.
+		 */
+		private Pixels save() throws ServerError {
+			if (storeSession != session.getSession()) reopen();
+			try {
+				return store.save();
+			}
+			catch (final ServerError | Ice.LocalException exc) {
+				if (!OMEROUtils.isSessionLost(exc)) throw exc;
+				reopen();
+				return store.save();
+			}
+		}
+
+		/**
+		 * Logs in again if the writer's store belongs to a lost session, then
+		 * reopens the store on the pixels being written.
+		 */
+		private void reopen() throws ServerError {
+			session.reconnect(storeSession);
+			storeSession = session.getSession();
+			store = session.openPixels(getMetadata());
+		}
+
+		/** Records a successfully sent piece in the journal, if any. */
+		private void record(final Upload upload) throws IOException {
+			if (journal == null) return;
+			journal.written(upload.z, upload.c, upload.t, upload.x, upload.y,
+				upload.w, upload.h);
+		}
+
+		private byte[] buffer(final int length) {
+			if (buffer == null || buffer.length != length) buffer = new byte[length];
+			return buffer;
 		}
 
 		/**
@@ -727,12 +2276,22 @@ public class OMEROFormat extends AbstractFormat {
 				final DataManagerFacility dmf = gateway.getFacility(
 					DataManagerFacility.class);
 
-				final ArrayList<Long> collect = new ArrayList<>();
-				collect.add(datasetID);
-				final Collection<DatasetData> temp = browse.getDatasets(ctx, collect);
+				// NB: Look the dataset up only once for a series of uploads.
+				final OMEROMetadataCache cache = omeroService.getMetadataCache();
+				final OMEROLocation location = getMetadata().getCredentials();
+				DatasetData ds = cache.getDataset(location, datasetID);
+				if (ds == null) {
+					final ArrayList<Long> collect = new ArrayList<>();
+					collect.add(datasetID);
+					final Collection<DatasetData> temp = browse.getDatasets(ctx,
+						collect);
+					if (!temp.isEmpty()) {
+						ds = temp.iterator().next();
+						cache.putDataset(location, ds);
+					}
+				}
 
-				if (!temp.isEmpty()) {
-					final DatasetData ds = temp.iterator().next();
+				if (ds != null) {
 					final ImageData imgdata = browse.getImage(ctx, //
 						image.getId().getValue());
 					dmf.addImageToDataset(ctx, imgdata, ds);
@@ -749,18 +2308,225 @@ public class OMEROFormat extends AbstractFormat {
 			}
 		}
 
+		/**
+		 * Uploads planes to OMERO on background threads, so that producing the
+		 * pixels overlaps with sending them. At most a bounded number of planes
+		 * wait in the queue, each in a buffer recycled after its upload. The
+		 * first upload error stops all further uploads, and is rethrown to the
+		 * writing thread.
+		 */
+		private class Uploader {
+
+			private final List<RawPixelsStorePrx> stores;
+			private final BlockingQueue<Upload> queue;
+			private final BlockingQueue<byte[]> buffers;
+			private final int maxBuffers;
+			private int bufferCount;
+			private final List<Future<?>> workers = new ArrayList<>();
+			private final AtomicReference<FormatException> error =
+				new AtomicReference<>();
+
+			/**
+			 * @param stores Stores open on the pixels being written, each used by
+			 *          its own upload thread; the first is the writer's own store,
+			 *          which stays open after finishing.
+			 */
+			private Uploader(final List<RawPixelsStorePrx> stores,
+				final int queueSize)
+			{
+				this.stores = new CopyOnWriteArrayList<>(stores);
+				queue = new ArrayBlockingQueue<>(queueSize);
+				maxBuffers = queueSize + stores.size();
+				buffers = new ArrayBlockingQueue<>(maxBuffers);
+				for (final RawPixelsStorePrx s : stores) {
+					workers.add(threadService.run(() -> upload(s)));
+				}
+			}
+
+			/** Waits for all queued planes to be uploaded. */
+			private void finish() throws FormatException {
+				try {
+					for (int i = 0; i < workers.size(); i++) {
+						put(Upload.END);
+					}
+					for (final Future<?> worker : workers) {
+						worker.get();
+					}
+				}
+				catch (final InterruptedException | ExecutionException exc) {
+					fail(new FormatException("Interrupted uploading to OMERO", exc));
+				}
+				finally {
+					for (final Future<?> worker : workers) {
+						worker.cancel(true);
+					}
+					// NB: Flush the additional stores before the writer saves.
+					// Stores of a lost session need not, and cannot, be closed.
+					for (int i = 1; i < stores.size(); i++) {
+						try {
+							stores.get(i).close();
+						}
+						catch (final ServerError | RuntimeException exc) {
+							if (!OMEROUtils.isSessionLost(exc)) {
+								fail(communicationException(exc));
+							}
+						}
+					}
+				}
+				check();
+			}
+
+			private void upload(final RawPixelsStorePrx initialStore) {
+				RawPixelsStorePrx store = initialStore;
+				ServiceFactoryPrx sf = storeSession;
+				while (true) {
+					final Upload upload;
+					try {
+						upload = queue.take();
+					}
+					catch (final InterruptedException exc) {
+						fail(new FormatException("Interrupted uploading to OMERO", exc));
+						return;
+					}
+					if (upload == Upload.END) return;
+					if (error.get() == null) {
+						try {
+							try {
+								send(store, upload);
+							}
+							catch (final ServerError | Ice.LocalException exc) {
+								if (!OMEROUtils.isSessionLost(exc)) throw exc;
+								// NB: Log in again, and retry with a new store.
+								session.reconnect(sf);
+								sf = session.getSession();
+								store = session.openPixels(getMetadata());
+								stores.add(store);
+								send(store, upload);
+							}
+							record(upload);
+						}
+						catch (final ServerError | IOException | RuntimeException exc) {
+							fail(exc instanceof Ice.LocalException ? versionException(exc)
+								: writerException(exc, upload.imageIndex, upload.planeIndex));
+						}
+					}
+					buffers.offer(upload.data);
+				}
+			}
+
+			/** Obtains a free buffer for a queued upload. */
+			private byte[] buffer(final int length) throws FormatException {
+				check();
+				byte[] buffer = buffers.poll();
+				if (buffer == null && bufferCount < maxBuffers) {
+					bufferCount++;
+					return new byte[length];
+				}
+				try {
+					while (buffer == null) {
+						buffer = buffers.poll(100, TimeUnit.MILLISECONDS);
+						check();
+					}
+				}
+				catch (final InterruptedException exc) {
+					Thread.currentThread().interrupt();
+					throw new FormatException("Interrupted uploading to OMERO", exc);
+				}
+				return buffer.length == length ? buffer : new byte[length];
+			}
+
+			private void put(final Upload upload) throws FormatException {
+				try {
+					while (!queue.offer(upload, 100, TimeUnit.MILLISECONDS)) {
+						check();
+					}
+				}
+				catch (final InterruptedException exc) {
+					Thread.currentThread().interrupt();
+					throw new FormatException("Interrupted uploading to OMERO", exc);
+				}
+			}
+
+			private void fail(final FormatException exc) {
+				error.compareAndSet(null, exc);
+			}
+
+			private void check() throws FormatException {
+				final FormatException exc = error.get();
+				if (exc != null) throw exc;
+			}
+		}
+
 	}
 
-	/** A map of axis types to their associated {@link CalibratedAxis} objects. */
-	private static class AxisMap {
+	/** An operation performed with a leased raw pixels store. */
+	@FunctionalInterface
+	private interface StoreOperation<T> {
+
+		T apply(RawPixelsStorePrx store) throws ServerError;
+	}
+
+	/** A plane, or rectangle thereof, to upload. */
+	private static class Upload {
+
+		/** Signals an uploader thread to stop. */
+		private static final Upload END = //
+			new Upload(null, false, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+		private final byte[] data;
+		private final boolean wholePlane;
+		private final int z, c, t;
+		private final int x, y, w, h;
+		private final int imageIndex;
+		private final long planeIndex;
+
+		private Upload(final byte[] data, final boolean wholePlane, final int z,
+			final int c, final int t, final int x, final int y, final int w,
+			final int h, final int imageIndex, final long planeIndex)
+		{
+			this.data = data;
+			this.wholePlane = wholePlane;
+			this.z = z;
+			this.c = c;
+			this.t = t;
+			this.x = x;
+			this.y = y;
+			this.w = w;
+			this.h = h;
+			this.imageIndex = imageIndex;
+			this.planeIndex = planeIndex;
+		}
+	}
+
+	/**
+	 * Maps the axes of an image onto OMERO's X, Y, Z, C and T, and converts
+	 * plane indices into Z, C and T positions. The lookup tables are computed
+	 * once, so that the per-plane conversions allocate nothing.
+	 */
+	static class AxisMap {
 
 		private static final List<AxisType> XYZCT = //
 			Arrays.asList(Axes.X, Axes.Y, Axes.Z, Axes.CHANNEL, Axes.TIME);
 
-		private ImageMetadata imageMeta;
-		private Map<AxisType, CalibratedAxis> map;
+		private static final AxisType[] ZCT = //
+			{ Axes.Z, Axes.CHANNEL, Axes.TIME };
+
+		private final ImageMetadata imageMeta;
+		private final Map<AxisType, CalibratedAxis> map;
 
-		private AxisMap(final ImageMetadata imageMeta) {
+		/** Raster strides of non-planar Z, C and T; 0 if not non-planar. */
+		private final long[] strides = new long[3];
+
+		/** Lengths of non-planar Z, C and T. */
+		private final long[] lengths = new long[3];
+
+		/** Raster strides of planar Z, C and T beyond X and Y; 0 if absent. */
+		private final long[] planarStrides = new long[3];
+
+		/** Lengths of planar Z, C and T beyond X and Y. */
+		private final long[] planarLengths = new long[3];
+
+		AxisMap(final ImageMetadata imageMeta) {
 			this.imageMeta = imageMeta;
 
 			// Fail fast if axis organization is unsupported.
@@ -807,6 +2573,17 @@ public class OMEROFormat extends AbstractFormat {
 						"Unsupported axis type: " + axisType);
 				}
 			}
+
+			// Compute the raster strides of Z, C and T, both among the
+			// non-planar axes and among the planar axes beyond X and Y.
+			final List<CalibratedAxis> nonPlanarAxes = imageMeta.getAxesNonPlanar();
+			final List<CalibratedAxis> extraAxes = //
+				planarAxes.subList(2, planarAxes.size());
+			for (int i = 0; i < ZCT.length; i++) {
+				final CalibratedAxis axis = map.get(ZCT[i]);
+				stride(nonPlanarAxes, axis, i, strides, lengths);
+				stride(extraAxes, axis, i, planarStrides, planarLengths);
+			}
 		}
 
 		public CalibratedAxis axis(final AxisType axisType) {
@@ -814,22 +2591,27 @@ public class OMEROFormat extends AbstractFormat {
 		}
 
 		public int[] zct(final long planeIndex) {
-			final CalibratedAxis zAxis = axis(Axes.Z);
-			final CalibratedAxis cAxis = axis(Axes.CHANNEL);
-			final CalibratedAxis tAxis = axis(Axes.TIME);
+			return zct(planeIndex, new int[3]);
+		}
 
-			final List<CalibratedAxis> nonPlanarAxes = imageMeta.getAxesNonPlanar();
-			final int zIndex = nonPlanarAxes.indexOf(zAxis);
-			final int cIndex = nonPlanarAxes.indexOf(cAxis);
-			final int tIndex = nonPlanarAxes.indexOf(tAxis);
+		/**
+		 * Computes the Z, C and T position of the given plane, storing it into
+		 * the given array.
+		 */
+		public int[] zct(final long planeIndex, final int[] zct) {
+			for (int i = 0; i < 3; i++) {
+				zct[i] = position(planeIndex, strides[i], lengths[i]);
+			}
+			return zct;
+		}
 
-			final long[] lengths = imageMeta.getAxesLengths(nonPlanarAxes);
-			final long[] pos = FormatTools.rasterToPosition(lengths, planeIndex);
-			return new int[] { //
-				zIndex < 0 ? 0 : i(pos[zIndex]), //
-				cIndex < 0 ? 0 : i(pos[cIndex]), //
-				tIndex < 0 ? 0 : i(pos[tIndex]) //
-			};
+		/**
+		 * Gets the offset along Z (0), C (1) or T (2) of the given 2-dimensional
+		 * plane within a SCIFIO plane, for images with planar Z, C or T axes.
+		 */
+		public int planarOffset(final int zctIndex, final long plane2D) {
+			return position(plane2D, planarStrides[zctIndex],
+				planarLengths[zctIndex]);
 		}
 
 		public long length(final AxisType axisType) {
@@ -837,6 +2619,31 @@ public class OMEROFormat extends AbstractFormat {
 			return axis == null ? -1 : imageMeta.getAxisLength(axis);
 		}
 
+		/** Gets whether this map was computed for the given image. */
+		public boolean isFor(final ImageMetadata meta) {
+			return imageMeta == meta;
+		}
+
+		private void stride(final List<CalibratedAxis> axes,
+			final CalibratedAxis axis, final int i, final long[] strides,
+			final long[] lengths)
+		{
+			final int index = axes.indexOf(axis);
+			if (index < 0) return;
+			long stride = 1;
+			for (int d = 0; d < index; d++) {
+				stride *= imageMeta.getAxisLength(axes.get(d));
+			}
+			strides[i] = stride;
+			lengths[i] = imageMeta.getAxisLength(axis);
+		}
+
+		private static int position(final long index, final long stride,
+			final long length)
+		{
+			return stride == 0 ? 0 : i(index / stride % length);
+		}
+
 		private static boolean isUnknownAxis(final AxisType axisType1) {
 			return Axes.UNKNOWN_LABEL.equals(axisType1.getLabel());
 		}
@@ -870,6 +2677,26 @@ public class OMEROFormat extends AbstractFormat {
 		metadataService.populate(meta, map);
 	}
 
+	/**
+	 * Splits the given rectangle along a grid of tiles of the given size,
+	 * anchored at the origin.
+	 *
+	 * @return the pieces, as {x, y, width, height} arrays, in raster order
+	 */
+	static List<int[]> tiles(final int x, final int y, final int w,
+		final int h, final int tileWidth, final int tileHeight)
+	{
+		final List<int[]> tiles = new ArrayList<>();
+		for (int ty = y; ty < y + h; ty = (ty / tileHeight + 1) * tileHeight) {
+			final int th = Math.min((ty / tileHeight + 1) * tileHeight, y + h) - ty;
+			for (int tx = x; tx < x + w; tx = (tx / tileWidth + 1) * tileWidth) {
+				final int tw = Math.min((tx / tileWidth + 1) * tileWidth, x + w) - tx;
+				tiles.add(new int[] { tx, ty, tw, th });
+			}
+		}
+		return tiles;
+	}
+
 	// -- Helper methods --
 
 	private static FormatException communicationException(final Throwable cause) {
@@ -880,6 +2707,12 @@ public class OMEROFormat extends AbstractFormat {
 		return new FormatException("Error connecting to OMERO", cause);
 	}
 
+	private static ServerError serverError(final Throwable cause) {
+		final ServerError err = new ServerError();
+		err.initCause(cause);
+		return err;
+	}
+
 	private static FormatException versionException(final Throwable cause) {
 		return new FormatException(
 			"Error communicating with OMERO -- server version mismatch?", cause);
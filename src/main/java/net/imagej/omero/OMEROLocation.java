@@ -125,7 +125,8 @@ public class OMEROLocation extends URILocation {
 			Objects.equals(getUser(), other.getUser()) && //
 			Objects.equals(getPassword(), other.getPassword()) && //
 			getPort() == other.getPort() && //
-			encrypted == other.encrypted;
+			encrypted == other.encrypted && //
+			Objects.equals(sessionID, other.sessionID);
 	}
 
 	@Override
@@ -0,0 +1,466 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.scijava.log.LogService;
+
+import omero.gateway.model.DatasetData;
+import omero.model.Dataset;
+import omero.model.Image;
+import omero.model.Pixels;
+import omero.model.PixelsType;
+
+/**
+ * A cache of OMERO metadata descriptors, keyed by server, user and object ID,
+ * so that repeated opens of the same image, and repeated uploads, need not
+ * query the server again.
+ * <p>
+ * Cached are {@link Pixels} descriptors, found either by their own ID or by
+ * the ID of their image; {@link Image} descriptors; {@link PixelsType}
+ * enumeration values; and {@link DatasetData} lookups. Entries expire after
+ * the configured time to live, and the least recently used entries are
+ * evicted whenever the entry count exceeds the configured bound. Callers
+ * which change an object on the server invalidate its entries, for all
+ * users. A single instance is shared by all OMERO sessions via
+ * {@link OMEROService#getMetadataCache()}.
+ * </p>
+ * <p>
+ * Descriptors are cached in serialized form, and each lookup returns a new
+ * copy, so that callers may modify the objects they are given. Descriptors
+ * which cannot be serialized or deserialized are not cached, and reported via
+ * the {@link #setLogService log service}, if any.
+ * </p>
+ */
+public class OMEROMetadataCache {
+
+	/** Default maximum number of cached descriptors. */
+	public static final int DEFAULT_MAX_SIZE = 4096;
+
+	/** Default time to live of cached descriptors: 5 minutes. */
+	public static final long DEFAULT_TTL = 5 * 60 * 1000;
+
+	private static final String PIXELS = "pixels";
+	private static final String IMAGE_PIXELS = "imagePixels";
+	private static final String IMAGE = "image";
+	private static final String PIXELS_TYPE = "pixelsType";
+	private static final String DATASET = "dataset";
+
+	// -- Fields --
+
+	/** Cached descriptors, in access order (least recently used first). */
+	private final LinkedHashMap<Key, Entry> entries = //
+		new LinkedHashMap<>(16, 0.75f, true);
+
+	private int maxSize;
+	private long ttl;
+	private long hits;
+	private long misses;
+	private LogService log;
+
+	// -- Constructors --
+
+	public OMEROMetadataCache() {
+		this(DEFAULT_MAX_SIZE, DEFAULT_TTL);
+	}
+
+	public OMEROMetadataCache(final int maxSize, final long ttl) {
+		setMaxSize(maxSize);
+		setTTL(ttl);
+	}
+
+	// -- OMEROMetadataCache methods --
+
+	/** Gets a copy of the cached pixels with the given ID, or null. */
+	public Pixels getPixels(final OMEROLocation location, final long pixelsID) {
+		return (Pixels) get(new Key(location, PIXELS, pixelsID));
+	}
+
+	/** Gets a copy of the cached pixels of the given image, or null. */
+	public Pixels getImagePixels(final OMEROLocation location,
+		final long imageID)
+	{
+		return (Pixels) get(new Key(location, IMAGE_PIXELS, imageID));
+	}
+
+	/**
+	 * Caches a copy of the given pixels, under both their own ID and, if
+	 * loaded, their image's ID.
+	 */
+	public void putPixels(final OMEROLocation location, final Pixels pixels) {
+		final byte[] data = serialize(pixels);
+		if (data == null) return;
+		final long pixelsID = pixels.getId().getValue();
+		final Image image = pixels.getImage();
+		final long imageID = image != null && image.isLoaded() ? //
+			image.getId().getValue() : -1;
+		synchronized (this) {
+			put(new Key(location, PIXELS, pixelsID), data, imageID);
+			if (imageID >= 0) {
+				put(new Key(location, IMAGE_PIXELS, imageID), data, pixelsID);
+			}
+		}
+	}
+
+	/** Gets a copy of the cached image with the given ID, or null. */
+	public Image getImage(final OMEROLocation location, final long imageID) {
+		return (Image) get(new Key(location, IMAGE, imageID));
+	}
+
+	public void putImage(final OMEROLocation location, final Image image) {
+		put(new Key(location, IMAGE, image.getId().getValue()), image);
+	}
+
+	/** Gets a copy of the cached pixel type with the given value, or null. */
+	public PixelsType getPixelsType(final OMEROLocation location,
+		final String value)
+	{
+		return (PixelsType) get(new Key(location, PIXELS_TYPE, value));
+	}
+
+	public void putPixelsType(final OMEROLocation location,
+		final PixelsType type)
+	{
+		put(new Key(location, PIXELS_TYPE, type.getValue().getValue()), type);
+	}
+
+	/** Gets a copy of the cached dataset with the given ID, or null. */
+	public DatasetData getDataset(final OMEROLocation location,
+		final long datasetID)
+	{
+		final Dataset dataset = (Dataset) get(new Key(location, DATASET,
+			datasetID));
+		return dataset == null ? null : new DatasetData(dataset);
+	}
+
+	public void putDataset(final OMEROLocation location,
+		final DatasetData dataset)
+	{
+		put(new Key(location, DATASET, dataset.getId()), dataset.asDataset());
+	}
+
+	/**
+	 * Discards the cached descriptors of the given image and its pixels, as
+	 * seen by any user of the location's server.
+	 */
+	public synchronized void invalidateImage(final OMEROLocation location,
+		final long imageID)
+	{
+		final String server = server(location);
+		final List<Long> pixelsIDs = new ArrayList<>();
+		final Iterator<Map.Entry<Key, Entry>> iter = entries.entrySet()
+			.iterator();
+		while (iter.hasNext()) {
+			final Map.Entry<Key, Entry> entry = iter.next();
+			final Key key = entry.getKey();
+			if (!key.matches(server, IMAGE_PIXELS, imageID) && //
+				!key.matches(server, IMAGE, imageID)) continue;
+			if (IMAGE_PIXELS.equals(key.kind)) pixelsIDs.add(entry.getValue().related);
+			iter.remove();
+		}
+		for (final long pixelsID : pixelsIDs) {
+			remove(server, PIXELS, pixelsID);
+		}
+	}
+
+	/**
+	 * Discards the cached descriptors of the given pixels and their image, as
+	 * seen by any user of the location's server.
+	 */
+	public synchronized void invalidatePixels(final OMEROLocation location,
+		final long pixelsID)
+	{
+		final String server = server(location);
+		final List<Long> imageIDs = new ArrayList<>();
+		final Iterator<Map.Entry<Key, Entry>> iter = entries.entrySet()
+			.iterator();
+		while (iter.hasNext()) {
+			final Map.Entry<Key, Entry> entry = iter.next();
+			if (!entry.getKey().matches(server, PIXELS, pixelsID)) continue;
+			final long imageID = entry.getValue().related;
+			if (imageID >= 0) imageIDs.add(imageID);
+			iter.remove();
+		}
+		for (final long imageID : imageIDs) {
+			remove(server, IMAGE_PIXELS, imageID);
+			remove(server, IMAGE, imageID);
+		}
+	}
+
+	/**
+	 * Discards the cached descriptor of the given dataset, as seen by any user
+	 * of the location's server.
+	 */
+	public synchronized void invalidateDataset(final OMEROLocation location,
+		final long datasetID)
+	{
+		remove(server(location), DATASET, datasetID);
+	}
+
+	/** Discards all cached descriptors, and resets the hit and miss counts. */
+	public synchronized void clear() {
+		entries.clear();
+		hits = misses = 0;
+	}
+
+	/** Gets the number of cached descriptors, including expired ones. */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/** Gets the maximum number of cached descriptors. */
+	public synchronized int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Sets the maximum number of cached descriptors, evicting least recently
+	 * used ones as needed. A size of zero disables caching.
+	 */
+	public synchronized void setMaxSize(final int maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("Invalid size: " + maxSize);
+		}
+		this.maxSize = maxSize;
+		evict();
+	}
+
+	/** Gets the time to live of cached descriptors, in milliseconds. */
+	public synchronized long getTTL() {
+		return ttl;
+	}
+
+	/** Sets the time to live of newly cached descriptors, in milliseconds. */
+	public synchronized void setTTL(final long ttl) {
+		if (ttl < 0) throw new IllegalArgumentException("Invalid TTL: " + ttl);
+		this.ttl = ttl;
+	}
+
+	/** Sets the log service reporting descriptors which cannot be cached. */
+	public synchronized void setLogService(final LogService log) {
+		this.log = log;
+	}
+
+	/** Gets the number of lookups which found a live cached descriptor. */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/** Gets the number of lookups which found no live cached descriptor. */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "OMEROMetadataCache[entries=" + entries.size() + "/" + maxSize +
+			", ttl=" + ttl + ", hits=" + hits + ", misses=" + misses + "]";
+	}
+
+	// -- Helper methods --
+
+	/** Identifies the server of the given location, by host and port. */
+	private static String server(final OMEROLocation location) {
+		return location.getServer() + ":" + location.getPort();
+	}
+
+	/**
+	 * Identifies the user of the given location: by name, or else by the
+	 * session it joins.
+	 */
+	private static String user(final OMEROLocation location) {
+		return location.getUser() != null ? "user:" + location.getUser() : //
+			"session:" + location.getSessionID();
+	}
+
+	private Object get(final Key key) {
+		final Entry entry;
+		synchronized (this) {
+			entry = entries.get(key);
+			if (entry == null || entry.expiry < System.currentTimeMillis()) {
+				if (entry != null) entries.remove(key);
+				misses++;
+				return null;
+			}
+			hits++;
+		}
+		final Object value = deserialize(entry.data);
+		if (value == null) {
+			// NB: Do not keep looking up a descriptor which cannot be read.
+			synchronized (this) {
+				entries.remove(key, entry);
+				hits--;
+				misses++;
+			}
+		}
+		return value;
+	}
+
+	private void put(final Key key, final Object value) {
+		final byte[] data = serialize(value);
+		if (data == null) return;
+		synchronized (this) {
+			put(key, data, -1);
+		}
+	}
+
+	private void put(final Key key, final byte[] data, final long related) {
+		if (maxSize == 0) return;
+		entries.put(key, new Entry(data, related, System.currentTimeMillis() +
+			ttl));
+		evict();
+	}
+
+	/** Discards the given descriptor, as seen by any user. */
+	private void remove(final String server, final String kind,
+		final Object id)
+	{
+		entries.keySet().removeIf(key -> key.matches(server, kind, id));
+	}
+
+	private void evict() {
+		final Iterator<Entry> iter = entries.values().iterator();
+		while (entries.size() > maxSize && iter.hasNext()) {
+			iter.next();
+			iter.remove();
+		}
+	}
+
+	/** Serializes the given descriptor, or returns null if not possible. */
+	private byte[] serialize(final Object value) {
+		if (value == null) return null;
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(value);
+		}
+		catch (final IOException exc) {
+			warn("Cannot cache " + value.getClass().getName(), exc);
+			return null;
+		}
+		return bytes.toByteArray();
+	}
+
+	/** Deserializes a new copy of a descriptor, or returns null on failure. */
+	private Object deserialize(final byte[] data) {
+		try (final ObjectInputStream in = new ObjectInputStream(
+			new ByteArrayInputStream(data))
+		{
+
+			@Override
+			protected Class<?> resolveClass(final ObjectStreamClass desc)
+				throws IOException, ClassNotFoundException
+			{
+				// NB: Resolve OMERO classes via the loader of this class.
+				try {
+					return Class.forName(desc.getName(), false,
+						OMEROMetadataCache.class.getClassLoader());
+				}
+				catch (final ClassNotFoundException exc) {
+					return super.resolveClass(desc);
+				}
+			}
+		})
+		{
+			return in.readObject();
+		}
+		catch (final IOException | ClassNotFoundException exc) {
+			warn("Cannot read cached OMERO descriptor", exc);
+			return null;
+		}
+	}
+
+	private synchronized void warn(final String message, final Throwable exc) {
+		if (log != null) log.warn(message, exc);
+	}
+
+	// -- Helper classes --
+
+	/** Identifies a descriptor: its server, user, kind and ID. */
+	private static class Key {
+
+		private final String server;
+		private final String user;
+		private final String kind;
+		private final Object id;
+
+		private Key(final OMEROLocation location, final String kind,
+			final Object id)
+		{
+			server = server(location);
+			user = user(location);
+			this.kind = kind;
+			this.id = id;
+		}
+
+		/** Gets whether this key identifies the given descriptor, for any user. */
+		private boolean matches(final String s, final String k, final Object i) {
+			return Objects.equals(server, s) && kind.equals(k) && id.equals(i);
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Key)) return false;
+			final Key key = (Key) o;
+			return matches(key.server, key.kind, key.id) && //
+				Objects.equals(user, key.user);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(server, user, kind, id);
+		}
+	}
+
+	private static class Entry {
+
+		/** Serialized form of the descriptor. */
+		private final byte[] data;
+
+		/** ID of the related pixels or image of a pixels descriptor, or -1. */
+		private final long related;
+
+		private final long expiry;
+
+		private Entry(final byte[] data, final long related, final long expiry) {
+			this.data = data;
+			this.related = related;
+			this.expiry = expiry;
+		}
+	}
+
+}
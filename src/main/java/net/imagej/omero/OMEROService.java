@@ -47,6 +47,7 @@ import org.scijava.util.TreeNode;
 import Glacier2.CannotCreateSessionException;
 import Glacier2.PermissionDeniedException;
 import omero.ServerError;
+import omero.constants.projection.ProjectionType;
 import omero.gateway.exception.DSAccessException;
 import omero.gateway.exception.DSOutOfServiceException;
 import omero.gateway.model.ROIData;
@@ -139,6 +140,44 @@ public interface OMEROService extends ImageJService {
 	Dataset downloadImage(omero.client client, long imageID)
 		throws omero.ServerError, IOException;
 
+	/**
+	 * Downloads the image with the given image ID from OMERO as a lazily loaded
+	 * ImgLib2 cached cell image, whose cells are filled directly from the
+	 * server's pixel tiles. Unlike {@link #downloadImage}, this bypasses the
+	 * SCIFIO plane-reading machinery, avoiding its intermediate copies.
+	 * <p>
+	 * The image keeps an OMERO session leased for as long as it loads cells;
+	 * call {@link #closeCachedImage} once it is no longer needed, to hand the
+	 * session back. Images still open are closed when this service is
+	 * disposed.
+	 * </p>
+	 */
+	Dataset downloadCachedImage(omero.client client, long imageID)
+		throws omero.ServerError, IOException;
+
+	/**
+	 * Releases the OMERO session of a {@link Dataset} obtained from
+	 * {@link #downloadCachedImage}. Its cells which are not yet loaded can no
+	 * longer be read afterwards. Does nothing if the dataset is not an open
+	 * cached image.
+	 */
+	void closeCachedImage(Dataset dataset) throws IOException;
+
+	/**
+	 * Downloads an intensity projection along Z of the image with the given
+	 * image ID, computed by the OMERO server so that only the projected planes
+	 * are transferred. The projection has the same pixel type as the image.
+	 *
+	 * @param algorithm Maximum, mean or sum intensity projection.
+	 * @param zStart First Z plane to project, inclusive.
+	 * @param zEnd Last Z plane to project, inclusive.
+	 * @return a {@link Dataset} with one projected plane per channel and
+	 *         timepoint
+	 */
+	Dataset downloadProjection(omero.client client, long imageID,
+		ProjectionType algorithm, int zStart, int zEnd) throws omero.ServerError,
+		IOException;
+
 	/**
 	 * Uploads the given ImageJ {@link Dataset}'s image to OMERO, returning the
 	 * new image ID on the OMERO server.
@@ -146,6 +185,14 @@ public interface OMEROService extends ImageJService {
 	long uploadImage(omero.client client, Dataset dataset)
 		throws omero.ServerError, IOException;
 
+	/**
+	 * Uploads the given ImageJ {@link Dataset}'s image to OMERO, writing
+	 * disjoint planes concurrently through the given number of raw pixels
+	 * stores, and returns the new image ID on the OMERO server.
+	 */
+	long uploadImage(omero.client client, Dataset dataset, int streams)
+		throws omero.ServerError, IOException;
+
 	/**
 	 * Uploads an ImageJ table to OMERO, returning the new table ID on the OMERO
 	 * server. Tables must be attached to a DataObject, thus the given image ID
@@ -273,15 +320,41 @@ public interface OMEROService extends ImageJService {
 	void clearROIMappings();
 
 	/**
-	 * Returns an {@link OMEROSession} using the given {@link OMEROLocation}. If a
-	 * session with this location already exists it is returned, if not a new one
-	 * is created.
+	 * Returns an {@link OMEROSession} using the given {@link OMEROLocation}. If
+	 * the running thread already holds a session with this location it is
+	 * returned; if not, one is leased from the {@link #getSessionPool() session
+	 * pool}, which may share an existing session or create a new one. The
+	 * session stays leased to the thread until {@link #releaseSession()} is
+	 * called; prefer {@link #leaseSession(OMEROLocation)} for scoped use.
 	 *
 	 * @param location OMEROLocation
 	 * @return OMEROSession
 	 */
 	OMEROSession session(OMEROLocation location);
 
+	/**
+	 * Leases an {@link OMEROSession} for the given {@link OMEROLocation} from
+	 * the {@link #getSessionPool() session pool}, independently of the running
+	 * thread. The lease must be closed once the caller is done with the
+	 * session.
+	 *
+	 * @param location OMEROLocation
+	 * @return the lease of the session
+	 * @throws IllegalStateException if no session could be opened
+	 */
+	OMEROSessionPool.Lease leaseSession(OMEROLocation location);
+
+	/**
+	 * Leases an {@link OMEROSession} which reuses the given client's existing
+	 * login, rather than logging in again. The lease must be closed once the
+	 * caller is done with the session.
+	 *
+	 * @param client a logged in client
+	 * @return the lease of the session
+	 */
+	OMEROSessionPool.Lease leaseSession(omero.client client)
+		throws omero.ServerError, IOException;
+
 	/**
 	 * Returns the {@link OMEROSession} related to the running thread.
 	 *
@@ -289,6 +362,13 @@ public interface OMEROService extends ImageJService {
 	 */
 	OMEROSession session();
 
+	/**
+	 * Hands the {@link OMEROSession} related to the running thread back to the
+	 * session pool, for use by other threads. Worker threads should call this
+	 * once they are done with OMERO.
+	 */
+	void releaseSession();
+
 	/**
 	 * Creates an OMEROSession. This <strong>does not</strong> cache the session
 	 * nor does it associate this session with the thread.
@@ -305,4 +385,36 @@ public interface OMEROService extends ImageJService {
 	 */
 	void removeSession(OMEROSession session);
 
+	/**
+	 * Gets the pool of sessions from which {@link #session(OMEROLocation)}
+	 * leases a session to each thread.
+	 *
+	 * @return the {@link OMEROSessionPool}
+	 */
+	OMEROSessionPool getSessionPool();
+
+	/**
+	 * Gets the cache of pixel tiles shared by all OMERO readers of this service.
+	 *
+	 * @return the shared {@link OMEROTileCache}
+	 */
+	OMEROTileCache getTileCache();
+
+	/**
+	 * Gets the cache of image, pixels, pixel type and dataset descriptors shared
+	 * by all OMERO sessions of this service.
+	 *
+	 * @return the shared {@link OMEROMetadataCache}
+	 */
+	OMEROMetadataCache getMetadataCache();
+
+	/**
+	 * Gets the persistent on-disk cache of pixel tiles, which readers consult
+	 * before downloading tiles from the server. It is disabled unless a cache
+	 * directory is configured.
+	 *
+	 * @return the shared {@link OMERODiskCache}
+	 */
+	OMERODiskCache getDiskCache();
+
 }
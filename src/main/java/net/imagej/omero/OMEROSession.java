@@ -83,6 +83,25 @@ public interface OMEROSession extends Closeable {
 	RawPixelsStorePrx createPixels(OMEROFormat.Metadata meta) throws ServerError,
 		FormatException;
 
+	/**
+	 * Gets the bounded pool of raw pixels stores from which this session's
+	 * readers lease stores for concurrent reads.
+	 */
+	RawPixelsStorePool getPixelsPool();
+
+	/**
+	 * Logs in to OMERO again, after the connection or the session was lost,
+	 * retrying with exponential backoff. A session joined by ID, without a
+	 * password, is rejoined just once. The previous pixels store pool, and
+	 * any stores or services obtained from the previous session, are no longer
+	 * usable afterwards.
+	 *
+	 * @param failed The session proxy which failed. If this session has since
+	 *          reconnected, e.g. on behalf of another thread, nothing is done.
+	 * @throws ServerError if every attempt to log in again failed
+	 */
+	void reconnect(ServiceFactoryPrx failed) throws ServerError;
+
 	// -- Closeable methods --
 
 	@Override
@@ -0,0 +1,450 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import omero.ServerError;
+import omero.api.ServiceFactoryPrx;
+
+/**
+ * A thread-safe pool of {@link OMEROSession}s, holding several sessions per
+ * {@link OMEROLocation}, so that parallel jobs against one server each get
+ * their own connection rather than all sharing one.
+ * <p>
+ * Sessions are opened lazily: a lease is given a fresh session while the
+ * location has fewer than the minimum number of sessions, or while all its
+ * sessions are leased and it has fewer than the maximum. Otherwise, leases
+ * share the least leased session, and the least recently leased among those,
+ * so that work is spread evenly. Before a session which has not been checked
+ * for a while is leased out, its connection is verified; sessions failing the
+ * check log in again, since other holders may share them, and sessions which
+ * cannot are no longer leased out, and are closed once their last lease is
+ * handed back. Unleased sessions beyond the minimum are
+ * closed once idle for longer than the idle timeout.
+ * </p>
+ * <p>
+ * The limits default to the values of the {@value #MIN_SIZE_PROPERTY},
+ * {@value #MAX_SIZE_PROPERTY} and {@value #IDLE_TIMEOUT_PROPERTY} system
+ * properties, if set.
+ * </p>
+ */
+public class OMEROSessionPool implements Closeable {
+
+	/** System property specifying the minimum number of sessions. */
+	public static final String MIN_SIZE_PROPERTY = "imagej.omero.sessions.min";
+
+	/** System property specifying the maximum number of sessions. */
+	public static final String MAX_SIZE_PROPERTY = "imagej.omero.sessions.max";
+
+	/** System property specifying the idle timeout, in milliseconds. */
+	public static final String IDLE_TIMEOUT_PROPERTY =
+		"imagej.omero.sessions.idleTimeout";
+
+	/** Default minimum number of sessions per location. */
+	public static final int DEFAULT_MIN_SIZE = 1;
+
+	/** Default maximum number of sessions per location. */
+	public static final int DEFAULT_MAX_SIZE = 4;
+
+	/** Default time after which unleased sessions are closed: 10 minutes. */
+	public static final long DEFAULT_IDLE_TIMEOUT = 10 * 60 * 1000;
+
+	/** Default time after which a session's connection is verified: 1 minute. */
+	public static final long DEFAULT_HEALTH_CHECK_INTERVAL = 60 * 1000;
+
+	// -- Fields --
+
+	private final Function<OMEROLocation, OMEROSession> factory;
+
+	private final Map<OMEROLocation, Slot> slots = new HashMap<>();
+
+	private int minSize;
+	private int maxSize;
+	private long idleTimeout;
+	private long healthCheckInterval = DEFAULT_HEALTH_CHECK_INTERVAL;
+	private boolean closed;
+
+	// -- Constructors --
+
+	/**
+	 * @param factory Function opening a new session for a location, or
+	 *          returning null if it cannot.
+	 */
+	public OMEROSessionPool(
+		final Function<OMEROLocation, OMEROSession> factory)
+	{
+		this.factory = factory;
+		minSize = Integer.getInteger(MIN_SIZE_PROPERTY, DEFAULT_MIN_SIZE);
+		maxSize = Math.max(minSize, //
+			Integer.getInteger(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE));
+		idleTimeout = Long.getLong(IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT);
+	}
+
+	// -- OMEROSessionPool methods --
+
+	/** Gets the number of sessions kept open per location, even when idle. */
+	public synchronized int getMinSize() {
+		return minSize;
+	}
+
+	/** Gets the most sessions opened per location. */
+	public synchronized int getMaxSize() {
+		return maxSize;
+	}
+
+	/** Gets the time after which unleased sessions are closed, in ms. */
+	public synchronized long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	/** Sets the minimum and maximum numbers of sessions per location. */
+	public synchronized void setSize(final int minSize, final int maxSize) {
+		if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+			throw new IllegalArgumentException("Invalid size: " + minSize + "-" +
+				maxSize);
+		}
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+	}
+
+	/** Sets the time after which unleased sessions are closed, in ms. */
+	public synchronized void setIdleTimeout(final long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	/** Gets the time after which a session is verified before use, in ms. */
+	public synchronized long getHealthCheckInterval() {
+		return healthCheckInterval;
+	}
+
+	/** Sets the time after which a session is verified before use, in ms. */
+	public synchronized void setHealthCheckInterval(final long interval) {
+		healthCheckInterval = interval;
+	}
+
+	/**
+	 * Obtains a session for the given location, opening a new one as the pool
+	 * limits allow. Every lease must be closed once its holder is done with the
+	 * session, so that the session can be shared, or closed once idle.
+	 *
+	 * @return the lease, or null if no session could be opened
+	 */
+	public Lease lease(final OMEROLocation location) {
+		while (true) {
+			final Entry entry = take(location, true);
+			if (entry == null) {
+				final OMEROSession session = open(location);
+				return session == null ? null : new Lease(this, session);
+			}
+			if (isHealthy(entry)) return new Lease(this, entry.session);
+			retire(entry);
+		}
+	}
+
+	/**
+	 * Adds an existing, unleased session for the given location to the pool,
+	 * regardless of the pool limits.
+	 */
+	public synchronized void add(final OMEROLocation location,
+		final OMEROSession session)
+	{
+		if (closed) throw new IllegalStateException("Pool is closed");
+		if (entry(session) != null) return;
+		slot(location).entries.add(new Entry(session));
+	}
+
+	/** Gets whether the pool holds any session for the given location. */
+	public synchronized boolean contains(final OMEROLocation location) {
+		final Slot slot = slots.get(location);
+		return slot != null && !slot.entries.isEmpty();
+	}
+
+	/** Gets whether the pool holds the given session for the given location. */
+	public synchronized boolean contains(final OMEROLocation location,
+		final OMEROSession session)
+	{
+		final Slot slot = slots.get(location);
+		if (slot == null) return false;
+		for (final Entry entry : slot.entries) {
+			if (entry.session == session) return !entry.retired;
+		}
+		return false;
+	}
+
+	/** Gets the number of sessions held for the given location. */
+	public synchronized int size(final OMEROLocation location) {
+		final Slot slot = slots.get(location);
+		return slot == null ? 0 : slot.entries.size();
+	}
+
+	/** Forgets the given session, without closing it. */
+	public synchronized void remove(final OMEROSession session) {
+		for (final Iterator<Slot> iter = slots.values().iterator(); iter
+			.hasNext();)
+		{
+			final Slot slot = iter.next();
+			slot.entries.removeIf(entry -> entry.session == session);
+			if (slot.entries.isEmpty() && slot.pending == 0) iter.remove();
+		}
+	}
+
+	// -- Closeable methods --
+
+	/** Closes all sessions of the pool. */
+	@Override
+	public void close() {
+		final List<OMEROSession> sessions = new ArrayList<>();
+		synchronized (this) {
+			closed = true;
+			for (final Slot slot : slots.values()) {
+				for (final Entry entry : slot.entries) {
+					sessions.add(entry.session);
+				}
+			}
+			slots.clear();
+		}
+		close(sessions);
+	}
+
+	// -- Helper methods --
+
+	/** Hands back a session obtained via {@link #lease}. */
+	private void release(final OMEROSession session) {
+		final List<OMEROSession> evicted;
+		synchronized (this) {
+			final Entry entry = entry(session);
+			if (entry != null && entry.leases > 0) {
+				entry.leases--;
+				entry.lastUsed = System.currentTimeMillis();
+			}
+			evicted = evictIdle();
+		}
+		close(evicted);
+	}
+
+	/**
+	 * Stops leasing out the given session, whose connection could not be
+	 * restored, and hands back the lease taken to check it. The session is
+	 * closed once no other holder has it leased.
+	 */
+	private void retire(final Entry entry) {
+		synchronized (this) {
+			entry.retired = true;
+		}
+		release(entry.session);
+	}
+
+	/**
+	 * Leases the session of the given location to share, or reserves room for
+	 * a new session and returns null.
+	 *
+	 * @param open Whether a new session may be opened.
+	 */
+	private Entry take(final OMEROLocation location, final boolean open) {
+		final List<OMEROSession> evicted;
+		final Entry entry;
+		synchronized (this) {
+			if (closed) throw new IllegalStateException("Pool is closed");
+			evicted = evictIdle();
+			final Slot slot = slot(location);
+			Entry best = null;
+			for (final Entry e : slot.entries) {
+				if (e.retired) continue;
+				if (best == null || e.leases < best.leases || //
+					e.leases == best.leases && e.lastUsed < best.lastUsed)
+				{
+					best = e;
+				}
+			}
+			final int size = slot.entries.size() + slot.pending;
+			if (open && (best == null || size < minSize || //
+				best.leases > 0 && size < maxSize))
+			{
+				slot.pending++;
+				entry = null;
+			}
+			else if (best == null) entry = null;
+			else {
+				best.leases++;
+				best.lastUsed = System.currentTimeMillis();
+				entry = best;
+			}
+		}
+		close(evicted);
+		return entry;
+	}
+
+	/** Opens a new session, for which room was reserved via {@link #take}. */
+	private OMEROSession open(final OMEROLocation location) {
+		OMEROSession session = null;
+		try {
+			session = factory.apply(location);
+		}
+		finally {
+			synchronized (this) {
+				final Slot slot = slot(location);
+				slot.pending--;
+				if (session != null && !closed) {
+					final Entry entry = new Entry(session);
+					entry.leases = 1;
+					entry.lastChecked = entry.lastUsed;
+					slot.entries.add(entry);
+				}
+			}
+		}
+		if (session != null) return session;
+		// NB: Fall back to sharing an existing session, if any.
+		final Entry entry = take(location, false);
+		return entry == null ? null : entry.session;
+	}
+
+	/** Verifies the given session's connection, if not done recently. */
+	private boolean isHealthy(final Entry entry) {
+		final long now = System.currentTimeMillis();
+		if (now - entry.lastChecked < getHealthCheckInterval()) return true;
+		final ServiceFactoryPrx sf = entry.session.getSession();
+		if (sf == null) return false; // closed
+		try {
+			sf.ice_ping();
+		}
+		catch (final Ice.LocalException exc) {
+			// NB: Other holders may share the session, so rather than closing it,
+			// log in again; they pick up the new login on their next call.
+			try {
+				entry.session.reconnect(sf);
+			}
+			catch (final ServerError | RuntimeException err) {
+				return false;
+			}
+		}
+		entry.lastChecked = now;
+		return true;
+	}
+
+	/**
+	 * Removes retired sessions no longer leased, and unleased sessions beyond
+	 * the minimum which have been idle longer than the timeout.
+	 *
+	 * @return the removed sessions, to be closed outside of synchronization
+	 */
+	private List<OMEROSession> evictIdle() {
+		final List<OMEROSession> evicted = new ArrayList<>();
+		final long cutoff = System.currentTimeMillis() - idleTimeout;
+		for (final Slot slot : slots.values()) {
+			for (final Iterator<Entry> iter = slot.entries.iterator(); iter
+				.hasNext();)
+			{
+				final Entry entry = iter.next();
+				if (entry.leases > 0) continue;
+				if (!entry.retired && (entry.lastUsed > cutoff || //
+					slot.entries.size() <= minSize)) continue;
+				iter.remove();
+				evicted.add(entry.session);
+			}
+		}
+		return evicted;
+	}
+
+	private Slot slot(final OMEROLocation location) {
+		return slots.computeIfAbsent(location, l -> new Slot());
+	}
+
+	private Entry entry(final OMEROSession session) {
+		for (final Slot slot : slots.values()) {
+			for (final Entry entry : slot.entries) {
+				if (entry.session == session) return entry;
+			}
+		}
+		return null;
+	}
+
+	private static void close(final List<OMEROSession> sessions) {
+		for (final OMEROSession session : sessions) {
+			session.close();
+		}
+	}
+
+	// -- Helper classes --
+
+	/**
+	 * A session leased from the pool, which is handed back when the lease is
+	 * closed.
+	 */
+	public static class Lease implements AutoCloseable {
+
+		private final OMEROSessionPool pool;
+		private final OMEROSession session;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private Lease(final OMEROSessionPool pool, final OMEROSession session) {
+			this.pool = pool;
+			this.session = session;
+		}
+
+		public OMEROSession getSession() {
+			return session;
+		}
+
+		/** Hands the session back to the pool. Later calls do nothing. */
+		@Override
+		public void close() {
+			if (released.compareAndSet(false, true)) pool.release(session);
+		}
+	}
+
+	/** The sessions of one location. */
+	private static class Slot {
+
+		private final List<Entry> entries = new ArrayList<>();
+
+		/** Number of sessions being opened. */
+		private int pending;
+	}
+
+	private static class Entry {
+
+		private final OMEROSession session;
+		private int leases;
+
+		/** Whether the session's connection was lost for good. */
+		private boolean retired;
+		private volatile long lastUsed = System.currentTimeMillis();
+		private volatile long lastChecked = lastUsed;
+
+		private Entry(final OMEROSession session) {
+			this.session = session;
+		}
+	}
+
+}
@@ -0,0 +1,354 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A least-recently-used cache of pixel tiles downloaded from OMERO.
+ * <p>
+ * Tile data is stored off the Java heap, in direct {@link ByteBuffer}s, and
+ * the cache evicts the least recently used tiles whenever its total size
+ * exceeds the configured byte budget. A single instance is shared by all
+ * {@link OMEROFormat.Reader}s via {@link OMEROService#getTileCache()}.
+ * </p>
+ */
+public class OMEROTileCache {
+
+	/** Default byte budget for cached tile data: 256 MB. */
+	public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+	// -- Fields --
+
+	/** Cached tiles, in access order (least recently used first). */
+	private final LinkedHashMap<Key, ByteBuffer> tiles = //
+		new LinkedHashMap<>(16, 0.75f, true);
+
+	private long maxBytes;
+	private long bytes;
+	private long hits;
+	private long misses;
+
+	// -- Constructors --
+
+	public OMEROTileCache() {
+		this(DEFAULT_MAX_BYTES);
+	}
+
+	public OMEROTileCache(final long maxBytes) {
+		setMaxBytes(maxBytes);
+	}
+
+	// -- OMEROTileCache methods --
+
+	/**
+	 * Gets a copy of the cached tile with the given key, or null if the tile is
+	 * not cached.
+	 */
+	public synchronized byte[] get(final Key key) {
+		final ByteBuffer buffer = tiles.get(key);
+		if (buffer == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		final byte[] data = new byte[buffer.capacity()];
+		buffer.duplicate().get(data);
+		return data;
+	}
+
+	/**
+	 * Gets the cached tile with the given key, copying it into the given array
+	 * if that has the tile's length, or else into a new array.
+	 *
+	 * @return the array holding the tile, or null if the tile is not cached
+	 */
+	public synchronized byte[] get(final Key key, final byte[] data) {
+		final ByteBuffer buffer = tiles.get(key);
+		if (buffer == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		final byte[] tile = data != null && data.length == buffer.capacity()
+			? data : new byte[buffer.capacity()];
+		buffer.duplicate().get(tile);
+		return tile;
+	}
+
+	/**
+	 * Caches a copy of the given tile data, evicting least recently used tiles
+	 * as needed to stay within the byte budget. Tiles larger than the budget are
+	 * not cached.
+	 */
+	public synchronized void put(final Key key, final byte[] data) {
+		if (data == null || data.length > maxBytes) return;
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+		buffer.put(data).flip();
+		final ByteBuffer previous = tiles.put(key.copy(), buffer);
+		if (previous != null) bytes -= previous.capacity();
+		bytes += data.length;
+		evict();
+	}
+
+	/** Gets whether a tile with the given key is cached. */
+	public synchronized boolean contains(final Key key) {
+		return tiles.containsKey(key);
+	}
+
+	/**
+	 * Discards all cached tiles of the given pixels, for every group and user.
+	 */
+	public synchronized void invalidate(final String host, final int port,
+		final long pixelsID)
+	{
+		final Iterator<Map.Entry<Key, ByteBuffer>> iter = //
+			tiles.entrySet().iterator();
+		while (iter.hasNext()) {
+			final Map.Entry<Key, ByteBuffer> entry = iter.next();
+			final Key key = entry.getKey();
+			if (key.pixelsID != pixelsID || key.port != port || //
+				!Objects.equals(key.host, host)) continue;
+			bytes -= entry.getValue().capacity();
+			iter.remove();
+		}
+	}
+
+	/** Discards all cached tiles, and resets the hit and miss counts. */
+	public synchronized void clear() {
+		tiles.clear();
+		bytes = 0;
+		hits = misses = 0;
+	}
+
+	/** Gets the number of cached tiles. */
+	public synchronized int size() {
+		return tiles.size();
+	}
+
+	/** Gets the total number of bytes of cached tile data. */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/** Gets the byte budget for cached tile data. */
+	public synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Sets the byte budget for cached tile data, evicting least recently used
+	 * tiles as needed. A budget of zero disables caching.
+	 */
+	public synchronized void setMaxBytes(final long maxBytes) {
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("Invalid byte budget: " + maxBytes);
+		}
+		this.maxBytes = maxBytes;
+		evict();
+	}
+
+	/** Gets the number of {@link #get} calls which found a cached tile. */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/** Gets the number of {@link #get} calls which found no cached tile. */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "OMEROTileCache[tiles=" + tiles.size() + ", bytes=" + bytes +
+			"/" + maxBytes + ", hits=" + hits + ", misses=" + misses + "]";
+	}
+
+	// -- Helper methods --
+
+	private void evict() {
+		final Iterator<ByteBuffer> iter = tiles.values().iterator();
+		while (bytes > maxBytes && iter.hasNext()) {
+			bytes -= iter.next().capacity();
+			iter.remove();
+		}
+	}
+
+	// -- Helper classes --
+
+	/**
+	 * Identifies a tile: a rectangle of one plane of one OMERO pixels, at one
+	 * resolution level, as seen by one user in one group of one server.
+	 * <p>
+	 * Readers may reuse a key for successive lookups via {@link #set}; the
+	 * cache stores copies of the keys it is given.
+	 * </p>
+	 */
+	public static class Key {
+
+		private String host;
+		private int port;
+		private long groupID;
+		private long userID;
+		private long pixelsID;
+		private int level;
+		private int z, c, t;
+		private int x, y, w, h;
+
+		public Key(final String host, final int port, final long groupID,
+			final long userID, final long pixelsID, final int level, final int z,
+			final int c, final int t, final int x, final int y, final int w,
+			final int h)
+		{
+			set(host, port, groupID, userID, pixelsID, level, z, c, t, x, y, w, h);
+		}
+
+		/** Changes this key to identify the given tile, for reuse in lookups. */
+		Key set(final String host, final int port, final long groupID,
+			final long userID, final long pixelsID, final int level, final int z,
+			final int c, final int t, final int x, final int y, final int w,
+			final int h)
+		{
+			this.host = host;
+			this.port = port;
+			this.groupID = groupID;
+			this.userID = userID;
+			this.pixelsID = pixelsID;
+			this.level = level;
+			this.z = z;
+			this.c = c;
+			this.t = t;
+			this.x = x;
+			this.y = y;
+			this.w = w;
+			this.h = h;
+			return this;
+		}
+
+		/** Gets a copy of this key. */
+		public Key copy() {
+			return new Key(host, port, groupID, userID, pixelsID, level, z, c, t, x,
+				y, w, h);
+		}
+
+		public String getHost() {
+			return host;
+		}
+
+		public int getPort() {
+			return port;
+		}
+
+		public long getGroupID() {
+			return groupID;
+		}
+
+		public long getUserID() {
+			return userID;
+		}
+
+		public long getPixelsID() {
+			return pixelsID;
+		}
+
+		public int getLevel() {
+			return level;
+		}
+
+		public int getZ() {
+			return z;
+		}
+
+		public int getC() {
+			return c;
+		}
+
+		public int getT() {
+			return t;
+		}
+
+		public int getX() {
+			return x;
+		}
+
+		public int getY() {
+			return y;
+		}
+
+		public int getW() {
+			return w;
+		}
+
+		public int getH() {
+			return h;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Key)) return false;
+			final Key other = (Key) obj;
+			return pixelsID == other.pixelsID && level == other.level && //
+				z == other.z && c == other.c && t == other.t && //
+				x == other.x && y == other.y && w == other.w && h == other.h && //
+				port == other.port && groupID == other.groupID && //
+				userID == other.userID && //
+				Objects.equals(host, other.host);
+		}
+
+		@Override
+		public int hashCode() {
+			// NB: Avoid the boxing and varargs array of Objects.hash, since tiles
+			// are looked up for every plane read.
+			int hash = Objects.hashCode(host);
+			hash = 31 * hash + port;
+			hash = 31 * hash + Long.hashCode(groupID);
+			hash = 31 * hash + Long.hashCode(userID);
+			hash = 31 * hash + Long.hashCode(pixelsID);
+			hash = 31 * hash + level;
+			hash = 31 * hash + z;
+			hash = 31 * hash + c;
+			hash = 31 * hash + t;
+			hash = 31 * hash + x;
+			hash = 31 * hash + y;
+			hash = 31 * hash + w;
+			return 31 * hash + h;
+		}
+
+		@Override
+		public String toString() {
+			return "server:" + host + ":" + port + " group:" + groupID + //
+				" user:" + userID + //
+				" pixels:" + pixelsID + " level:" + level + //
+				" z:" + z + " c:" + c + " t:" + t + //
+				" x:" + x + " y:" + y + " w:" + w + " h:" + h;
+		}
+	}
+
+}
@@ -0,0 +1,211 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A small local journal recording which pieces of an image have been
+ * uploaded to OMERO, so that an interrupted upload can be resumed.
+ * <p>
+ * The journal is a text file naming the image and pixels being written,
+ * followed by one line per plane, or rectangle of a plane, whose upload
+ * succeeded. An {@link OMEROFormat.Writer} given an existing journal for the
+ * same image reattaches to the pixels it names, and skips the pieces
+ * recorded there. The journal is deleted once the image is saved.
+ * </p>
+ */
+public class OMEROUploadJournal implements Closeable {
+
+	private static final String SIGNATURE = "signature ";
+	private static final String IMAGE = "image ";
+
+	// -- Fields --
+
+	private final Path file;
+	private final String signature;
+	private final Set<String> written = new HashSet<>();
+
+	private long imageID;
+	private long pixelsID;
+	private BufferedWriter out;
+
+	// -- Constructors --
+
+	/**
+	 * Opens the journal in the given file, loading any pieces recorded by a
+	 * previous upload.
+	 *
+	 * @param signature String identifying the image being uploaded, such as
+	 *          its name and dimensions; an existing journal with a different
+	 *          signature is rejected.
+	 * @throws IOException if the journal cannot be read, or belongs to a
+	 *           different image.
+	 */
+	public OMEROUploadJournal(final Path file, final String signature)
+		throws IOException
+	{
+		this.file = file;
+		this.signature = signature;
+		if (!Files.isRegularFile(file)) return;
+
+		final byte[] bytes = Files.readAllBytes(file);
+		if (bytes.length == 0) return;
+		final List<String> lines = new ArrayList<>(Arrays.asList(new String(
+			bytes, StandardCharsets.UTF_8).split("\\r?\\n")));
+		// NB: The last line may be partial, if the upload died writing it.
+		final boolean partial = bytes[bytes.length - 1] != '\n';
+		if (partial) lines.remove(lines.size() - 1);
+		if (lines.isEmpty()) return;
+		if (!lines.get(0).equals(SIGNATURE + signature)) {
+			throw new IOException("Upload journal " + file +
+				" belongs to a different image");
+		}
+		if (lines.size() < 2 || !lines.get(1).startsWith(IMAGE)) return;
+		final String[] ids = lines.get(1).substring(IMAGE.length()).split(" ");
+		try {
+			imageID = Long.parseLong(ids[0]);
+			pixelsID = Long.parseLong(ids[1]);
+		}
+		catch (final NumberFormatException | ArrayIndexOutOfBoundsException exc) {
+			throw new IOException("Invalid upload journal " + file, exc);
+		}
+		for (final String line : lines.subList(2, lines.size())) {
+			if (line.split(" ").length == 7) written.add(line);
+		}
+		if (partial) truncate(file, bytes);
+		out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+			StandardOpenOption.APPEND);
+	}
+
+	// -- OMEROUploadJournal methods --
+
+	/** Gets whether the journal names pixels from a previous upload. */
+	public boolean isResumed() {
+		return pixelsID > 0;
+	}
+
+	/** Gets the ID of the image being uploaded, or 0 if not yet started. */
+	public long getImageID() {
+		return imageID;
+	}
+
+	/** Gets the ID of the pixels being uploaded, or 0 if not yet started. */
+	public long getPixelsID() {
+		return pixelsID;
+	}
+
+	/** Gets the number of pieces recorded as uploaded. */
+	public synchronized int getWrittenCount() {
+		return written.size();
+	}
+
+	/** Starts a new journal for an upload to the given image and pixels. */
+	public synchronized void start(final long imageID, final long pixelsID)
+		throws IOException
+	{
+		if (out != null) out.close();
+		written.clear();
+		this.imageID = imageID;
+		this.pixelsID = pixelsID;
+		final Path dir = file.toAbsolutePath().getParent();
+		if (dir != null) Files.createDirectories(dir);
+		out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+		out.write(SIGNATURE + signature);
+		out.newLine();
+		out.write(IMAGE + imageID + " " + pixelsID);
+		out.newLine();
+		out.flush();
+	}
+
+	/** Gets whether the given piece is recorded as uploaded. */
+	public synchronized boolean isWritten(final int z, final int c,
+		final int t, final int x, final int y, final int w, final int h)
+	{
+		return written.contains(entry(z, c, t, x, y, w, h));
+	}
+
+	/** Records the given piece as uploaded. */
+	public synchronized void written(final int z, final int c, final int t,
+		final int x, final int y, final int w, final int h) throws IOException
+	{
+		if (out == null) throw new IllegalStateException("Journal not started");
+		final String entry = entry(z, c, t, x, y, w, h);
+		if (!written.add(entry)) return;
+		out.write(entry);
+		out.newLine();
+		out.flush();
+	}
+
+	/** Closes and deletes the journal, once its upload is complete. */
+	public synchronized void delete() throws IOException {
+		close();
+		Files.deleteIfExists(file);
+	}
+
+	// -- Closeable methods --
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (out != null) out.close();
+		out = null;
+	}
+
+	// -- Helper methods --
+
+	/** Discards the partial last line of the given file contents. */
+	private static void truncate(final Path file, final byte[] bytes)
+		throws IOException
+	{
+		int length = bytes.length;
+		while (length > 0 && bytes[length - 1] != '\n')
+			length--;
+		try (final FileChannel channel = FileChannel.open(file,
+			StandardOpenOption.WRITE))
+		{
+			channel.truncate(length);
+		}
+	}
+
+	private static String entry(final int z, final int c, final int t,
+		final int x, final int y, final int w, final int h)
+	{
+		return z + " " + c + " " + t + " " + x + " " + y + " " + w + " " + h;
+	}
+
+}
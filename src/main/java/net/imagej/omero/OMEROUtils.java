@@ -177,4 +177,22 @@ public final class OMEROUtils {
 		}
 	}
 
+	/**
+	 * Gets whether the given error, or any of its causes, means that the
+	 * connection to the OMERO server or the session on it was lost, such that
+	 * logging in again may help.
+	 */
+	public static boolean isSessionLost(final Throwable t) {
+		for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+			if (cause instanceof Ice.CommunicationException || //
+				cause instanceof Ice.ObjectNotExistException || //
+				cause instanceof Glacier2.SessionNotExistException || //
+				cause instanceof omero.SessionException)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
 }
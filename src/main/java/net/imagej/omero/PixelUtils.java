@@ -0,0 +1,199 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Utility class for converting between the raw bytes of OMERO pixels and
+ * primitive arrays.
+ * <p>
+ * OMERO transfers pixels in big-endian byte order. The conversions here work
+ * in bulk through {@link ByteBuffer} views, which swap byte order as needed,
+ * rather than pixel by pixel, and write into caller-supplied arrays so that
+ * they can be reused from plane to plane.
+ * </p>
+ */
+public final class PixelUtils {
+
+	private PixelUtils() {
+		// NB: Prevent instantiation of utility class.
+	}
+
+	/** Creates a primitive array of the given pixel kind and length. */
+	public static Object makeArray(final int bytesPerPixel,
+		final boolean floating, final int length)
+	{
+		switch (bytesPerPixel) {
+			case 1:
+				return new byte[length];
+			case 2:
+				return new short[length];
+			case 4:
+				return floating ? new float[length] : new int[length];
+			case 8:
+				return floating ? new double[length] : new long[length];
+			default:
+				throw new IllegalArgumentException("Unsupported bytes per pixel: " +
+					bytesPerPixel);
+		}
+	}
+
+	/**
+	 * Decodes big-endian OMERO pixel bytes into the given primitive array, which
+	 * must be exactly large enough to hold them.
+	 */
+	public static void decode(final byte[] bytes, final Object array) {
+		if (bytes.length != length(array) * bytesPerElement(array)) {
+			throw new IllegalArgumentException("Array size mismatch: " +
+				bytes.length + " bytes for " + length(array) + " elements");
+		}
+		decode(bytes, 0, array, false);
+	}
+
+	/**
+	 * Decodes pixel bytes in the given byte order into the given primitive
+	 * array, filling the whole array.
+	 */
+	public static void decode(final byte[] bytes, final int offset,
+		final Object array, final boolean littleEndian)
+	{
+		final ByteBuffer buffer = buffer(bytes, offset, array, littleEndian);
+		if (array instanceof byte[]) buffer.get((byte[]) array);
+		else if (array instanceof short[]) {
+			buffer.asShortBuffer().get((short[]) array);
+		}
+		else if (array instanceof int[]) buffer.asIntBuffer().get((int[]) array);
+		else if (array instanceof long[]) buffer.asLongBuffer().get((long[]) array);
+		else if (array instanceof float[]) {
+			buffer.asFloatBuffer().get((float[]) array);
+		}
+		else if (array instanceof double[]) {
+			buffer.asDoubleBuffer().get((double[]) array);
+		}
+		else throw unsupported(array);
+	}
+
+	/** Encodes the given primitive array into big-endian OMERO pixel bytes. */
+	public static byte[] encode(final Object array) {
+		final byte[] bytes = new byte[length(array) * bytesPerElement(array)];
+		encode(array, bytes, 0, false);
+		return bytes;
+	}
+
+	/**
+	 * Encodes the whole given primitive array into pixel bytes of the given
+	 * byte order.
+	 */
+	public static void encode(final Object array, final byte[] bytes,
+		final int offset, final boolean littleEndian)
+	{
+		final ByteBuffer buffer = buffer(bytes, offset, array, littleEndian);
+		if (array instanceof byte[]) buffer.put((byte[]) array);
+		else if (array instanceof short[]) {
+			buffer.asShortBuffer().put((short[]) array);
+		}
+		else if (array instanceof int[]) buffer.asIntBuffer().put((int[]) array);
+		else if (array instanceof long[]) buffer.asLongBuffer().put((long[]) array);
+		else if (array instanceof float[]) {
+			buffer.asFloatBuffer().put((float[]) array);
+		}
+		else if (array instanceof double[]) {
+			buffer.asDoubleBuffer().put((double[]) array);
+		}
+		else throw unsupported(array);
+	}
+
+	/**
+	 * Copies pixel bytes from one array to another, optionally reversing the
+	 * byte order of each pixel.
+	 *
+	 * @param length Number of bytes to copy; a multiple of the pixel size.
+	 * @param bytesPerPixel Size of each pixel: 1, 2, 4 or 8 bytes.
+	 * @param swap Whether to reverse the byte order of each pixel.
+	 */
+	public static void copy(final byte[] src, final int srcOffset,
+		final byte[] dest, final int destOffset, final int length,
+		final int bytesPerPixel, final boolean swap)
+	{
+		if (!swap || bytesPerPixel == 1) {
+			System.arraycopy(src, srcOffset, dest, destOffset, length);
+			return;
+		}
+		final ByteBuffer in = ByteBuffer.wrap(src, srcOffset, length).slice() //
+			.order(ByteOrder.LITTLE_ENDIAN);
+		final ByteBuffer out = ByteBuffer.wrap(dest, destOffset, length).slice();
+		switch (bytesPerPixel) {
+			case 2:
+				out.asShortBuffer().put(in.asShortBuffer());
+				break;
+			case 4:
+				out.asIntBuffer().put(in.asIntBuffer());
+				break;
+			case 8:
+				out.asLongBuffer().put(in.asLongBuffer());
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported bytes per pixel: " +
+					bytesPerPixel);
+		}
+	}
+
+	// -- Helper methods --
+
+	private static ByteBuffer buffer(final byte[] bytes, final int offset,
+		final Object array, final boolean littleEndian)
+	{
+		final int length = length(array) * bytesPerElement(array);
+		return ByteBuffer.wrap(bytes, offset, length).slice().order(littleEndian
+			? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+	}
+
+	private static int length(final Object array) {
+		if (array instanceof byte[]) return ((byte[]) array).length;
+		if (array instanceof short[]) return ((short[]) array).length;
+		if (array instanceof int[]) return ((int[]) array).length;
+		if (array instanceof long[]) return ((long[]) array).length;
+		if (array instanceof float[]) return ((float[]) array).length;
+		if (array instanceof double[]) return ((double[]) array).length;
+		throw unsupported(array);
+	}
+
+	private static int bytesPerElement(final Object array) {
+		if (array instanceof byte[]) return 1;
+		if (array instanceof short[]) return 2;
+		if (array instanceof int[] || array instanceof float[]) return 4;
+		if (array instanceof long[] || array instanceof double[]) return 8;
+		throw unsupported(array);
+	}
+
+	private static IllegalArgumentException unsupported(final Object array) {
+		return new IllegalArgumentException("Unsupported array type: " + //
+			(array == null ? null : array.getClass().getName()));
+	}
+
+}
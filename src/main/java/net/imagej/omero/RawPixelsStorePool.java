@@ -0,0 +1,289 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+import omero.ServerError;
+import omero.api.RawPixelsStorePrx;
+import omero.api.ServiceFactoryPrx;
+
+/**
+ * A bounded pool of {@link RawPixelsStorePrx} instances belonging to one
+ * OMERO session, so that several pixel requests can be in flight at once
+ * without sharing the mutable state of a single store.
+ * <p>
+ * Each leased store is for the exclusive use of its caller until it is
+ * {@link #release released}. Stores are opened lazily, up to the maximum pool
+ * size; callers beyond that wait, in order of arrival, for a store to be
+ * released. An idle store already bound to the requested pixels is preferred;
+ * otherwise an idle store is rebound to them.
+ * </p>
+ */
+public class RawPixelsStorePool implements Closeable {
+
+	/** Default maximum number of stores per session. */
+	public static final int DEFAULT_MAX_SIZE = 4;
+
+	/** Resolution level denoting the pixels' default (full) resolution. */
+	public static final int DEFAULT_LEVEL = -1;
+
+	private final ServiceFactoryPrx session;
+	private final Semaphore permits = new Semaphore(0, true);
+	private int maxSize;
+
+	/** Idle stores, most recently released last. */
+	private final List<RawPixelsStorePrx> idle = new ArrayList<>();
+
+	/** Pixels and resolution level to which each open store is bound. */
+	private final Map<RawPixelsStorePrx, Binding> bindings =
+		new IdentityHashMap<>();
+
+	private volatile boolean closed;
+
+	public RawPixelsStorePool(final ServiceFactoryPrx session) {
+		this(session, DEFAULT_MAX_SIZE);
+	}
+
+	public RawPixelsStorePool(final ServiceFactoryPrx session,
+		final int maxSize)
+	{
+		this.session = session;
+		ensureMaxSize(maxSize);
+	}
+
+	// -- RawPixelsStorePool methods --
+
+	/** Gets the maximum number of stores this pool will open. */
+	public synchronized int getMaxSize() {
+		return maxSize;
+	}
+
+	/** Grows the pool, if needed, to allow at least the given number of stores. */
+	public synchronized void ensureMaxSize(final int size) {
+		if (size < 1) throw new IllegalArgumentException("Invalid size: " + size);
+		if (size <= maxSize) return;
+		permits.release(size - maxSize);
+		maxSize = size;
+	}
+
+	/**
+	 * Obtains exclusive use of a store bound to the given pixels, at their
+	 * default (full) resolution, waiting if the pool is exhausted. Every leased
+	 * store must be handed back via {@link #release} or {@link #discard}.
+	 */
+	public RawPixelsStorePrx lease(final long pixelsID) throws ServerError {
+		return lease(pixelsID, DEFAULT_LEVEL);
+	}
+
+	/**
+	 * Obtains exclusive use of a store bound to the given pixels, at the given
+	 * server resolution level, waiting if the pool is exhausted. Every leased
+	 * store must be handed back via {@link #release} or {@link #discard}.
+	 *
+	 * @param pixelsID ID of the pixels to read or write
+	 * @param level resolution level, as passed to
+	 *          {@link RawPixelsStorePrx#setResolutionLevel}, or
+	 *          {@link #DEFAULT_LEVEL} for the pixels' default resolution
+	 * @throws ServerError if the store cannot be opened, or the calling thread
+	 *           is interrupted while waiting, in which case its interrupt flag
+	 *           stays set
+	 */
+	public RawPixelsStorePrx lease(final long pixelsID, final int level)
+		throws ServerError
+	{
+		try {
+			permits.acquire();
+		}
+		catch (final InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			final ServerError err = new ServerError();
+			err.initCause(exc);
+			throw err;
+		}
+		return open(pixelsID, level);
+	}
+
+	/**
+	 * Obtains exclusive use of a store bound to the given pixels, at the given
+	 * server resolution level, if one is available without waiting.
+	 *
+	 * @return the store, or null if the pool is exhausted
+	 * @see #lease(long, int)
+	 */
+	public RawPixelsStorePrx tryLease(final long pixelsID, final int level)
+		throws ServerError
+	{
+		if (!permits.tryAcquire()) return null;
+		return open(pixelsID, level);
+	}
+
+	/**
+	 * Gets whether this pool was closed, e.g. because its session logged in
+	 * again, so that a new pool must be obtained from the session.
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/** Hands back a store previously obtained via {@link #lease}. */
+	public void release(final RawPixelsStorePrx store) {
+		synchronized (this) {
+			// NB: Stores of a closed pool have already been closed.
+			if (!closed) idle.add(store);
+		}
+		permits.release();
+	}
+
+	/**
+	 * Hands back a leased store which is no longer usable (e.g., because its
+	 * connection failed), closing it rather than returning it to the pool.
+	 */
+	public void discard(final RawPixelsStorePrx store) {
+		discardStore(store);
+		permits.release();
+	}
+
+	// -- Closeable methods --
+
+	/** Closes all stores opened by this pool. */
+	@Override
+	public synchronized void close() {
+		closed = true;
+		for (final RawPixelsStorePrx store : bindings.keySet()) {
+			close(store);
+		}
+		bindings.clear();
+		idle.clear();
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Opens or rebinds a store for the given pixels and level, having obtained
+	 * a permit, which is given back if that fails.
+	 */
+	private RawPixelsStorePrx open(final long pixelsID, final int level)
+		throws ServerError
+	{
+		try {
+			RawPixelsStorePrx store = takeIdle(pixelsID, level);
+			if (store == null) store = session.createRawPixelsStore();
+			try {
+				final Binding binding = binding(store);
+				if (binding == null || binding.pixelsID != pixelsID || //
+					level == DEFAULT_LEVEL && binding.level != DEFAULT_LEVEL)
+				{
+					// NB: Binding to pixels resets the store to the default level.
+					store.setPixelsId(pixelsID, false);
+					bind(store, pixelsID, DEFAULT_LEVEL);
+				}
+				if (level != DEFAULT_LEVEL && binding(store).level != level) {
+					store.setResolutionLevel(level);
+					bind(store, pixelsID, level);
+				}
+			}
+			catch (final ServerError | RuntimeException exc) {
+				discardStore(store);
+				throw exc;
+			}
+			return store;
+		}
+		catch (final ServerError | RuntimeException exc) {
+			permits.release();
+			throw exc;
+		}
+	}
+
+	/**
+	 * Removes an idle store from the pool, preferring one bound to the given
+	 * pixels and level, then one bound to the given pixels, then the most
+	 * recently used one.
+	 */
+	private synchronized RawPixelsStorePrx takeIdle(final long pixelsID,
+		final int level)
+	{
+		if (closed) throw new IllegalStateException("Pool is closed");
+		if (idle.isEmpty()) return null;
+		int match = idle.size() - 1;
+		for (int i = idle.size() - 1; i >= 0; i--) {
+			final Binding binding = bindings.get(idle.get(i));
+			if (binding == null || binding.pixelsID != pixelsID) continue;
+			if (binding.level == level) {
+				match = i;
+				break;
+			}
+			final Binding best = bindings.get(idle.get(match));
+			if (best == null || best.pixelsID != pixelsID) match = i;
+		}
+		return idle.remove(match);
+	}
+
+	private synchronized Binding binding(final RawPixelsStorePrx store) {
+		return bindings.get(store);
+	}
+
+	private synchronized void bind(final RawPixelsStorePrx store,
+		final long pixelsID, final int level)
+	{
+		bindings.put(store, new Binding(pixelsID, level));
+	}
+
+	private void discardStore(final RawPixelsStorePrx store) {
+		synchronized (this) {
+			bindings.remove(store);
+		}
+		close(store);
+	}
+
+	private static void close(final RawPixelsStorePrx store) {
+		try {
+			store.close();
+		}
+		catch (final ServerError | Ice.LocalException exc) {
+			// NB: The store is being discarded anyway.
+		}
+	}
+
+	// -- Helper classes --
+
+	private static class Binding {
+
+		private final long pixelsID;
+		private final int level;
+
+		private Binding(final long pixelsID, final int level) {
+			this.pixelsID = pixelsID;
+			this.level = level;
+		}
+	}
+
+}
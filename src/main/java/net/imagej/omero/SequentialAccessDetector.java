@@ -0,0 +1,275 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Watches the sequence of (Z, C, T) positions read from an image, and predicts
+ * which planes will be read next whenever the reads walk sequentially through
+ * the planes.
+ * <p>
+ * A walk is recognized once the same tile region has been read at least
+ * {@link #MIN_STREAK} times in a row with its position advancing by one step
+ * (forward or backward), either in raster order of the planes (XYCZT, i.e.
+ * channels fastest, then focal planes, then time points), or along any one
+ * of the Z, C and T axes. Each tile region of each resolution level keeps its
+ * own streak, so that walks of several tiles read in turn are each recognized,
+ * and a walk at one level never predicts reads at another.
+ * </p>
+ */
+public class SequentialAccessDetector {
+
+	/** Number of consecutive sequential steps needed to predict a walk. */
+	public static final int MIN_STREAK = 2;
+
+	/** Maximum number of tile regions whose walks are tracked. */
+	public static final int MAX_REGIONS = 64;
+
+	/** Pseudo-axis of a walk in raster order of the planes. */
+	private static final int RASTER = -2;
+
+	private final int sizeZ, sizeC, sizeT;
+	private final int depth;
+
+	/** Region of the read being recorded, reused to look up its walk. */
+	private final Region lookup = new Region(0, 0, 0, 0, 0);
+
+	/** Walk in progress of each recently read tile region. */
+	private final Map<Region, Walk> walks = new LinkedHashMap<Region, Walk>(16,
+		0.75f, true)
+	{
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Region, Walk> eldest) {
+			return size() > MAX_REGIONS;
+		}
+	};
+
+	/**
+	 * Creates a detector for an image of the given Z, C and T lengths.
+	 *
+	 * @param sizeZ number of focal planes
+	 * @param sizeC number of channels
+	 * @param sizeT number of time points
+	 * @param depth maximum number of planes to predict ahead
+	 */
+	public SequentialAccessDetector(final int sizeZ, final int sizeC,
+		final int sizeT, final int depth)
+	{
+		this.sizeZ = sizeZ;
+		this.sizeC = sizeC;
+		this.sizeT = sizeT;
+		this.depth = depth;
+	}
+
+	/**
+	 * Records a read of the given tile at the default resolution level.
+	 *
+	 * @see #access(int, int[], int, int, int, int)
+	 */
+	public List<int[]> access(final int[] zct, final int x, final int y,
+		final int w, final int h)
+	{
+		return access(RawPixelsStorePool.DEFAULT_LEVEL, zct, x, y, w, h);
+	}
+
+	/**
+	 * Records a read of the given tile, and returns the (Z, C, T) positions of
+	 * the planes predicted to be read next, nearest first. The list is empty if
+	 * no sequential walk of the tile's region is in progress at the given
+	 * resolution level.
+	 *
+	 * @see #access(int, int[], int, int, int, int, int[][])
+	 */
+	public List<int[]> access(final int level, final int[] zct, final int x,
+		final int y, final int w, final int h)
+	{
+		final int[][] next = new int[Math.max(depth, 0)][3];
+		final int count = access(level, zct, x, y, w, h, next);
+		return count == 0 ? Collections.emptyList() : //
+			Arrays.asList(next).subList(0, count);
+	}
+
+	/**
+	 * Records a read of the given tile, and stores the (Z, C, T) positions of
+	 * the planes predicted to be read next, nearest first, in the given array,
+	 * so that repeated reads allocate nothing.
+	 *
+	 * @param next array of (Z, C, T) positions to fill, predicting at most as
+	 *          many planes as it has elements
+	 * @return the number of positions predicted; 0 if no sequential walk of
+	 *         the tile's region is in progress at the given resolution level
+	 */
+	public synchronized int access(final int level, final int[] zct,
+		final int x, final int y, final int w, final int h, final int[][] next)
+	{
+		final Walk walk = walks.get(lookup.set(level, x, y, w, h));
+		if (walk == null) {
+			walks.put(new Region(level, x, y, w, h), new Walk(zct));
+			return 0;
+		}
+		walk.advance(zct);
+		if (walk.streak < MIN_STREAK) return 0;
+
+		final int limit = Math.min(depth, next.length);
+		int count = 0;
+		if (walk.axis == RASTER) {
+			final long index = index(zct);
+			final long size = (long) sizeZ * sizeC * sizeT;
+			for (int i = 1; i <= limit; i++) {
+				final long pos = index + (long) i * walk.step;
+				if (pos < 0 || pos >= size) break;
+				zct(pos, next[count++]);
+			}
+		}
+		else {
+			final int size = walk.axis == 0 ? sizeZ : walk.axis == 1 ? sizeC
+				: sizeT;
+			for (int i = 1; i <= limit; i++) {
+				final int pos = zct[walk.axis] + i * walk.step;
+				if (pos < 0 || pos >= size) break;
+				final int[] p = next[count++];
+				System.arraycopy(zct, 0, p, 0, p.length);
+				p[walk.axis] = pos;
+			}
+		}
+		return count;
+	}
+
+	// -- Helper methods --
+
+	/** Gets the raster index of the given plane, in XYCZT order. */
+	private long index(final int[] zct) {
+		return zct[1] + (long) sizeC * (zct[0] + (long) sizeZ * zct[2]);
+	}
+
+	/** Stores the (Z, C, T) position of the plane with the given raster index. */
+	private void zct(final long index, final int[] zct) {
+		zct[0] = (int) (index / sizeC % sizeZ);
+		zct[1] = (int) (index % sizeC);
+		zct[2] = (int) (index / sizeC / sizeZ);
+	}
+
+	// -- Helper classes --
+
+	/** The position and step of a walk through the planes of one region. */
+	private class Walk {
+
+		private final int[] lastPos;
+		private int axis = -1;
+		private int step;
+		private int streak;
+
+		private Walk(final int[] zct) {
+			lastPos = zct.clone();
+		}
+
+		private void advance(final int[] zct) {
+			final long delta = index(zct) - index(lastPos);
+			int changed = -1;
+			int diff = 0;
+			if (Math.abs(delta) == 1) {
+				// NB: Steps in raster order include steps along the fastest axes.
+				changed = RASTER;
+				diff = (int) delta;
+			}
+			else {
+				for (int d = 0; d < zct.length; d++) {
+					final int dd = zct[d] - lastPos[d];
+					if (dd == 0) continue;
+					if (changed != -1 || Math.abs(dd) != 1) {
+						changed = -1;
+						diff = 0;
+						break;
+					}
+					changed = d;
+					diff = dd;
+				}
+			}
+			if (changed != -1) {
+				if (changed == axis && diff == step) streak++;
+				else {
+					axis = changed;
+					step = diff;
+					streak = 1;
+				}
+			}
+			else if (delta != 0) {
+				// NB: Re-reading the same plane does not break a walk.
+				axis = -1;
+				streak = 0;
+			}
+			System.arraycopy(zct, 0, lastPos, 0, lastPos.length);
+		}
+	}
+
+	/** A rectangle of a plane at one resolution level. */
+	private static class Region {
+
+		private int level, x, y, w, h;
+
+		private Region(final int level, final int x, final int y, final int w,
+			final int h)
+		{
+			set(level, x, y, w, h);
+		}
+
+		private Region set(final int level, final int x, final int y,
+			final int w, final int h)
+		{
+			this.level = level;
+			this.x = x;
+			this.y = y;
+			this.w = w;
+			this.h = h;
+			return this;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Region)) return false;
+			final Region other = (Region) obj;
+			return level == other.level && x == other.x && y == other.y && //
+				w == other.w && h == other.h;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = level;
+			hash = 31 * hash + x;
+			hash = 31 * hash + y;
+			hash = 31 * hash + w;
+			hash = 31 * hash + h;
+			return hash;
+		}
+	}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.scif.util.FormatTools;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link ChannelStats}.
+ */
+public class ChannelStatsTest {
+
+	/** Tests accumulating unsigned 16-bit statistics over several planes. */
+	@Test
+	public void testUint16() {
+		final ChannelStats stats = new ChannelStats(2, FormatTools.UINT16);
+		assertFalse(stats.has(0));
+
+		final short[] plane1 = { 100, (short) 60000, 7 };
+		final short[] plane2 = { 3, 200, 500 };
+		stats.add(0, PixelUtils.encode(plane1), 0, 6, false);
+		stats.add(0, PixelUtils.encode(plane2), 0, 6, false);
+		assertTrue(stats.has(0));
+		assertFalse(stats.has(1));
+		assertEquals(3, stats.getMin(0), 0);
+		assertEquals(60000, stats.getMax(0), 0);
+
+		// little-endian bytes at an offset
+		final byte[] bytes = new byte[8];
+		PixelUtils.encode(new short[] { 9, 4 }, bytes, 4, true);
+		stats.add(1, bytes, 4, 4, true);
+		assertEquals(4, stats.getMin(1), 0);
+		assertEquals(9, stats.getMax(1), 0);
+	}
+
+	/** Tests signed 8-bit statistics. */
+	@Test
+	public void testInt8() {
+		final ChannelStats stats = new ChannelStats(1, FormatTools.INT8);
+		stats.add(0, new byte[] { -5, 0, 120 }, 0, 3, false);
+		assertEquals(-5, stats.getMin(0), 0);
+		assertEquals(120, stats.getMax(0), 0);
+	}
+
+	/** Tests that NaN values are ignored in floating point statistics. */
+	@Test
+	public void testFloat() {
+		final ChannelStats stats = new ChannelStats(1, FormatTools.FLOAT);
+		final float[] plane = { 1.5f, Float.NaN, -2.25f };
+		stats.add(0, PixelUtils.encode(plane), 0, 12, false);
+		assertEquals(-2.25, stats.getMin(0), 0);
+		assertEquals(1.5, stats.getMax(0), 0);
+	}
+
+}
@@ -0,0 +1,253 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import io.scif.FormatException;
+import io.scif.services.FormatService;
+
+import java.net.URISyntaxException;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+import Glacier2.CannotCreateSessionException;
+import Glacier2.PermissionDeniedException;
+import mockit.Expectations;
+import mockit.Mocked;
+import mockit.Verifications;
+import omero.ClientError;
+import omero.ServerError;
+import omero.api.ServiceFactoryPrx;
+import omero.gateway.Gateway;
+import omero.gateway.LoginCredentials;
+import omero.log.Logger;
+import omero.model.ExperimenterI;
+import omero.model.IObject;
+import omero.model.ImageI;
+import omero.model.PixelsI;
+import omero.sys.EventContext;
+import omero.sys.Parameters;
+
+/**
+ * Tests {@link DefaultOMEROSession} against a mocked OMERO client.
+ */
+public class DefaultOMEROSessionTest {
+
+	private OMEROLocation location;
+
+	@Mocked
+	private omero.client client;
+
+	@Mocked
+	private ServiceFactoryPrx session;
+
+	@Mocked
+	private Gateway gateway;
+
+	@Before
+	public void setup() throws URISyntaxException {
+		location = new OMEROLocation("localhost", 4064, "user", "password");
+	}
+
+	// -- Tests --
+
+	/**
+	 * Tests that the user and group are loaded from the session itself,
+	 * without connecting a gateway.
+	 */
+	@Test
+	public void testSingleLogin() throws ServerError, PermissionDeniedException,
+		CannotCreateSessionException
+	{
+		final EventContext eventContext = new EventContext();
+		eventContext.userId = 5;
+		eventContext.groupId = 3;
+		new Expectations() {
+
+			{
+				client.getSession();
+				result = new ClientError("Not logged in");
+				client.createSession("user", "password");
+				result = session;
+				session.getAdminService().getEventContext();
+				result = eventContext;
+				session.getAdminService().getExperimenter(5);
+				result = new ExperimenterI(5, true);
+			}
+		};
+
+		final DefaultOMEROSession s = new DefaultOMEROSession(location, null);
+		assertEquals(3, s.getSecurityContext().getGroupID());
+		assertEquals(5, s.getExperimenter().getId());
+		assertSame(s.getExperimenter(), s.getExperimenter());
+		new Verifications() {
+
+			{
+				client.createSession(anyString, anyString);
+				times = 1;
+				session.getAdminService().getEventContext();
+				times = 1;
+				new Gateway((Logger) any);
+				times = 0;
+			}
+		};
+	}
+
+	/** Tests that the gateway joins the existing session, once. */
+	@Test
+	public void testLazyGateway() throws Exception {
+		new Expectations() {
+
+			{
+				client.getSession();
+				result = new ClientError("Not logged in");
+				client.createSession("user", "password");
+				result = session;
+				client.getSessionId();
+				result = "abc";
+				minTimes = 0;
+			}
+		};
+
+		final DefaultOMEROSession s = new DefaultOMEROSession(location, null);
+		final Gateway g = s.getGateway();
+		assertSame(g, s.getGateway());
+		new Verifications() {
+
+			{
+				LoginCredentials credentials;
+				gateway.connect(credentials = withCapture());
+				times = 1;
+				assertEquals("abc", credentials.getUser().getUsername());
+				assertEquals("localhost", credentials.getServer().getHostname());
+				client.createSession(anyString, anyString);
+				times = 1;
+			}
+		};
+	}
+
+	/** Tests that an existing login of the given client is reused. */
+	@Test
+	public void testReuseLogin() throws ServerError, PermissionDeniedException,
+		CannotCreateSessionException
+	{
+		new Expectations() {
+
+			{
+				client.getSession();
+				result = session;
+			}
+		};
+
+		final DefaultOMEROSession s = new DefaultOMEROSession(location, client,
+			null);
+		assertSame(session, s.getSession());
+		new Verifications() {
+
+			{
+				client.createSession(anyString, anyString);
+				times = 0;
+				client.joinSession(anyString);
+				times = 0;
+				// NB: The login belongs to the client's owner.
+				session.detachOnDestroy();
+				times = 0;
+			}
+		};
+	}
+
+	/**
+	 * Tests that the pixels, image and name are loaded in a single query, and
+	 * then shared with other readers of the image.
+	 */
+	@Test
+	public void testLoadPixels() throws Exception {
+		final ImageI image = new ImageI(2, true);
+		image.setName(omero.rtypes.rstring("cells"));
+		final PixelsI pixels = new PixelsI(1, true);
+		pixels.setImage(image);
+		new Expectations() {
+
+			{
+				client.getSession();
+				result = new ClientError("Not logged in");
+				client.createSession("user", "password");
+				result = session;
+				session.getQueryService().findAllByQuery(anyString,
+					(Parameters) any);
+				result = Arrays.<IObject> asList(pixels);
+			}
+		};
+
+		final Context context = new Context(OMEROService.class);
+		try {
+			final DefaultOMEROSession s = new DefaultOMEROSession(location, context
+				.getService(OMEROService.class));
+			final OMEROFormat.Metadata meta = metadata(context, 2);
+			assertSame(pixels, s.loadPixels(meta));
+			assertEquals(1, s.loadPixelsID(meta));
+			assertEquals("cells", s.loadImageName(meta));
+
+			// another reader of the image finds the pixels in the shared cache
+			final OMEROFormat.Metadata other = metadata(context, 2);
+			assertEquals(1, s.loadPixels(other).getId().getValue());
+			assertEquals("cells", other.getName());
+		}
+		finally {
+			context.dispose();
+		}
+		new Verifications() {
+
+			{
+				session.getQueryService().findAllByQuery(anyString,
+					(Parameters) any);
+				times = 1;
+				session.getContainerService();
+				times = 0;
+				session.getPixelsService();
+				times = 0;
+			}
+		};
+	}
+
+	// -- Helper methods --
+
+	/** Creates metadata of the image with the given ID. */
+	private static OMEROFormat.Metadata metadata(final Context context,
+		final long imageID) throws FormatException
+	{
+		final OMEROFormat.Metadata meta = (OMEROFormat.Metadata) context
+			.getService(FormatService.class).getFormatFromClass(OMEROFormat.class)
+			.createMetadata();
+		meta.setImageID(imageID);
+		return meta;
+	}
+}
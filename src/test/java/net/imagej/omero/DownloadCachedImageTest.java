@@ -0,0 +1,144 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+import net.imagej.Dataset;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+import mockit.Expectations;
+import mockit.Mocked;
+import omero.ServerError;
+import omero.api.RawPixelsStorePrx;
+import omero.api.ServiceFactoryPrx;
+import omero.model.Pixels;
+import omero.model.PixelsI;
+import omero.model.PixelsTypeI;
+
+/**
+ * Tests that {@link OMEROService#downloadCachedImage} hands back its session
+ * once the image is closed.
+ */
+public class DownloadCachedImageTest {
+
+	private OMEROLocation location;
+	private OMEROService service;
+
+	@Mocked
+	private omero.client client;
+
+	@Mocked
+	private DefaultOMEROSession session;
+
+	@Mocked
+	private ServiceFactoryPrx factory;
+
+	@Mocked
+	private RawPixelsStorePrx store;
+
+	@Before
+	public void setup() throws URISyntaxException {
+		location = new OMEROLocation("localhost", 4064, "abc");
+		service = new Context(OMEROService.class).getService(OMEROService.class);
+		// NB: Keep no idle sessions, so that a handed back session is evicted.
+		service.getSessionPool().setSize(0, 4);
+	}
+
+	@After
+	public void teardown() {
+		service.context().dispose();
+	}
+
+	// -- Tests --
+
+	/** Tests that closing a cached image hands back its session lease. */
+	@Test
+	public void testCloseCachedImage() throws ServerError, IOException {
+		setUpMethodCalls();
+
+		final Dataset dataset = service.downloadCachedImage(client, 1);
+		assertEquals(8, dataset.dimension(0));
+
+		// the session stays leased while the image may load cells
+		service.getSessionPool().setIdleTimeout(0);
+		assertEquals(1, service.getSessionPool().size(location));
+
+		service.closeCachedImage(dataset);
+		assertEquals(0, service.getSessionPool().size(location));
+
+		// closing again does nothing
+		service.closeCachedImage(dataset);
+		assertEquals(0, service.getSessionPool().size(location));
+	}
+
+	// -- Helper methods --
+
+	private void setUpMethodCalls() throws ServerError {
+		final Pixels pixels = new PixelsI(1, true);
+		pixels.setSizeX(omero.rtypes.rint(8));
+		pixels.setSizeY(omero.rtypes.rint(8));
+		pixels.setSizeZ(omero.rtypes.rint(3));
+		pixels.setSizeC(omero.rtypes.rint(1));
+		pixels.setSizeT(omero.rtypes.rint(1));
+		final PixelsTypeI type = new PixelsTypeI(1, true);
+		type.setValue(omero.rtypes.rstring("uint8"));
+		pixels.setPixelsType(type);
+		final RawPixelsStorePool pool = new RawPixelsStorePool(factory, 2);
+
+		new Expectations() {
+
+			{
+				client.getProperty("omero.host");
+				result = "localhost";
+				client.getProperty("omero.port");
+				result = "4064";
+				client.getSessionId();
+				result = "abc";
+
+				session.getSession();
+				result = factory;
+				minTimes = 0;
+				session.loadPixels((OMEROFormat.Metadata) any);
+				result = pixels;
+				session.getPixelsPool();
+				result = pool;
+
+				store.getTileSize();
+				result = new int[] { 4, 4 };
+				store.getResolutionLevels();
+				result = 1;
+			}
+		};
+	}
+}
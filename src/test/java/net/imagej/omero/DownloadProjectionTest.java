@@ -0,0 +1,197 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+
+import net.imagej.Dataset;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+import mockit.Delegate;
+import mockit.Expectations;
+import mockit.Mocked;
+import mockit.Verifications;
+import omero.ServerError;
+import omero.api.IProjectionPrx;
+import omero.api.RawPixelsStorePrx;
+import omero.api.ServiceFactoryPrx;
+import omero.constants.projection.ProjectionType;
+import omero.model.Pixels;
+import omero.model.PixelsI;
+import omero.model.PixelsType;
+import omero.model.PixelsTypeI;
+
+/**
+ * Tests {@link OMEROService#downloadProjection}.
+ */
+public class DownloadProjectionTest {
+
+	private OMEROLocation location;
+	private OMEROService service;
+
+	@Mocked
+	private omero.client client;
+
+	@Mocked
+	private DefaultOMEROSession session;
+
+	@Mocked
+	private ServiceFactoryPrx factory;
+
+	@Mocked
+	private RawPixelsStorePrx store;
+
+	@Mocked
+	private IProjectionPrx projection;
+
+	@Before
+	public void setup() throws URISyntaxException {
+		location = new OMEROLocation("localhost", 4064, "abc");
+		service = new Context(OMEROService.class).getService(OMEROService.class);
+	}
+
+	@After
+	public void teardown() {
+		service.context().dispose();
+	}
+
+	// -- Tests --
+
+	/**
+	 * Tests that each channel is projected on the server, over the given Z
+	 * range, and that the session is handed back afterwards.
+	 */
+	@Test
+	public void testDownloadProjection() throws ServerError, IOException {
+		setUpMethodCalls();
+
+		final Dataset dataset = service.downloadProjection(client, 1,
+			ProjectionType.MAXIMUMINTENSITY, 1, 2);
+		assertArrayEquals(new long[] { 8, 8, 2, 1 }, dimensions(dataset));
+		for (int c = 0; c < 2; c++) {
+			final byte[] plane = (byte[]) dataset.getPlane(c);
+			assertEquals(8 * 8, plane.length);
+			assertEquals(c + 1, plane[0]);
+		}
+		new Verifications() {
+
+			{
+				projection.projectStack(anyLong, (PixelsType) any,
+					ProjectionType.MAXIMUMINTENSITY, 0, anyInt, 1, 1, 2);
+				times = 2;
+			}
+		};
+
+		// the session leased to parse the image is handed back
+		service.getSessionPool().setSize(0, 4);
+		service.getSessionPool().setIdleTimeout(0);
+		service.getSessionPool().lease(location).close();
+		assertEquals(0, service.getSessionPool().size(location));
+	}
+
+	/** Tests that a Z range outside the image is rejected. */
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidRange() throws ServerError, IOException {
+		setUpMethodCalls();
+		service.downloadProjection(client, 1, ProjectionType.MAXIMUMINTENSITY, 1,
+			3);
+	}
+
+	// -- Helper methods --
+
+	private void setUpMethodCalls() throws ServerError {
+		final Pixels pixels = new PixelsI(1, true);
+		pixels.setSizeX(omero.rtypes.rint(8));
+		pixels.setSizeY(omero.rtypes.rint(8));
+		pixels.setSizeZ(omero.rtypes.rint(3));
+		pixels.setSizeC(omero.rtypes.rint(2));
+		pixels.setSizeT(omero.rtypes.rint(1));
+		final PixelsTypeI type = new PixelsTypeI(1, true);
+		type.setValue(omero.rtypes.rstring("uint8"));
+		pixels.setPixelsType(type);
+		final RawPixelsStorePool pool = new RawPixelsStorePool(factory, 2);
+		final Object projections = new Delegate<byte[]>() {
+
+			@SuppressWarnings("unused")
+			byte[] projectStack(final long pixelsID, final PixelsType pixelsType,
+				final ProjectionType algorithm, final int t, final int c,
+				final int stepping, final int zStart, final int zEnd)
+			{
+				final byte[] plane = new byte[8 * 8];
+				Arrays.fill(plane, (byte) (c + 1));
+				return plane;
+			}
+		};
+
+		new Expectations() {
+
+			{
+				client.getProperty("omero.host");
+				result = "localhost";
+				client.getProperty("omero.port");
+				result = "4064";
+				client.getSessionId();
+				result = "abc";
+
+				session.getSession();
+				result = factory;
+				minTimes = 0;
+				session.loadPixels((OMEROFormat.Metadata) any);
+				result = pixels;
+				session.getPixelsPool();
+				result = pool;
+
+				store.getTileSize();
+				result = new int[] { 8, 8 };
+				store.getResolutionLevels();
+				result = 1;
+
+				factory.getProjectionService();
+				result = projection;
+				minTimes = 0;
+				projection.projectStack(anyLong, (PixelsType) any,
+					(ProjectionType) any, anyInt, anyInt, anyInt, anyInt, anyInt);
+				result = projections;
+				minTimes = 0;
+			}
+		};
+	}
+
+	private static long[] dimensions(final Dataset dataset) {
+		final long[] dims = new long[dataset.numDimensions()];
+		dataset.dimensions(dims);
+		return dims;
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.scif.FormatException;
+import io.scif.SCIFIO;
+import io.scif.util.FormatTools;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imagej.ImgPlus;
+import net.imglib2.RandomAccess;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link OMEROCellLoader}.
+ */
+public class OMEROCellLoaderTest {
+
+	/** Tests {@link OMEROCellLoader#type}. */
+	@Test
+	public void testType() {
+		assertTrue(OMEROCellLoader.type(
+			FormatTools.UINT16) instanceof UnsignedShortType);
+		assertTrue(OMEROCellLoader.type(FormatTools.FLOAT) instanceof FloatType);
+	}
+
+	/** Tests {@link OMEROCellLoader#type} with an unsupported pixel type. */
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsupportedType() {
+		OMEROCellLoader.type(FormatTools.BIT);
+	}
+
+	/** Tests that {@link OMEROCellLoader#load} reads tiles via the reader. */
+	@Test
+	public void testLoad() throws FormatException {
+		final SCIFIO scifio = new SCIFIO();
+		try {
+			final OMEROFormat format = scifio.format().getFormatFromClass(
+				OMEROFormat.class);
+			final OMEROFormat.Metadata meta = //
+				(OMEROFormat.Metadata) format.createMetadata();
+			meta.setName("cells");
+			meta.setSizeX(5);
+			meta.setSizeY(3);
+			meta.setSizeZ(2);
+			meta.setSizeC(1);
+			meta.setSizeT(1);
+			meta.setPixelType("uint8");
+			meta.setTileSizeX(2);
+			meta.setTileSizeY(2);
+			meta.checkSubset();
+			meta.populateImageMetadata();
+
+			final AtomicInteger reads = new AtomicInteger();
+			final OMEROFormat.Reader reader = new OMEROFormat.Reader() {
+
+				@Override
+				public OMEROFormat.Metadata getMetadata() {
+					return meta;
+				}
+
+				@Override
+				public byte[] openTile(final int imageIndex, final int[] pos,
+					final int x, final int y, final int w, final int h)
+				{
+					reads.incrementAndGet();
+					final byte[] tile = new byte[w * h];
+					for (int yy = 0; yy < h; yy++) {
+						for (int xx = 0; xx < w; xx++) {
+							tile[w * yy + xx] = (byte) value(x + xx, y + yy, pos[0]);
+						}
+					}
+					return tile;
+				}
+			};
+
+			final ImgPlus<?> img = OMEROCellLoader.createImg(reader, 0);
+			@SuppressWarnings("unchecked")
+			final RandomAccess<? extends RealType<?>> access =
+				(RandomAccess<? extends RealType<?>>) img.randomAccess();
+			for (int z = 0; z < 2; z++) {
+				for (int y = 0; y < 3; y++) {
+					for (int x = 0; x < 5; x++) {
+						access.setPosition(new long[] { x, y, 0, z, 0 });
+						assertEquals(value(x, y, z), access.get().getRealDouble(), 0);
+					}
+				}
+			}
+			// 3 x 2 tiles per plane, 2 planes
+			assertEquals(12, reads.get());
+		}
+		finally {
+			scifio.context().dispose();
+		}
+	}
+
+	// -- Helper methods --
+
+	private static int value(final int x, final int y, final int z) {
+		return x + 5 * y + 15 * z;
+	}
+
+}
@@ -0,0 +1,200 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link OMERODiskCache}.
+ */
+public class OMERODiskCacheTest {
+
+	private Path dir;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = Files.createTempDirectory("omero-cache");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (final Stream<Path> files = Files.walk(dir)) {
+			files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile()
+				.delete());
+		}
+	}
+
+	/** Tests {@link OMERODiskCache#get} and {@link OMERODiskCache#put}. */
+	@Test
+	public void testGetPut() {
+		final OMERODiskCache cache = new OMERODiskCache(dir, 1024);
+		assertTrue(cache.isEnabled());
+		assertNull(cache.get(key(1, 0), "v1"));
+
+		final byte[] data = { 1, 2, 3, 4 };
+		cache.put(key(1, 0), "v1", data);
+		assertArrayEquals(data, cache.get(key(1, 0), "v1"));
+		assertNull(cache.get(key(1, 1), "v1"));
+		assertNull(cache.get(key(2, 0), "v1"));
+
+		// a new cache instance sees the persisted tiles
+		final OMERODiskCache reopened = new OMERODiskCache(dir, 1024);
+		assertArrayEquals(data, reopened.get(key(1, 0), "v1"));
+	}
+
+	/** Tests that tiles of other versions are neither returned nor kept. */
+	@Test
+	public void testVersions() {
+		final OMERODiskCache cache = new OMERODiskCache(dir, 1024);
+		cache.put(key(1, 0), "v1", new byte[] { 1 });
+		assertNull(cache.get(key(1, 0), "v2"));
+
+		cache.put(key(1, 1), "v2", new byte[] { 2 });
+		assertNull(cache.get(key(1, 0), "v1"));
+		assertArrayEquals(new byte[] { 2 }, cache.get(key(1, 1), "v2"));
+	}
+
+	/** Tests that the least recently used tiles are evicted. */
+	@Test
+	public void testEviction() throws IOException {
+		final OMERODiskCache cache = new OMERODiskCache(dir, 10);
+		cache.put(key(1, 0), "v", new byte[4]);
+		cache.put(key(1, 1), "v", new byte[4]);
+		age(key(1, 0), 2000);
+		age(key(1, 1), 1000);
+		cache.get(key(1, 0), "v"); // now most recently used
+
+		cache.put(key(1, 2), "v", new byte[4]);
+		assertTrue(cache.get(key(1, 0), "v") != null);
+		assertNull(cache.get(key(1, 1), "v"));
+		assertTrue(cache.get(key(1, 2), "v") != null);
+	}
+
+	/** Tests that eviction deletes tiles down to the low watermark. */
+	@Test
+	public void testLowWatermark() {
+		final OMERODiskCache cache = new OMERODiskCache(dir, 100);
+		for (int z = 0; z < 11; z++) {
+			cache.put(key(1, z), "v", new byte[10]);
+		}
+		assertEquals(90, cache.getBytes());
+		assertNull(cache.get(key(1, 0), "v"));
+		assertNull(cache.get(key(1, 1), "v"));
+		assertNotNull(cache.get(key(1, 2), "v"));
+	}
+
+	/** Tests that tiles of each server are kept and invalidated separately. */
+	@Test
+	public void testServers() {
+		final OMERODiskCache cache = new OMERODiskCache(dir, 1024);
+		final OMEROTileCache.Key other = new OMEROTileCache.Key("other.host",
+			4064, 3, 5, 1, -1, 0, 0, 0, 0, 0, 64, 64);
+		cache.put(key(1, 0), "v", new byte[] { 1 });
+		cache.put(other, "v", new byte[] { 2 });
+		assertArrayEquals(new byte[] { 1 }, cache.get(key(1, 0), "v"));
+		assertArrayEquals(new byte[] { 2 }, cache.get(other, "v"));
+
+		cache.invalidate("omero.example.org", 4064, 1);
+		assertNull(cache.get(key(1, 0), "v"));
+		assertArrayEquals(new byte[] { 2 }, cache.get(other, "v"));
+		assertEquals(1, cache.getBytes());
+	}
+
+	/**
+	 * Tests that tiles read in one group or as one user are never served to
+	 * another, and are all invalidated together.
+	 */
+	@Test
+	public void testScope() {
+		final OMERODiskCache cache = new OMERODiskCache(dir, 1024);
+		final OMEROTileCache.Key otherGroup = new OMEROTileCache.Key(
+			"omero.example.org", 4064, 4, 5, 1, -1, 0, 0, 0, 0, 0, 64, 64);
+		final OMEROTileCache.Key otherUser = new OMEROTileCache.Key(
+			"omero.example.org", 4064, 3, 6, 1, -1, 0, 0, 0, 0, 0, 64, 64);
+		cache.put(key(1, 0), "v", new byte[] { 1 });
+		assertNull(cache.get(otherGroup, "v"));
+		assertNull(cache.get(otherUser, "v"));
+
+		cache.put(otherGroup, "v", new byte[] { 2 });
+		cache.put(otherUser, "v", new byte[] { 3 });
+		assertArrayEquals(new byte[] { 1 }, cache.get(key(1, 0), "v"));
+		assertArrayEquals(new byte[] { 2 }, cache.get(otherGroup, "v"));
+		assertArrayEquals(new byte[] { 3 }, cache.get(otherUser, "v"));
+
+		cache.invalidate("omero.example.org", 4064, 1);
+		assertNull(cache.get(key(1, 0), "v"));
+		assertNull(cache.get(otherGroup, "v"));
+		assertNull(cache.get(otherUser, "v"));
+		assertEquals(0, cache.getBytes());
+	}
+
+	/** Tests that a cache without a directory does nothing. */
+	@Test
+	public void testDisabled() {
+		final OMERODiskCache cache = new OMERODiskCache(null, 1024);
+		assertFalse(cache.isEnabled());
+		cache.put(key(1, 0), "v", new byte[] { 1 });
+		assertNull(cache.get(key(1, 0), "v"));
+	}
+
+	// -- Helper methods --
+
+	private static OMEROTileCache.Key key(final long pixelsID, final int z) {
+		return new OMEROTileCache.Key("omero.example.org", 4064, 3, 5, pixelsID,
+			-1, z, 0, 0, 0, 0, 64, 64);
+	}
+
+	/** Backdates the access time of the given tile by the given milliseconds. */
+	private void age(final OMEROTileCache.Key key, final long millis)
+		throws IOException
+	{
+		try (final Stream<Path> files = Files.walk(dir)) {
+			final String name = "_" + key.getZ() + "_0_0_0_0_64_64.tile";
+			for (final Path f : (Iterable<Path>) files::iterator) {
+				if (!f.getFileName().toString().endsWith(name)) continue;
+				Files.setLastModifiedTime(f, FileTime.fromMillis(System
+					.currentTimeMillis() - millis));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,463 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.scif.ByteArrayPlane;
+import io.scif.FormatException;
+import io.scif.services.FormatService;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.thread.ThreadService;
+
+import mockit.Delegate;
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Mocked;
+import mockit.Verifications;
+import omero.ServerError;
+import omero.api.Callback_RawPixelsStore_getTile;
+import omero.api.RawPixelsStorePrx;
+import omero.api.ServiceFactoryPrx;
+
+/**
+ * Tests {@link OMEROFormat.Reader} against a mocked OMERO session.
+ */
+public class OMEROFormatReaderTest {
+
+	private static final long PIXELS_ID = 7;
+
+	private static final int POOL_SIZE = 2;
+
+	private OMEROService service;
+
+	/** Store pool of the mocked session. */
+	private RawPixelsStorePool pool;
+
+	@Mocked
+	private OMEROSession session;
+
+	@Mocked
+	private ServiceFactoryPrx factory;
+
+	@Injectable
+	private RawPixelsStorePrx store;
+
+	@Injectable
+	private RawPixelsStorePrx otherStore;
+
+	@Before
+	public void setup() {
+		service = new Context(OMEROService.class, ThreadService.class).getService(
+			OMEROService.class);
+	}
+
+	@After
+	public void teardown() {
+		service.context().dispose();
+	}
+
+	// -- Tests --
+
+	/**
+	 * Tests that a tile too large for a single request is fetched in pieces,
+	 * by no more workers than the pool has stores.
+	 */
+	@Test
+	public void testTiledFetch() throws FormatException, IOException,
+		ServerError
+	{
+		final Tiles tiles = new Tiles();
+		setUpStores(tiles);
+
+		// an 8 MiB plane, of 4 x 2 server tiles
+		final OMEROFormat.Reader reader = createReader(4096, 2048, 1, 1024);
+		final byte[] tile = reader.openTile(0, new int[3], 0, 0, 4096, 2048);
+		for (int y = 0; y < 2048; y += 512) {
+			for (int x = 0; x < 4096; x += 512) {
+				assertEquals(value(0, x, y), tile[4096 * y + x]);
+			}
+		}
+		assertEquals(8, tiles.fetched.get());
+		assertTrue(tiles.maxActive.get() <= POOL_SIZE);
+		new Verifications() {
+
+			{
+				factory.createRawPixelsStore();
+				maxTimes = POOL_SIZE;
+			}
+		};
+		reader.close();
+	}
+
+	/**
+	 * Tests that threads reading planes concurrently share the pool's stores,
+	 * never using more at once than the pool holds.
+	 */
+	@Test
+	public void testConcurrentReads() throws Exception {
+		final Tiles tiles = new Tiles();
+		setUpStores(tiles);
+
+		final OMEROFormat.Reader reader = createReader(64, 64, 8, 64);
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final List<Future<byte[]>> planes = new ArrayList<>();
+			for (int z = 0; z < 8; z++) {
+				final int planeIndex = z;
+				planes.add(executor.submit(() -> reader.openPlane(0, planeIndex)
+					.getBytes()));
+			}
+			for (int z = 0; z < 8; z++) {
+				final byte[] plane = planes.get(z).get(5, TimeUnit.SECONDS);
+				assertEquals(64 * 64, plane.length);
+				assertEquals(value(z, 0, 0), plane[0]);
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		assertEquals(8, tiles.fetched.get());
+		assertTrue(tiles.maxActive.get() <= POOL_SIZE);
+		new Verifications() {
+
+			{
+				factory.createRawPixelsStore();
+				maxTimes = POOL_SIZE;
+			}
+		};
+		reader.close();
+	}
+
+	/**
+	 * Tests that consecutive Z planes are fetched in one hypercube request,
+	 * whose planes are then served from the tile cache.
+	 */
+	@Test
+	public void testBatchedFetch() throws FormatException, IOException,
+		ServerError
+	{
+		final Tiles tiles = new Tiles();
+		setUpStores(tiles);
+		final byte[] stack = new byte[4 * 16 * 16];
+		for (int z = 0; z < 4; z++) {
+			Arrays.fill(stack, z * 16 * 16, (z + 1) * 16 * 16, value(z, 0, 0));
+		}
+		new Expectations() {
+
+			{
+				store.getHypercube(Arrays.asList(0, 0, 0, 0, 0), //
+					Arrays.asList(16, 16, 4, 1, 1), Arrays.asList(1, 1, 1, 1, 1));
+				result = stack;
+				minTimes = 0;
+				otherStore.getHypercube(Arrays.asList(0, 0, 0, 0, 0), //
+					Arrays.asList(16, 16, 4, 1, 1), Arrays.asList(1, 1, 1, 1, 1));
+				result = stack;
+				minTimes = 0;
+			}
+		};
+
+		final OMEROFormat.Reader reader = createReader(16, 16, 4, 16);
+		reader.getMetadata().setBatchSize(4);
+		for (int z = 0; z < 4; z++) {
+			final byte[] plane = reader.openPlane(0, z).getBytes();
+			assertEquals(16 * 16, plane.length);
+			assertEquals(value(z, 0, 0), plane[255]);
+		}
+		assertEquals(0, tiles.fetched.get());
+		new Verifications() {
+
+			{
+				factory.createRawPixelsStore();
+				times = 1;
+				store.getHypercube((List<Integer>) any, (List<Integer>) any,
+					(List<Integer>) any);
+				times = 1;
+			}
+		};
+		reader.close();
+	}
+
+	/**
+	 * Tests that asynchronous reads serve cached planes at once, request the
+	 * rest over one leased store, and hand the store back once answered.
+	 */
+	@Test
+	public void testOpenPlanesAsync() throws Exception {
+		final Tiles tiles = new Tiles();
+		setUpStores(tiles);
+		final Object responses = new Delegate<Ice.AsyncResult>() {
+
+			@SuppressWarnings("unused")
+			Ice.AsyncResult begin_getTile(final int z, final int c, final int t,
+				final int x, final int y, final int w, final int h,
+				final Callback_RawPixelsStore_getTile callback)
+			{
+				final byte[] tile = new byte[w * h];
+				Arrays.fill(tile, value(z, x, y));
+				callback.response(tile);
+				return null;
+			}
+		};
+		new Expectations() {
+
+			{
+				store.begin_getTile(anyInt, anyInt, anyInt, anyInt, anyInt, anyInt,
+					anyInt, (Callback_RawPixelsStore_getTile) any);
+				result = responses;
+			}
+		};
+
+		final OMEROFormat.Reader reader = createReader(16, 16, 3, 16);
+		reader.openPlane(0, 0);
+		final Interval bounds = new FinalInterval(16, 16);
+		final List<CompletableFuture<ByteArrayPlane>> planes = reader
+			.openPlanesAsync(0, new long[] { 0, 1, 2 }, new Interval[] { bounds,
+				bounds, bounds });
+		for (int z = 0; z < 3; z++) {
+			final byte[] plane = planes.get(z).get(5, TimeUnit.SECONDS).getBytes();
+			assertEquals(value(z, 0, 0), plane[0]);
+		}
+		assertEquals(1, tiles.fetched.get());
+		assertSame(store, pool.tryLease(PIXELS_ID,
+			RawPixelsStorePool.DEFAULT_LEVEL));
+		new Verifications() {
+
+			{
+				store.begin_getTile(anyInt, anyInt, anyInt, anyInt, anyInt, anyInt,
+					anyInt, (Callback_RawPixelsStore_getTile) any);
+				times = 2;
+			}
+		};
+		reader.close();
+	}
+
+	/**
+	 * Tests that a read whose connection was lost logs in again, and retries
+	 * with a new store.
+	 */
+	@Test
+	public void testReconnect() throws FormatException, IOException,
+		ServerError
+	{
+		final Tiles tiles = new Tiles();
+		setUpStores(tiles);
+		tiles.fail(new Ice.ConnectionLostException(), 1);
+
+		final OMEROFormat.Reader reader = createReader(16, 16, 1, 16);
+		final byte[] plane = reader.openPlane(0, 0).getBytes();
+		assertEquals(value(0, 0, 0), plane[0]);
+		assertEquals(1, tiles.fetched.get());
+		new Verifications() {
+
+			{
+				session.reconnect(factory);
+				times = 1;
+				// NB: The broken store is discarded rather than reused.
+				factory.createRawPixelsStore();
+				times = 2;
+			}
+		};
+		reader.close();
+	}
+
+	/** Tests that a read failing for other reasons is not retried. */
+	@Test
+	public void testNoRetry() throws FormatException, IOException,
+		ServerError
+	{
+		final Tiles tiles = new Tiles();
+		setUpStores(tiles);
+		tiles.fail(new ServerError(), 1);
+
+		final OMEROFormat.Reader reader = createReader(16, 16, 1, 16);
+		try {
+			reader.openPlane(0, 0);
+			throw new AssertionError("Failed read was retried");
+		}
+		catch (final FormatException exc) {
+			// NB: Expected; the server refused the read.
+		}
+		assertEquals(0, tiles.fetched.get());
+		new Verifications() {
+
+			{
+				session.reconnect((ServiceFactoryPrx) any);
+				times = 0;
+			}
+		};
+
+		// the store is still usable, so it is reused
+		assertEquals(value(0, 0, 0), reader.openPlane(0, 0).getBytes()[0]);
+		new Verifications() {
+
+			{
+				factory.createRawPixelsStore();
+				times = 1;
+			}
+		};
+		reader.close();
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Hands out the two mocked stores from the session's store pool, serving
+	 * tiles from the given delegate.
+	 */
+	private void setUpStores(final Tiles tiles) throws ServerError {
+		pool = new RawPixelsStorePool(factory, POOL_SIZE);
+		new Expectations() {
+
+			{
+				session.getPixelsPool();
+				result = pool;
+				minTimes = 0;
+				session.getSession();
+				result = factory;
+				minTimes = 0;
+				factory.createRawPixelsStore();
+				result = store;
+				result = otherStore;
+				minTimes = 0;
+
+				store.getTile(anyInt, anyInt, anyInt, anyInt, anyInt, anyInt, anyInt);
+				result = tiles;
+				minTimes = 0;
+				otherStore.getTile(anyInt, anyInt, anyInt, anyInt, anyInt, anyInt,
+					anyInt);
+				result = tiles;
+				minTimes = 0;
+			}
+		};
+	}
+
+	/** Creates a reader of 8-bit pixels, whose metadata holds the session. */
+	private OMEROFormat.Reader createReader(final int sizeX, final int sizeY,
+		final int sizeZ, final int tileSize) throws FormatException, IOException
+	{
+		final OMEROFormat format = service.context().getService(
+			FormatService.class).getFormatFromClass(OMEROFormat.class);
+		final OMEROFormat.Metadata meta = //
+			(OMEROFormat.Metadata) format.createMetadata();
+		meta.setName("pixels");
+		meta.setPixelsID(PIXELS_ID);
+		meta.setSizeX(sizeX);
+		meta.setSizeY(sizeY);
+		meta.setSizeZ(sizeZ);
+		meta.setSizeC(1);
+		meta.setSizeT(1);
+		meta.setPixelType("uint8");
+		meta.setTileSizeX(tileSize);
+		meta.setTileSizeY(tileSize);
+		meta.setPoolSize(POOL_SIZE);
+		meta.setPrefetch(0);
+		try {
+			meta.setCredentials(new OMEROLocation("localhost", 4064, "abc"));
+		}
+		catch (final URISyntaxException exc) {
+			throw new IllegalStateException(exc);
+		}
+		meta.setSession(session);
+		meta.checkSubset();
+		meta.populateImageMetadata();
+
+		final OMEROFormat.Reader reader = //
+			(OMEROFormat.Reader) format.createReader();
+		reader.setMetadata(meta);
+		return reader;
+	}
+
+	/**
+	 * Gets the value of the pixels in the given plane and server tile of 1024
+	 * x 1024 pixels.
+	 */
+	private static byte value(final int z, final int x, final int y) {
+		return (byte) (1 + 16 * z + x / 1024 + 4 * (y / 1024));
+	}
+
+	// -- Helper classes --
+
+	/**
+	 * Serves tiles filled with their {@link #value}, counting the requests and
+	 * the most served at once, after failing any requests set to fail.
+	 */
+	private static class Tiles implements Delegate<byte[]> {
+
+		private final AtomicInteger fetched = new AtomicInteger();
+		private final AtomicInteger active = new AtomicInteger();
+		private final AtomicInteger maxActive = new AtomicInteger();
+
+		/** Number of requests still to fail, and how. */
+		private final AtomicInteger failures = new AtomicInteger();
+		private volatile Exception failure;
+
+		/** Fails the given number of upcoming requests with the given error. */
+		private void fail(final Exception exc, final int count) {
+			failure = exc;
+			failures.set(count);
+		}
+
+		@SuppressWarnings("unused")
+		byte[] getTile(final int z, final int c, final int t, final int x,
+			final int y, final int w, final int h) throws InterruptedException,
+			ServerError
+		{
+			if (failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+				if (failure instanceof ServerError) throw (ServerError) failure;
+				throw (RuntimeException) failure;
+			}
+			fetched.incrementAndGet();
+			maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+			Thread.sleep(10);
+			active.decrementAndGet();
+			final byte[] tile = new byte[w * h];
+			Arrays.fill(tile, value(z, x, y));
+			return tile;
+		}
+	}
+}
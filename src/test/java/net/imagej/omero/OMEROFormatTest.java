@@ -25,6 +25,7 @@
 
 package net.imagej.omero;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -34,6 +35,8 @@ import io.scif.FormatException;
 import io.scif.MetadataService;
 import io.scif.SCIFIO;
 
+import java.util.List;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -115,6 +118,92 @@ public class OMEROFormatTest {
 		assertEquals(pixelsID, meta.getPixelsID());
 	}
 
+	/** Tests upload options via {@link OMEROFormat#parseArguments}. */
+	@Test
+	public void testUploadArguments() throws FormatException {
+		final OMEROFormat omeroFormat = getFormat();
+		final MetadataService metadataService =
+			omeroFormat.context().service(MetadataService.class);
+
+		final OMEROFormat.Metadata meta =
+			(OMEROFormat.Metadata) omeroFormat.createMetadata();
+		assertEquals(1, meta.getUploadStreams());
+		OMEROFormat.parseArguments(metadataService, "name=data" + //
+			"&uploadQueueSize=8&uploadThreads=2&uploadStreams=4", meta);
+
+		assertEquals(8, meta.getUploadQueueSize());
+		assertEquals(2, meta.getUploadThreads());
+		assertEquals(4, meta.getUploadStreams());
+	}
+
+	/** Tests subsetting via {@link OMEROFormat#parseArguments}. */
+	@Test
+	public void testSubset() throws FormatException {
+		final OMEROFormat omeroFormat = getFormat();
+		final MetadataService metadataService =
+			omeroFormat.context().service(MetadataService.class);
+
+		final String omeroString = "server=my.host.name&imageID=12" + //
+			"&cropX=100&cropY=50&cropWidth=200" + //
+			"&zStart=2&zEnd=4&tStart=1&channels=3,1";
+		final OMEROFormat.Metadata meta =
+			(OMEROFormat.Metadata) omeroFormat.createMetadata();
+		OMEROFormat.parseArguments(metadataService, omeroString, meta);
+		meta.setSizeX(512);
+		meta.setSizeY(256);
+		meta.setSizeZ(10);
+		meta.setSizeC(4);
+		meta.setSizeT(3);
+		meta.checkSubset();
+
+		assertEquals(3, meta.getSubsetSizeZ());
+		assertEquals(2, meta.getSubsetSizeC());
+		assertEquals(2, meta.getSubsetSizeT());
+		assertArrayEquals(new int[] { 100, 50, 200, 206 }, meta.getCrop(0));
+		assertArrayEquals(new int[] { 2, 3, 1 }, meta.toServerZCT(new int[] { 0,
+			0, 0 }));
+		assertArrayEquals(new int[] { 4, 1, 2 }, meta.toServerZCT(new int[] { 2,
+			1, 1 }));
+	}
+
+	/** Tests that out-of-bounds subsets are rejected. */
+	@Test(expected = FormatException.class)
+	public void testInvalidSubset() throws FormatException {
+		final OMEROFormat.Metadata meta =
+			(OMEROFormat.Metadata) getFormat().createMetadata();
+		meta.setSizeX(512);
+		meta.setSizeY(256);
+		meta.setSizeZ(10);
+		meta.setSizeC(4);
+		meta.setSizeT(3);
+		meta.setChannels("0,4");
+		meta.checkSubset();
+	}
+
+	/** Tests {@link OMEROFormat#tiles}. */
+	@Test
+	public void testTiles() {
+		// aligned rectangle
+		final List<int[]> aligned = OMEROFormat.tiles(0, 0, 512, 256, 256, 256);
+		assertEquals(2, aligned.size());
+		assertArrayEquals(new int[] { 0, 0, 256, 256 }, aligned.get(0));
+		assertArrayEquals(new int[] { 256, 0, 256, 256 }, aligned.get(1));
+
+		// unaligned rectangle: edge pieces are clipped to the grid
+		final List<int[]> unaligned = OMEROFormat.tiles(100, 50, 300, 100, //
+			256, 128);
+		assertEquals(4, unaligned.size());
+		assertArrayEquals(new int[] { 100, 50, 156, 78 }, unaligned.get(0));
+		assertArrayEquals(new int[] { 256, 50, 144, 78 }, unaligned.get(1));
+		assertArrayEquals(new int[] { 100, 128, 156, 22 }, unaligned.get(2));
+		assertArrayEquals(new int[] { 256, 128, 144, 22 }, unaligned.get(3));
+
+		// rectangle within a single tile
+		final List<int[]> single = OMEROFormat.tiles(10, 10, 20, 20, 256, 256);
+		assertEquals(1, single.size());
+		assertArrayEquals(new int[] { 10, 10, 20, 20 }, single.get(0));
+	}
+
 	// -- Helper methods --
 
 	private OMEROFormat getFormat() {
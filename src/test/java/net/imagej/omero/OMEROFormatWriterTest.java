@@ -0,0 +1,446 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.scif.ByteArrayPlane;
+import io.scif.FormatException;
+import io.scif.services.FormatService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.thread.ThreadService;
+
+import mockit.Delegate;
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Mocked;
+import mockit.Verifications;
+import mockit.VerificationsInOrder;
+import omero.ServerError;
+import omero.api.RawPixelsStorePrx;
+import omero.api.ServiceFactoryPrx;
+import omero.model.ImageI;
+import omero.model.Pixels;
+import omero.model.PixelsI;
+import omero.sys.Parameters;
+
+/**
+ * Tests {@link OMEROFormat.Writer} against a mocked OMERO session.
+ */
+public class OMEROFormatWriterTest {
+
+	private static final String CREDENTIALS =
+		"server=localhost&port=4064&sessionID=abc";
+
+	private OMEROService service;
+
+	@Mocked
+	private DefaultOMEROSession session;
+
+	@Mocked
+	private ServiceFactoryPrx factory;
+
+	@Injectable
+	private RawPixelsStorePrx store;
+
+	@Injectable
+	private RawPixelsStorePrx streamStore;
+
+	@Injectable
+	private RawPixelsStorePrx otherStreamStore;
+
+	@Before
+	public void setup() {
+		service = new Context(OMEROService.class, ThreadService.class).getService(
+			OMEROService.class);
+	}
+
+	@After
+	public void teardown() {
+		service.context().dispose();
+	}
+
+	// -- Tests --
+
+	/**
+	 * Tests that queued planes are uploaded in the background, all before the
+	 * pixels are saved.
+	 */
+	@Test
+	public void testUploadQueue() throws FormatException, IOException,
+		ServerError
+	{
+		final Planes planes = new Planes();
+		setUpStores(planes);
+
+		final OMEROFormat.Writer writer = createWriter("uploadQueueSize=2", 16,
+			16, 6);
+		for (int z = 0; z < 6; z++) {
+			writer.savePlane(0, z, plane(writer, 16, 16, z));
+		}
+		writer.close();
+
+		assertEquals(6, planes.written.size());
+		assertEquals(6, planes.writtenBeforeSave);
+		for (int z = 0; z < 6; z++) {
+			assertEquals(Integer.valueOf(z), planes.written.get(z));
+		}
+		assertFalse(planes.threads.contains(Thread.currentThread()));
+		assertEquals(2, writer.getMetadata().getImageID());
+		new Verifications() {
+
+			{
+				store.save();
+				times = 1;
+				store.close();
+				times = 1;
+			}
+		};
+	}
+
+	/**
+	 * Tests that a plane too large for a single message is sent as bands of
+	 * whole rows.
+	 */
+	@Test
+	public void testTiledWrite() throws FormatException, IOException,
+		ServerError
+	{
+		final Planes planes = new Planes();
+		setUpStores(planes);
+
+		// just over 16 MiB, i.e. one band of 4096 rows plus a single row
+		final OMEROFormat.Writer writer = createWriter("", 4096, 4097, 1);
+		writer.savePlane(0, 0, plane(writer, 4096, 4097, 0));
+		writer.close();
+
+		assertEquals(0, planes.written.size());
+		new Verifications() {
+
+			{
+				store.setTile((byte[]) any, 0, 0, 0, 0, 0, 4096, 4096);
+				times = 1;
+				store.setTile((byte[]) any, 0, 0, 0, 0, 4096, 4096, 1);
+				times = 1;
+				store.save();
+				times = 1;
+			}
+		};
+	}
+
+	/** Tests that a partial plane is sent as a tile of its region. */
+	@Test
+	public void testPartialPlane() throws FormatException, IOException,
+		ServerError
+	{
+		final Planes planes = new Planes();
+		setUpStores(planes);
+
+		final OMEROFormat.Writer writer = createWriter("", 16, 16, 1);
+		final Interval bounds = new FinalInterval(new long[] { 4, 4 },
+			new long[] { 11, 11 });
+		final ByteArrayPlane plane = new ByteArrayPlane(writer.getContext(),
+			writer.getMetadata().get(0), bounds);
+		plane.setData(new byte[8 * 8]);
+		writer.savePlane(0, 0, plane, bounds);
+		writer.close();
+
+		assertEquals(0, planes.written.size());
+		new Verifications() {
+
+			{
+				byte[] data;
+				store.setTile(data = withCapture(), 0, 0, 0, 4, 4, 8, 8);
+				times = 1;
+				assertEquals(8 * 8, data.length);
+			}
+		};
+	}
+
+	/**
+	 * Tests that extra upload streams open their own stores on the pixels,
+	 * which are flushed before the writer's own store saves them.
+	 */
+	@Test
+	public void testUploadStreams() throws FormatException, IOException,
+		ServerError
+	{
+		final Planes planes = new Planes();
+		setUpStores(planes, streamStore, otherStreamStore);
+
+		final OMEROFormat.Writer writer = createWriter("uploadStreams=3", 16, 16,
+			6);
+		for (int z = 0; z < 6; z++) {
+			writer.savePlane(0, z, plane(writer, 16, 16, z));
+		}
+		writer.close();
+
+		// NB: The streams upload concurrently, so in no particular order.
+		final List<Integer> written = new ArrayList<>(planes.written);
+		Collections.sort(written);
+		assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), written);
+		assertEquals(6, planes.writtenBeforeSave);
+		new VerificationsInOrder() {
+
+			{
+				streamStore.close();
+				otherStreamStore.close();
+				store.save();
+				store.close();
+			}
+		};
+		new Verifications() {
+
+			{
+				session.openPixels((OMEROFormat.Metadata) any);
+				times = 2;
+			}
+		};
+	}
+
+	/**
+	 * Tests that a failed upload is resumed on the same pixels, skipping the
+	 * planes already written.
+	 */
+	@Test
+	public void testResume() throws FormatException, IOException,
+		ServerError
+	{
+		final Planes planes = new Planes();
+		setUpStores(planes, streamStore);
+		final PixelsI saved = new PixelsI(1, true);
+		saved.setImage(new ImageI(2, false));
+		new Expectations() {
+
+			{
+				streamStore.save();
+				result = saved;
+			}
+		};
+		final Path journal = Files.createTempFile("omero-upload", ".journal");
+		Files.delete(journal);
+		final String options = "uploadQueueSize=1&journal=" + journal;
+
+		try {
+			// the third plane fails, so the image is not saved
+			planes.failAt = 2;
+			final OMEROFormat.Writer writer = createWriter(options, 16, 16, 6);
+			try {
+				for (int z = 0; z < 3; z++) {
+					writer.savePlane(0, z, plane(writer, 16, 16, z));
+				}
+			}
+			catch (final FormatException exc) {
+				// NB: The failure may surface on a later plane, or only on close.
+			}
+			try {
+				writer.close();
+				throw new AssertionError("Failed upload was saved");
+			}
+			catch (final IOException exc) {
+				// NB: Expected; the upload failed.
+			}
+			assertEquals(Arrays.asList(0, 1), planes.written);
+			assertTrue(Files.exists(journal));
+
+			// the resumed upload reopens the pixels, and writes the rest
+			planes.failAt = -1;
+			final OMEROFormat.Writer resumed = createWriter(options, 16, 16, 6);
+			for (int z = 0; z < 6; z++) {
+				resumed.savePlane(0, z, plane(resumed, 16, 16, z));
+			}
+			resumed.close();
+			assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), planes.written);
+			assertFalse(Files.exists(journal));
+		}
+		finally {
+			Files.deleteIfExists(journal);
+		}
+		new Verifications() {
+
+			{
+				session.createPixels((OMEROFormat.Metadata) any);
+				times = 1;
+				session.openPixels((OMEROFormat.Metadata) any);
+				times = 1;
+				store.save();
+				times = 0;
+				streamStore.save();
+				times = 1;
+			}
+		};
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Opens the writer's store, and the given extra stores in order, on the
+	 * mocked session, recording the planes sent to any of them.
+	 */
+	private void setUpStores(final Planes planes,
+		final RawPixelsStorePrx... extraStores) throws ServerError,
+		FormatException
+	{
+		final PixelsI saved = new PixelsI(1, true);
+		saved.setImage(new ImageI(2, false));
+		new Expectations() {
+
+			{
+				session.getSession();
+				result = factory;
+				minTimes = 0;
+				session.createPixels((OMEROFormat.Metadata) any);
+				result = new Delegate<RawPixelsStorePrx>() {
+
+					@SuppressWarnings("unused")
+					RawPixelsStorePrx createPixels(final OMEROFormat.Metadata meta) {
+						meta.setImageID(saved.getImage().getId().getValue());
+						meta.setPixelsID(saved.getId().getValue());
+						return store;
+					}
+				};
+				if (extraStores.length > 0) {
+					session.openPixels((OMEROFormat.Metadata) any);
+					result = Arrays.asList(extraStores);
+				}
+
+				store.setPlane((byte[]) any, anyInt, anyInt, anyInt);
+				result = planes;
+				minTimes = 0;
+				store.save();
+				result = new Delegate<Pixels>() {
+
+					@SuppressWarnings("unused")
+					Pixels save() {
+						planes.writtenBeforeSave = planes.written.size();
+						return saved;
+					}
+				};
+				factory.getQueryService().findByQuery(anyString,
+					(Parameters) any);
+				result = saved;
+				minTimes = 0;
+			}
+		};
+		for (final RawPixelsStorePrx extraStore : extraStores) {
+			new Expectations() {
+
+				{
+					extraStore.setPlane((byte[]) any, anyInt, anyInt, anyInt);
+					result = planes;
+					minTimes = 0;
+				}
+			};
+		}
+	}
+
+	/**
+	 * Creates a writer of an image with the given size, whose destination has
+	 * the given upload options.
+	 */
+	private OMEROFormat.Writer createWriter(final String options,
+		final int sizeX, final int sizeY, final int sizeZ)
+		throws FormatException, IOException
+	{
+		final OMEROFormat format = service.context().getService(
+			FormatService.class).getFormatFromClass(OMEROFormat.class);
+		final OMEROFormat.Metadata meta = //
+			(OMEROFormat.Metadata) format.createMetadata();
+		meta.setName("pixels");
+		meta.setSizeX(sizeX);
+		meta.setSizeY(sizeY);
+		meta.setSizeZ(sizeZ);
+		meta.setSizeC(1);
+		meta.setSizeT(1);
+		meta.setPixelType("uint8");
+		meta.checkSubset();
+		meta.populateImageMetadata();
+
+		final OMEROFormat.Writer writer = //
+			(OMEROFormat.Writer) format.createWriter();
+		writer.setMetadata(meta);
+		writer.setDest("name=pixels&" + options + "&" + CREDENTIALS);
+		return writer;
+	}
+
+	/** Creates a whole plane of 8-bit pixels, all of the given Z index. */
+	private static ByteArrayPlane plane(final OMEROFormat.Writer writer,
+		final int sizeX, final int sizeY, final int z)
+	{
+		final ByteArrayPlane plane = new ByteArrayPlane(writer.getContext(),
+			writer.getMetadata().get(0), new FinalInterval(sizeX, sizeY));
+		final byte[] data = new byte[sizeX * sizeY];
+		Arrays.fill(data, (byte) z);
+		plane.setData(data);
+		return plane;
+	}
+
+	// -- Helper classes --
+
+	/**
+	 * Records the Z index of each plane sent, in order, and the threads which
+	 * sent them, failing to send the plane of a given Z index.
+	 */
+	private static class Planes implements Delegate<Void> {
+
+		private final List<Integer> written = new CopyOnWriteArrayList<>();
+		private final List<Thread> threads = new CopyOnWriteArrayList<>();
+		private volatile int writtenBeforeSave = -1;
+
+		/** Z index of the plane to fail, or -1 for none. */
+		private volatile int failAt = -1;
+
+		@SuppressWarnings("unused")
+		void setPlane(final byte[] data, final int z, final int c, final int t)
+			throws InterruptedException, ServerError
+		{
+			if (z == failAt) throw new ServerError();
+			// NB: The data is all of the plane's Z index.
+			assertEquals(z, data[0]);
+			Thread.sleep(5);
+			threads.add(Thread.currentThread());
+			written.add(z);
+		}
+	}
+}
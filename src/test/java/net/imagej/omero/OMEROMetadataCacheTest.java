@@ -0,0 +1,265 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.net.URISyntaxException;
+
+import omero.model.Channel;
+import omero.model.ChannelI;
+import omero.model.EventI;
+import omero.model.Image;
+import omero.model.ImageI;
+import omero.model.LogicalChannelI;
+import omero.model.Pixels;
+import omero.model.PixelsI;
+import omero.model.PixelsType;
+import omero.model.PixelsTypeI;
+import omero.model.StatsInfoI;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link OMEROMetadataCache}.
+ */
+public class OMEROMetadataCacheTest {
+
+	/** Tests caching pixels under both their own and their image's ID. */
+	@Test
+	public void testPixels() throws URISyntaxException {
+		final OMEROMetadataCache cache = new OMEROMetadataCache();
+		final OMEROLocation location = location("example.org");
+		assertNull(cache.getPixels(location, 34));
+
+		final Pixels pixels = pixels(12, 34);
+		cache.putPixels(location, pixels);
+		assertEquals(34, cache.getPixels(location, 34).getId().getValue());
+		assertEquals(34, cache.getImagePixels(location, 12).getId().getValue());
+		assertNull(cache.getImagePixels(location, 34));
+		assertNull(cache.getPixels(location("example.com"), 34));
+
+		assertEquals(2, cache.getHits());
+		assertEquals(3, cache.getMisses());
+	}
+
+	/** Tests caching pixel types by their value. */
+	@Test
+	public void testPixelsType() throws URISyntaxException {
+		final OMEROMetadataCache cache = new OMEROMetadataCache();
+		final OMEROLocation location = location("example.org");
+		final PixelsType type = new PixelsTypeI();
+		type.setValue(omero.rtypes.rstring("uint16"));
+		cache.putPixelsType(location, type);
+		assertEquals("uint16", cache.getPixelsType(location, "uint16").getValue()
+			.getValue());
+		assertNull(cache.getPixelsType(location, "uint8"));
+	}
+
+	/** Tests that descriptors expire after the time to live. */
+	@Test
+	public void testExpiry() throws URISyntaxException, InterruptedException {
+		final OMEROMetadataCache cache = new OMEROMetadataCache(16, 0);
+		final OMEROLocation location = location("example.org");
+		final Image image = new ImageI(12, true);
+		cache.putImage(location, image);
+		Thread.sleep(5);
+		assertNull(cache.getImage(location, 12));
+		assertEquals(0, cache.size());
+
+		cache.setTTL(60 * 1000);
+		cache.putImage(location, image);
+		assertEquals(12, cache.getImage(location, 12).getId().getValue());
+	}
+
+	/** Tests least-recently-used eviction within the size bound. */
+	@Test
+	public void testEviction() throws URISyntaxException {
+		final OMEROMetadataCache cache = new OMEROMetadataCache(2,
+			OMEROMetadataCache.DEFAULT_TTL);
+		final OMEROLocation location = location("example.org");
+		cache.putImage(location, new ImageI(1, true));
+		cache.putImage(location, new ImageI(2, true));
+
+		// touch the eldest image, so that the second image is evicted next
+		cache.getImage(location, 1);
+		cache.putImage(location, new ImageI(3, true));
+		assertEquals(2, cache.size());
+		assertNull(cache.getImage(location, 2));
+
+		// shrinking the bound evicts immediately
+		cache.setMaxSize(1);
+		assertEquals(1, cache.size());
+		assertNull(cache.getImage(location, 1));
+	}
+
+	/** Tests invalidating the descriptors of a written image. */
+	@Test
+	public void testInvalidate() throws URISyntaxException {
+		final OMEROMetadataCache cache = new OMEROMetadataCache();
+		final OMEROLocation location = location("example.org");
+		cache.putPixels(location, pixels(12, 34));
+		cache.putImage(location, new ImageI(12, true));
+		cache.putPixels(location, pixels(56, 78));
+
+		cache.invalidatePixels(location, 34);
+		assertNull(cache.getPixels(location, 34));
+		assertNull(cache.getImagePixels(location, 12));
+		assertNull(cache.getImage(location, 12));
+
+		cache.invalidateImage(location, 56);
+		assertNull(cache.getPixels(location, 78));
+		assertEquals(0, cache.size());
+	}
+
+	/** Tests that each user sees only the descriptors cached for them. */
+	@Test
+	public void testUsers() throws URISyntaxException {
+		final OMEROMetadataCache cache = new OMEROMetadataCache();
+		final OMEROLocation location = location("example.org");
+		final OMEROLocation other = new OMEROLocation("example.org", 4064,
+			"other", "password");
+		cache.putPixels(location, pixels(12, 34));
+		assertNull(cache.getPixels(other, 34));
+
+		// invalidation applies to every user of the server
+		cache.putPixels(other, pixels(12, 34));
+		cache.invalidatePixels(location, 34);
+		assertNull(cache.getPixels(other, 34));
+		assertEquals(0, cache.size());
+	}
+
+	/** Tests that cached descriptors are not shared with callers. */
+	@Test
+	public void testCopies() throws URISyntaxException {
+		final OMEROMetadataCache cache = new OMEROMetadataCache();
+		final OMEROLocation location = location("example.org");
+		final Pixels pixels = pixels(12, 34);
+		cache.putPixels(location, pixels);
+		pixels.setImage(new ImageI(56, true));
+
+		final Pixels cached = cache.getPixels(location, 34);
+		assertNotSame(pixels, cached);
+		assertEquals(12, cached.getImage().getId().getValue());
+		cached.setImage(null);
+		assertNotNull(cache.getPixels(location, 34).getImage());
+	}
+
+	/**
+	 * Tests caching a pixels graph as loaded by
+	 * {@link DefaultOMEROSession#loadPixels}: with its image, pixel type,
+	 * channels and their statistics, an unloaded update event, and unloaded
+	 * links.
+	 */
+	@Test
+	public void testPixelsGraph() throws URISyntaxException {
+		final OMEROMetadataCache cache = new OMEROMetadataCache();
+		final OMEROLocation location = location("example.org");
+
+		final ImageI image = new ImageI(12, true);
+		image.setName(omero.rtypes.rstring("cells.tif"));
+		image.unloadAnnotationLinks();
+		final PixelsI pixels = new PixelsI(34, true);
+		pixels.setImage(image);
+		image.addPixels(pixels);
+		pixels.setSizeX(omero.rtypes.rint(512));
+		pixels.setSha1(omero.rtypes.rstring("0123456789abcdef"));
+		final PixelsTypeI type = new PixelsTypeI(2, true);
+		type.setValue(omero.rtypes.rstring("uint16"));
+		pixels.setPixelsType(type);
+		final LogicalChannelI logicalChannel = new LogicalChannelI(56, true);
+		logicalChannel.setName(omero.rtypes.rstring("DAPI"));
+		final StatsInfoI stats = new StatsInfoI(78, true);
+		stats.setGlobalMax(omero.rtypes.rdouble(4095));
+		final ChannelI channel = new ChannelI(90, true);
+		channel.setLogicalChannel(logicalChannel);
+		channel.setStatsInfo(stats);
+		pixels.addChannel(channel);
+		pixels.getDetails().setUpdateEvent(new EventI(99, false));
+		cache.putPixels(location, pixels);
+
+		final Pixels cached = cache.getImagePixels(location, 12);
+		assertNotNull(cached);
+		assertNotSame(pixels, cached);
+		assertEquals(34, cached.getId().getValue());
+		assertEquals(512, cached.getSizeX().getValue());
+		assertEquals("0123456789abcdef", cached.getSha1().getValue());
+		assertEquals("uint16", cached.getPixelsType().getValue().getValue());
+		assertEquals("cells.tif", cached.getImage().getName().getValue());
+		assertFalse(cached.getImage().isAnnotationLinksLoaded());
+		assertEquals(1, cached.sizeOfChannels());
+		final Channel c = cached.getChannel(0);
+		assertEquals("DAPI", c.getLogicalChannel().getName().getValue());
+		assertEquals(4095, c.getStatsInfo().getGlobalMax().getValue(), 0);
+		assertEquals(99, cached.getDetails().getUpdateEvent().getId().getValue());
+		assertFalse(cached.getDetails().getUpdateEvent().isLoaded());
+		assertEquals(1, cache.getHits());
+	}
+
+	/** Tests that descriptors which cannot be serialized are not cached. */
+	@Test
+	public void testUnserializable() throws URISyntaxException {
+		final OMEROMetadataCache cache = new OMEROMetadataCache();
+		final OMEROLocation location = location("example.org");
+		final Pixels pixels = new UnserializablePixels(34);
+		pixels.setImage(new ImageI(12, true));
+		cache.putPixels(location, pixels);
+		assertEquals(0, cache.size());
+		assertNull(cache.getPixels(location, 34));
+	}
+
+	// -- Helper methods --
+
+	private OMEROLocation location(final String server)
+		throws URISyntaxException
+	{
+		return new OMEROLocation(server, 4064, "user", "password");
+	}
+
+	private Pixels pixels(final long imageID, final long pixelsID) {
+		final Pixels pixels = new PixelsI(pixelsID, true);
+		pixels.setImage(new ImageI(imageID, true));
+		return pixels;
+	}
+
+	// -- Helper classes --
+
+	/** Pixels holding a field which cannot be serialized. */
+	private static class UnserializablePixels extends PixelsI {
+
+		@SuppressWarnings("unused")
+		private final Object lock = new Object();
+
+		private UnserializablePixels(final long id) {
+			super(id, true);
+		}
+	}
+
+}
@@ -0,0 +1,172 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+
+import omero.ServerError;
+import omero.api.ServiceFactoryPrx;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link OMEROSessionPool}.
+ */
+public class OMEROSessionPoolTest {
+
+	private final List<OMEROSession> opened = new ArrayList<>();
+	private final List<OMEROSession> closed = new ArrayList<>();
+	private final List<OMEROSession> reconnected = new ArrayList<>();
+
+	/** Whether the sessions' connections are lost. */
+	private boolean lost;
+
+	/** Whether lost sessions fail to log in again. */
+	private boolean unreachable;
+
+	private OMEROSessionPool pool;
+	private OMEROLocation location;
+
+	@Before
+	public void setUp() throws URISyntaxException {
+		pool = new OMEROSessionPool(l -> session());
+		location = new OMEROLocation("example.org", 4064, "user", "password");
+	}
+
+	/** Tests that a released session is shared, then evicted once idle. */
+	@Test
+	public void testReleaseSharesAndEvicts() throws InterruptedException {
+		pool.setSize(0, 2);
+		final OMEROSessionPool.Lease first = pool.lease(location);
+		first.close();
+		first.close(); // releasing twice does nothing
+
+		// the released session is shared rather than opening another
+		final OMEROSessionPool.Lease second = pool.lease(location);
+		assertSame(first.getSession(), second.getSession());
+		assertEquals(1, opened.size());
+
+		// a session still leased is never evicted
+		pool.setIdleTimeout(0);
+		Thread.sleep(5);
+		final OMEROSessionPool.Lease third = pool.lease(location);
+		assertNotSame(second.getSession(), third.getSession());
+		third.close();
+		assertEquals(1, pool.size(location));
+		assertEquals(1, closed.size());
+		assertSame(third.getSession(), closed.get(0));
+
+		// once released and idle, the session is closed
+		second.close();
+		assertEquals(0, pool.size(location));
+		assertEquals(2, closed.size());
+		assertTrue(closed.contains(second.getSession()));
+	}
+
+	/**
+	 * Tests that a session which lost its connection logs in again, and is
+	 * closed only once unleased if it cannot.
+	 */
+	@Test
+	public void testLostSession() {
+		pool.setSize(1, 1);
+		pool.setHealthCheckInterval(0);
+		final OMEROSessionPool.Lease first = pool.lease(location);
+		final OMEROSession session = first.getSession();
+
+		// a lost connection is restored, without closing the shared session
+		lost = true;
+		final OMEROSessionPool.Lease second = pool.lease(location);
+		assertSame(session, second.getSession());
+		assertEquals(1, reconnected.size());
+		assertTrue(closed.isEmpty());
+
+		// a session which cannot log in again is replaced, but stays open for
+		// its other holders
+		lost = true;
+		unreachable = true;
+		final OMEROSessionPool.Lease third = pool.lease(location);
+		assertNotSame(session, third.getSession());
+		assertFalse(pool.contains(location, session));
+		first.close();
+		assertTrue(closed.isEmpty());
+		second.close();
+		assertEquals(1, closed.size());
+		assertSame(session, closed.get(0));
+		third.close();
+		assertEquals(1, pool.size(location));
+	}
+
+	// -- Helper methods --
+
+	/** Creates a session which records when it is closed or reconnected. */
+	private OMEROSession session() {
+		final ServiceFactoryPrx sf = (ServiceFactoryPrx) Proxy.newProxyInstance(
+			getClass().getClassLoader(), new Class<?>[] { ServiceFactoryPrx.class },
+			(proxy, method, args) -> {
+				if (method.getName().equals("ice_ping") && lost) {
+					throw new Ice.ConnectionLostException();
+				}
+				return null;
+			});
+		final OMEROSession[] session = new OMEROSession[1];
+		session[0] = (OMEROSession) Proxy.newProxyInstance(getClass()
+			.getClassLoader(), new Class<?>[] { OMEROSession.class }, (proxy,
+				method, args) -> {
+				switch (method.getName()) {
+					case "getSession":
+						return sf;
+					case "reconnect":
+						if (unreachable) throw new ServerError();
+						reconnected.add(session[0]);
+						lost = false;
+						return null;
+					case "close":
+						closed.add(session[0]);
+						return null;
+					case "equals":
+						return proxy == args[0];
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					default:
+						return null;
+				}
+			});
+		opened.add(session[0]);
+		return session[0];
+	}
+
+}
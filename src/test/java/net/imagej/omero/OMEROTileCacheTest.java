@@ -0,0 +1,159 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link OMEROTileCache}.
+ */
+public class OMEROTileCacheTest {
+
+	private static final String HOST = "omero.example.org";
+	private static final int PORT = 4064;
+	private static final long GROUP = 3;
+	private static final long USER = 5;
+
+	/** Tests {@link OMEROTileCache#get} and {@link OMEROTileCache#put}. */
+	@Test
+	public void testGetPut() {
+		final OMEROTileCache cache = new OMEROTileCache(1024);
+		final OMEROTileCache.Key key = key(1, 0);
+		assertNull(cache.get(key));
+
+		final byte[] data = { 1, 2, 3, 4 };
+		cache.put(key, data);
+		assertTrue(cache.contains(key));
+		assertArrayEquals(data, cache.get(key));
+		assertArrayEquals(data, cache.get(key(1, 0)));
+		assertNull(cache.get(key(2, 0)));
+
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(4, cache.getBytes());
+	}
+
+	/** Tests that cached data is not shared with callers. */
+	@Test
+	public void testDefensiveCopies() {
+		final OMEROTileCache cache = new OMEROTileCache(1024);
+		final byte[] data = { 1, 2, 3, 4 };
+		cache.put(key(1, 0), data);
+		data[0] = 9;
+		final byte[] cached = cache.get(key(1, 0));
+		assertEquals(1, cached[0]);
+		cached[1] = 9;
+		assertEquals(2, cache.get(key(1, 0))[1]);
+	}
+
+	/** Tests reading into a reused buffer with a reused lookup key. */
+	@Test
+	public void testReuse() {
+		final OMEROTileCache cache = new OMEROTileCache(1024);
+		final OMEROTileCache.Key key = key(1, 0);
+		cache.put(key, new byte[] { 1, 2 });
+
+		// the cache keeps its own copy of the key
+		key.set(HOST, PORT, GROUP, USER, 1, -1, 1, 0, 0, 0, 0, 64, 64);
+		assertNull(cache.get(key, null));
+		assertTrue(cache.contains(key(1, 0)));
+
+		final byte[] buffer = new byte[2];
+		assertSame(buffer, cache.get(key(1, 0), buffer));
+		assertArrayEquals(new byte[] { 1, 2 }, buffer);
+		assertArrayEquals(new byte[] { 1, 2 }, cache.get(key(1, 0),
+			new byte[3]));
+	}
+
+	/** Tests least-recently-used eviction within the byte budget. */
+	@Test
+	public void testEviction() {
+		final OMEROTileCache cache = new OMEROTileCache(30);
+		cache.put(key(1, 0), new byte[10]);
+		cache.put(key(1, 1), new byte[10]);
+		cache.put(key(1, 2), new byte[10]);
+		assertEquals(3, cache.size());
+
+		// touch the eldest tile, so that the second tile is evicted next
+		cache.get(key(1, 0));
+		cache.put(key(1, 3), new byte[10]);
+		assertEquals(3, cache.size());
+		assertEquals(30, cache.getBytes());
+		assertTrue(cache.contains(key(1, 0)));
+		assertFalse(cache.contains(key(1, 1)));
+
+		// tiles larger than the budget are not cached
+		cache.put(key(1, 4), new byte[31]);
+		assertFalse(cache.contains(key(1, 4)));
+
+		// shrinking the budget evicts immediately
+		cache.setMaxBytes(10);
+		assertEquals(1, cache.size());
+		assertTrue(cache.contains(key(1, 3)));
+	}
+
+	/** Tests {@link OMEROTileCache#invalidate}. */
+	@Test
+	public void testInvalidate() {
+		final OMEROTileCache cache = new OMEROTileCache(1024);
+		cache.put(key(1, 0), new byte[10]);
+		cache.put(key(2, 0), new byte[10]);
+		cache.invalidate(HOST, PORT, 1);
+		assertFalse(cache.contains(key(1, 0)));
+		assertTrue(cache.contains(key(2, 0)));
+		assertEquals(10, cache.getBytes());
+	}
+
+	/** Tests that tiles are not shared between servers, groups or users. */
+	@Test
+	public void testScope() {
+		final OMEROTileCache cache = new OMEROTileCache(1024);
+		cache.put(key(1, 0), new byte[] { 1 });
+		assertNull(cache.get(new OMEROTileCache.Key("other.host", PORT, GROUP,
+			USER, 1, -1, 0, 0, 0, 0, 0, 64, 64)));
+		assertNull(cache.get(new OMEROTileCache.Key(HOST, PORT, GROUP + 1, USER,
+			1, -1, 0, 0, 0, 0, 0, 64, 64)));
+		assertNull(cache.get(new OMEROTileCache.Key(HOST, PORT, GROUP, USER + 1,
+			1, -1, 0, 0, 0, 0, 0, 64, 64)));
+		assertNotNull(cache.get(key(1, 0)));
+	}
+
+	// -- Helper methods --
+
+	private OMEROTileCache.Key key(final long pixelsID, final int z) {
+		return new OMEROTileCache.Key(HOST, PORT, GROUP, USER, pixelsID, -1, z, 0,
+			0, 0, 0, 64, 64);
+	}
+
+}
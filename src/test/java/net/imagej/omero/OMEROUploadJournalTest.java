@@ -0,0 +1,128 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link OMEROUploadJournal}.
+ */
+public class OMEROUploadJournalTest {
+
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = Files.createTempFile("omero-upload", ".journal");
+		Files.delete(file);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	/** Tests resuming from the pieces recorded by an earlier journal. */
+	@Test
+	public void testResume() throws IOException {
+		try (final OMEROUploadJournal journal = new OMEROUploadJournal(file,
+			"sig"))
+		{
+			assertFalse(journal.isResumed());
+			journal.start(12, 34);
+			journal.written(0, 0, 0, 0, 0, 64, 64);
+			journal.written(1, 0, 0, 0, 0, 64, 32);
+		}
+
+		try (final OMEROUploadJournal journal = new OMEROUploadJournal(file,
+			"sig"))
+		{
+			assertTrue(journal.isResumed());
+			assertEquals(12, journal.getImageID());
+			assertEquals(34, journal.getPixelsID());
+			assertEquals(2, journal.getWrittenCount());
+			assertTrue(journal.isWritten(0, 0, 0, 0, 0, 64, 64));
+			assertTrue(journal.isWritten(1, 0, 0, 0, 0, 64, 32));
+			assertFalse(journal.isWritten(1, 0, 0, 0, 32, 64, 32));
+			journal.written(1, 0, 0, 0, 32, 64, 32);
+		}
+
+		final OMEROUploadJournal journal = new OMEROUploadJournal(file, "sig");
+		assertEquals(3, journal.getWrittenCount());
+		journal.delete();
+		assertFalse(Files.exists(file));
+	}
+
+	/** Tests that a partially written last entry is ignored. */
+	@Test
+	public void testPartialEntry() throws IOException {
+		try (final OMEROUploadJournal journal = new OMEROUploadJournal(file,
+			"sig"))
+		{
+			journal.start(12, 34);
+			journal.written(0, 0, 0, 0, 0, 64, 64);
+		}
+		Files.write(file, "1 0 0 0 0 64 6".getBytes(StandardCharsets.UTF_8),
+			StandardOpenOption.APPEND);
+
+		try (final OMEROUploadJournal journal = new OMEROUploadJournal(file,
+			"sig"))
+		{
+			assertEquals(1, journal.getWrittenCount());
+			assertFalse(journal.isWritten(1, 0, 0, 0, 0, 64, 6));
+			journal.written(1, 0, 0, 0, 0, 64, 64);
+		}
+
+		final OMEROUploadJournal journal = new OMEROUploadJournal(file, "sig");
+		assertEquals(2, journal.getWrittenCount());
+		assertTrue(journal.isWritten(1, 0, 0, 0, 0, 64, 64));
+		journal.close();
+	}
+
+	/** Tests that a journal of a different image is rejected. */
+	@Test(expected = IOException.class)
+	public void testSignatureMismatch() throws IOException {
+		try (final OMEROUploadJournal journal = new OMEROUploadJournal(file,
+			"sig"))
+		{
+			journal.start(12, 34);
+		}
+		new OMEROUploadJournal(file, "other");
+	}
+
+}
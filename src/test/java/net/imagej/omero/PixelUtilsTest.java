@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link PixelUtils}.
+ */
+public class PixelUtilsTest {
+
+	/** Tests {@link PixelUtils#decode(byte[], Object)}. */
+	@Test
+	public void testDecode() {
+		final byte[] bytes = { 0, 1, 2, 3, -1, -2 };
+
+		final byte[] b = new byte[6];
+		PixelUtils.decode(bytes, b);
+		assertArrayEquals(bytes, b);
+
+		final short[] s = new short[3];
+		PixelUtils.decode(bytes, s);
+		assertArrayEquals(new short[] { 0x0001, 0x0203, (short) 0xfffe }, s);
+
+		final float[] f = new float[1];
+		PixelUtils.decode(new byte[] { 0x3f, (byte) 0x80, 0, 0 }, f);
+		assertEquals(1f, f[0], 0f);
+	}
+
+	/** Tests decoding little-endian bytes at an offset. */
+	@Test
+	public void testDecodeLittleEndian() {
+		final byte[] bytes = { 9, 9, 1, 0, 0, 0, 2, 0, 0, 0 };
+		final int[] ints = new int[2];
+		PixelUtils.decode(bytes, 2, ints, true);
+		assertArrayEquals(new int[] { 1, 2 }, ints);
+	}
+
+	/** Tests that {@link PixelUtils#encode} inverts {@link PixelUtils#decode}. */
+	@Test
+	public void testRoundTrip() {
+		final double[] doubles = { 1.5, -2.25, Double.MAX_VALUE };
+		final byte[] bytes = PixelUtils.encode(doubles);
+		assertEquals(24, bytes.length);
+		assertEquals(0x3f, bytes[0]); // big-endian: sign and exponent first
+		final double[] decoded = new double[3];
+		PixelUtils.decode(bytes, decoded);
+		assertArrayEquals(doubles, decoded, 0);
+
+		final short[] shorts = { 1, -1, 300 };
+		final byte[] little = new byte[6];
+		PixelUtils.encode(shorts, little, 0, true);
+		assertArrayEquals(new byte[] { 1, 0, -1, -1, 44, 1 }, little);
+	}
+
+	/** Tests {@link PixelUtils#copy} with and without swapping. */
+	@Test
+	public void testCopy() {
+		final byte[] src = { 1, 2, 3, 4, 5, 6, 7, 8 };
+		final byte[] dest = new byte[8];
+
+		PixelUtils.copy(src, 0, dest, 0, 8, 2, false);
+		assertArrayEquals(src, dest);
+
+		PixelUtils.copy(src, 0, dest, 0, 8, 2, true);
+		assertArrayEquals(new byte[] { 2, 1, 4, 3, 6, 5, 8, 7 }, dest);
+
+		PixelUtils.copy(src, 0, dest, 0, 8, 4, true);
+		assertArrayEquals(new byte[] { 4, 3, 2, 1, 8, 7, 6, 5 }, dest);
+
+		PixelUtils.copy(src, 4, dest, 0, 4, 4, true);
+		assertArrayEquals(new byte[] { 8, 7, 6, 5 }, Arrays.copyOf(dest, 4));
+	}
+
+	/** Tests {@link PixelUtils#makeArray}. */
+	@Test
+	public void testMakeArray() {
+		assertTrue(PixelUtils.makeArray(1, false, 4) instanceof byte[]);
+		assertTrue(PixelUtils.makeArray(2, false, 4) instanceof short[]);
+		assertTrue(PixelUtils.makeArray(4, true, 4) instanceof float[]);
+		assertEquals(4, ((double[]) PixelUtils.makeArray(8, true, 4)).length);
+	}
+
+	/** Tests decoding into an array of the wrong size. */
+	@Test(expected = IllegalArgumentException.class)
+	public void testDecodeMismatch() {
+		PixelUtils.decode(new byte[6], new int[1]);
+	}
+
+	/** Tests decoding into an unsupported array type. */
+	@Test(expected = IllegalArgumentException.class)
+	public void testDecodeUnsupported() {
+		PixelUtils.decode(new byte[8], new Object());
+	}
+
+}
@@ -0,0 +1,272 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import io.scif.DefaultImageMetadata;
+import io.scif.ImageMetadata;
+import io.scif.util.FormatTools;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+import net.imagej.axis.Axes;
+import net.imagej.axis.CalibratedAxis;
+import net.imagej.axis.DefaultLinearAxis;
+
+/**
+ * Benchmark of the per-plane overhead of mapping plane indices to OMERO's Z,
+ * C and T positions, comparing a fresh axis mapping per plane (as formerly
+ * done by every {@code openPlane} and {@code writePlane} call) against the
+ * cached axis mapping of {@link OMEROFormat.Metadata}.
+ * <p>
+ * Also compares reading cached tiles with fresh position arrays, lookup key
+ * and tile copy per plane (as formerly done by {@code openPlane}) against
+ * reusing them, as {@link OMEROFormat.Reader} now does, and predicting the
+ * planes of a sequential walk into new lists versus a reused array.
+ * </p>
+ * <p>
+ * NB: The read paths are replicas of the reader's steps, driving the real
+ * {@link OMEROFormat.AxisMap}, {@link OMEROTileCache} and
+ * {@link SequentialAccessDetector}; {@code Reader.openPlane} itself needs a
+ * live OMERO session, so is not timed here.
+ * </p>
+ */
+public final class PlaneIndexingBenchmark {
+
+	private static final int ITERATIONS = 2_000_000;
+
+	/** Number of cached tiles read per run. */
+	private static final int READ_ITERATIONS = 200_000;
+
+	/** Number of distinct tiles in the tile cache. */
+	private static final int TILE_COUNT = 100;
+
+	/** Width and height of each cached tile. */
+	private static final int TILE_SIZE = 64;
+
+	/** Number of planes predicted ahead of a sequential walk. */
+	private static final int PREFETCH_DEPTH = 4;
+
+	/** Keeps the JIT from discarding the benchmarked work. */
+	private static volatile long sink;
+
+	private PlaneIndexingBenchmark() {
+		// prevent instantiation of utility class
+	}
+
+	public static void main(final String... args) {
+		final ImageMetadata imageMeta = new DefaultImageMetadata();
+		imageMeta.setAxes(new CalibratedAxis[] { //
+			new DefaultLinearAxis(Axes.X), new DefaultLinearAxis(Axes.Y), //
+			new DefaultLinearAxis(Axes.CHANNEL), new DefaultLinearAxis(Axes.Z), //
+			new DefaultLinearAxis(Axes.TIME) }, new long[] { 512, 512, 3, 50, 20 });
+		imageMeta.setPlanarAxisCount(2);
+		final long planeCount = imageMeta.getPlaneCount();
+
+		// warm up both code paths
+		for (int i = 0; i < 3; i++) {
+			sink = runPerPlane(imageMeta, planeCount);
+			sink = runCached(imageMeta, planeCount);
+		}
+
+		report("fresh mapping per plane", () -> sink = runPerPlane(imageMeta,
+			planeCount), ITERATIONS);
+		report("cached mapping", () -> sink = runCached(imageMeta, planeCount),
+			ITERATIONS);
+
+		// cache one tile of each of the first planes
+		final OMEROTileCache cache = new OMEROTileCache();
+		final OMEROFormat.AxisMap axisMap = new OMEROFormat.AxisMap(imageMeta);
+		for (int i = 0; i < TILE_COUNT; i++) {
+			final int[] zct = axisMap.zct(i);
+			cache.put(new OMEROTileCache.Key("localhost", 4064, 0, 0, 1, -1, zct[0],
+				zct[1], zct[2], 0, 0, TILE_SIZE, TILE_SIZE), new byte[TILE_SIZE *
+					TILE_SIZE]);
+		}
+
+		for (int i = 0; i < 3; i++) {
+			sink = runFreshRead(axisMap, cache);
+			sink = runReusedRead(axisMap, cache);
+		}
+
+		report("fresh tile read", () -> sink = runFreshRead(axisMap, cache),
+			READ_ITERATIONS);
+		report("reused tile read", () -> sink = runReusedRead(axisMap, cache),
+			READ_ITERATIONS);
+
+		for (int i = 0; i < 3; i++) {
+			sink = runListWalk(planeCount);
+			sink = runReusedWalk(planeCount);
+		}
+
+		report("walk into new lists", () -> sink = runListWalk(planeCount),
+			READ_ITERATIONS);
+		report("walk into reused array", () -> sink = runReusedWalk(planeCount),
+			READ_ITERATIONS);
+	}
+
+	// -- Helper methods --
+
+	/** Maps plane indices the way the reader and writer used to. */
+	private static long runPerPlane(final ImageMetadata imageMeta,
+		final long planeCount)
+	{
+		long checksum = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			final OMEROFormat.AxisMap axisMap = new OMEROFormat.AxisMap(imageMeta);
+			final List<CalibratedAxis> nonPlanarAxes = imageMeta.getAxesNonPlanar();
+			final int zIndex = nonPlanarAxes.indexOf(axisMap.axis(Axes.Z));
+			final int cIndex = nonPlanarAxes.indexOf(axisMap.axis(Axes.CHANNEL));
+			final int tIndex = nonPlanarAxes.indexOf(axisMap.axis(Axes.TIME));
+			final long[] lengths = imageMeta.getAxesLengths(nonPlanarAxes);
+			final long[] pos = FormatTools.rasterToPosition(lengths, i % planeCount);
+			final int[] zct = { (int) pos[zIndex], (int) pos[cIndex],
+				(int) pos[tIndex] };
+			checksum += zct[0] + zct[1] + zct[2];
+		}
+		return checksum;
+	}
+
+	/** Maps plane indices using a single precomputed mapping. */
+	private static long runCached(final ImageMetadata imageMeta,
+		final long planeCount)
+	{
+		final OMEROFormat.AxisMap axisMap = new OMEROFormat.AxisMap(imageMeta);
+		final int[] zct = new int[3];
+		long checksum = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			axisMap.zct(i % planeCount, zct);
+			checksum += zct[0] + zct[1] + zct[2];
+		}
+		return checksum;
+	}
+
+	/**
+	 * Reads cached tiles the way the reader used to: with new position arrays,
+	 * crop region and lookup key per plane, and a new copy of each tile.
+	 */
+	private static long runFreshRead(final OMEROFormat.AxisMap axisMap,
+		final OMEROTileCache cache)
+	{
+		long checksum = 0;
+		for (int i = 0; i < READ_ITERATIONS; i++) {
+			final int[] pos = axisMap.zct(i % TILE_COUNT);
+			final int[] zct = { pos[0], pos[1], pos[2] };
+			final int[] crop = { 0, 0, TILE_SIZE, TILE_SIZE };
+			final OMEROTileCache.Key key = new OMEROTileCache.Key("localhost", 4064,
+				0, 0, 1, -1, zct[0], zct[1], zct[2], crop[0], crop[1], crop[2],
+				crop[3]);
+			final byte[] tile = cache.get(key);
+			checksum += tile.length + zct[0];
+		}
+		return checksum;
+	}
+
+	/**
+	 * Reads cached tiles the way the reader now does: reusing the position
+	 * arrays, crop region, lookup key and plane buffer.
+	 */
+	private static long runReusedRead(final OMEROFormat.AxisMap axisMap,
+		final OMEROTileCache cache)
+	{
+		final int[] pos = new int[3];
+		final int[] zct = new int[3];
+		final int[] crop = new int[4];
+		final OMEROTileCache.Key key = new OMEROTileCache.Key(null, 0, 0, 0, 0, 0,
+			0, 0, 0, 0, 0, 0, 0);
+		byte[] buffer = null;
+		long checksum = 0;
+		for (int i = 0; i < READ_ITERATIONS; i++) {
+			axisMap.zct(i % TILE_COUNT, pos);
+			System.arraycopy(pos, 0, zct, 0, 3);
+			crop[2] = crop[3] = TILE_SIZE;
+			key.set("localhost", 4064, 0, 0, 1, -1, zct[0], zct[1], zct[2], crop[0],
+				crop[1], crop[2], crop[3]);
+			buffer = cache.get(key, buffer);
+			checksum += buffer.length + zct[0];
+		}
+		return checksum;
+	}
+
+	/** Predicts the planes of a raster-order walk into a new list per plane. */
+	private static long runListWalk(final long planeCount) {
+		final SequentialAccessDetector detector = detector();
+		final int[] zct = new int[3];
+		long checksum = 0;
+		for (int i = 0; i < READ_ITERATIONS; i++) {
+			position(i % planeCount, zct);
+			final List<int[]> next = detector.access(-1, zct, 0, 0, TILE_SIZE,
+				TILE_SIZE);
+			checksum += next.size();
+		}
+		return checksum;
+	}
+
+	/** Predicts the planes of a raster-order walk into a reused array. */
+	private static long runReusedWalk(final long planeCount) {
+		final SequentialAccessDetector detector = detector();
+		final int[] zct = new int[3];
+		final int[][] next = new int[PREFETCH_DEPTH][3];
+		long checksum = 0;
+		for (int i = 0; i < READ_ITERATIONS; i++) {
+			position(i % planeCount, zct);
+			checksum += detector.access(-1, zct, 0, 0, TILE_SIZE, TILE_SIZE, next);
+		}
+		return checksum;
+	}
+
+	private static SequentialAccessDetector detector() {
+		return new SequentialAccessDetector(50, 3, 20, PREFETCH_DEPTH);
+	}
+
+	/** Stores the (Z, C, T) position of the given plane, in XYCZT order. */
+	private static void position(final long index, final int[] zct) {
+		zct[0] = (int) (index / 3 % 50);
+		zct[1] = (int) (index % 3);
+		zct[2] = (int) (index / 3 / 50);
+	}
+
+	private static void report(final String label, final Runnable task,
+		final int iterations)
+	{
+		final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		final long bytesBefore = allocatedBytes(threads);
+		final long start = System.nanoTime();
+		task.run();
+		final long elapsed = System.nanoTime() - start;
+		final long bytes = allocatedBytes(threads) - bytesBefore;
+		System.out.printf("%-24s %8.1f ns/plane %10.1f bytes/plane%n", label,
+			(double) elapsed / iterations, (double) bytes / iterations);
+	}
+
+	private static long allocatedBytes(final ThreadMXBean threads) {
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) return 0;
+		return ((com.sun.management.ThreadMXBean) threads)
+			.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+}
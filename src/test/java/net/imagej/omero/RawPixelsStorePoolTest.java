@@ -0,0 +1,198 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Mocked;
+import mockit.Verifications;
+import omero.ServerError;
+import omero.api.RawPixelsStorePrx;
+import omero.api.ServiceFactoryPrx;
+
+/**
+ * Tests {@link RawPixelsStorePool}.
+ */
+public class RawPixelsStorePoolTest {
+
+	@Mocked
+	private ServiceFactoryPrx session;
+
+	@Injectable
+	private RawPixelsStorePrx store;
+
+	@Injectable
+	private RawPixelsStorePrx otherStore;
+
+	/** Tests that a lease waits for a store to be released once exhausted. */
+	@Test
+	public void testLeaseWaits() throws Exception {
+		new Expectations() {
+
+			{
+				session.createRawPixelsStore();
+				result = store;
+			}
+		};
+		final RawPixelsStorePool pool = new RawPixelsStorePool(session, 1);
+		assertSame(store, pool.lease(1));
+		assertNull(pool.tryLease(1, RawPixelsStorePool.DEFAULT_LEVEL));
+
+		final Future<RawPixelsStorePrx> waiting = //
+			CompletableFuture.supplyAsync(() -> {
+				try {
+					return pool.lease(1);
+				}
+				catch (final ServerError exc) {
+					throw new IllegalStateException(exc);
+				}
+			});
+		try {
+			waiting.get(100, TimeUnit.MILLISECONDS);
+			throw new AssertionError("Lease did not wait for a free store");
+		}
+		catch (final TimeoutException exc) {
+			// NB: Expected; the only store is leased.
+		}
+
+		// the released store is handed over, still bound to the pixels
+		pool.release(store);
+		assertSame(store, waiting.get(5, TimeUnit.SECONDS));
+		new Verifications() {
+
+			{
+				session.createRawPixelsStore();
+				times = 1;
+				store.setPixelsId(1, false);
+				times = 1;
+			}
+		};
+	}
+
+	/**
+	 * Tests that a lease waiting on an exhausted pool can be interrupted, and
+	 * keeps the interrupt.
+	 */
+	@Test
+	public void testLeaseInterrupted() throws Exception {
+		new Expectations() {
+
+			{
+				session.createRawPixelsStore();
+				result = store;
+			}
+		};
+		final RawPixelsStorePool pool = new RawPixelsStorePool(session, 1);
+		pool.lease(1);
+
+		final CompletableFuture<Throwable> failure = new CompletableFuture<>();
+		final Thread thread = new Thread(() -> {
+			try {
+				pool.lease(1);
+				failure.complete(null);
+			}
+			catch (final ServerError exc) {
+				failure.complete(Thread.currentThread().isInterrupted() ? exc : null);
+			}
+		});
+		thread.start();
+		thread.interrupt();
+		final Throwable exc = failure.get(5, TimeUnit.SECONDS);
+		assertTrue(exc instanceof ServerError);
+		assertTrue(exc.getCause() instanceof InterruptedException);
+
+		// the interrupted lease took no store
+		pool.release(store);
+		assertSame(store, pool.tryLease(1, RawPixelsStorePool.DEFAULT_LEVEL));
+	}
+
+	/** Tests that an idle store already bound to the pixels is preferred. */
+	@Test
+	public void testBindings() throws ServerError {
+		new Expectations() {
+
+			{
+				session.createRawPixelsStore();
+				result = store;
+				result = otherStore;
+			}
+		};
+		final RawPixelsStorePool pool = new RawPixelsStorePool(session, 2);
+		final RawPixelsStorePrx first = pool.lease(1);
+		final RawPixelsStorePrx second = pool.lease(2, 0);
+		pool.release(first);
+		pool.release(second);
+
+		assertSame(first, pool.lease(1));
+		assertSame(second, pool.lease(2, 0));
+		new Verifications() {
+
+			{
+				session.createRawPixelsStore();
+				times = 2;
+				otherStore.setResolutionLevel(0);
+				times = 1;
+			}
+		};
+	}
+
+	/** Tests that a discarded store is closed and its permit returned. */
+	@Test
+	public void testDiscard() throws ServerError {
+		new Expectations() {
+
+			{
+				session.createRawPixelsStore();
+				result = store;
+				result = otherStore;
+			}
+		};
+		final RawPixelsStorePool pool = new RawPixelsStorePool(session, 1);
+		pool.discard(pool.lease(1));
+		assertSame(otherStore, pool.lease(1));
+		assertEquals(1, pool.getMaxSize());
+		new Verifications() {
+
+			{
+				store.close();
+				times = 1;
+			}
+		};
+	}
+
+}
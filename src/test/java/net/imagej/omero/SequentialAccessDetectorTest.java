@@ -0,0 +1,197 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2013 - 2018 Open Microscopy Environment:
+ * 	- Board of Regents of the University of Wisconsin-Madison
+ * 	- Glencoe Software, Inc.
+ * 	- University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imagej.omero;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link SequentialAccessDetector}.
+ */
+public class SequentialAccessDetectorTest {
+
+	/** Tests prediction of a forward walk through Z. */
+	@Test
+	public void testForwardWalk() {
+		final SequentialAccessDetector detector = //
+			new SequentialAccessDetector(10, 2, 3, 3);
+		assertTrue(access(detector, 0, 1, 2).isEmpty());
+		assertTrue(access(detector, 1, 1, 2).isEmpty());
+		final List<int[]> next = access(detector, 2, 1, 2);
+		assertEquals(3, next.size());
+		assertArrayEquals(new int[] { 3, 1, 2 }, next.get(0));
+		assertArrayEquals(new int[] { 4, 1, 2 }, next.get(1));
+		assertArrayEquals(new int[] { 5, 1, 2 }, next.get(2));
+
+		// predictions stop at the end of the axis
+		access(detector, 3, 1, 2);
+		access(detector, 4, 1, 2);
+		access(detector, 5, 1, 2);
+		access(detector, 6, 1, 2);
+		access(detector, 7, 1, 2);
+		final List<int[]> last = access(detector, 8, 1, 2);
+		assertEquals(1, last.size());
+		assertArrayEquals(new int[] { 9, 1, 2 }, last.get(0));
+	}
+
+	/** Tests prediction of a backward walk through T. */
+	@Test
+	public void testBackwardWalk() {
+		final SequentialAccessDetector detector = //
+			new SequentialAccessDetector(1, 1, 20, 2);
+		access(detector, 0, 0, 10);
+		access(detector, 0, 0, 9);
+		final List<int[]> next = access(detector, 0, 0, 8);
+		assertEquals(2, next.size());
+		assertArrayEquals(new int[] { 0, 0, 7 }, next.get(0));
+		assertArrayEquals(new int[] { 0, 0, 6 }, next.get(1));
+	}
+
+	/** Tests that random access does not trigger predictions. */
+	@Test
+	public void testRandomAccess() {
+		final SequentialAccessDetector detector = //
+			new SequentialAccessDetector(10, 10, 10, 4);
+		assertTrue(access(detector, 0, 0, 0).isEmpty());
+		assertTrue(access(detector, 1, 0, 0).isEmpty());
+		assertTrue(access(detector, 1, 1, 0).isEmpty());
+		assertTrue(access(detector, 1, 2, 1).isEmpty());
+		assertTrue(access(detector, 5, 2, 1).isEmpty());
+		assertTrue(access(detector, 6, 2, 1).isEmpty());
+		assertEquals(2, access(detector, 7, 2, 1).size());
+	}
+
+	/** Tests that reading a different tile region breaks a walk. */
+	@Test
+	public void testRegionChange() {
+		final SequentialAccessDetector detector = //
+			new SequentialAccessDetector(10, 1, 1, 4);
+		detector.access(new int[] { 0, 0, 0 }, 0, 0, 64, 64);
+		detector.access(new int[] { 1, 0, 0 }, 0, 0, 64, 64);
+		assertTrue(detector.access(new int[] { 2, 0, 0 }, 64, 0, 64, 64)
+			.isEmpty());
+	}
+
+	/** Tests prediction of a walk in raster order of a 2-channel stack. */
+	@Test
+	public void testRasterWalk() {
+		final SequentialAccessDetector detector = //
+			new SequentialAccessDetector(5, 2, 1, 2);
+		assertTrue(access(detector, 0, 0, 0).isEmpty());
+		assertTrue(access(detector, 0, 1, 0).isEmpty());
+		final List<int[]> next = access(detector, 1, 0, 0);
+		assertEquals(2, next.size());
+		assertArrayEquals(new int[] { 1, 1, 0 }, next.get(0));
+		assertArrayEquals(new int[] { 2, 0, 0 }, next.get(1));
+
+		// the walk continues across the next focal plane
+		assertEquals(2, access(detector, 1, 1, 0).size());
+
+		// a jump ends the walk
+		assertTrue(access(detector, 4, 0, 0).isEmpty());
+	}
+
+	/** Tests that tiles read in turn each keep their own walk. */
+	@Test
+	public void testInterleavedRegions() {
+		final SequentialAccessDetector detector = //
+			new SequentialAccessDetector(10, 1, 1, 1);
+		for (int z = 0; z < 2; z++) {
+			detector.access(new int[] { z, 0, 0 }, 0, 0, 64, 64);
+			detector.access(new int[] { z, 0, 0 }, 64, 0, 64, 64);
+		}
+		final List<int[]> left = //
+			detector.access(new int[] { 2, 0, 0 }, 0, 0, 64, 64);
+		final List<int[]> right = //
+			detector.access(new int[] { 2, 0, 0 }, 64, 0, 64, 64);
+		assertEquals(1, left.size());
+		assertArrayEquals(new int[] { 3, 0, 0 }, left.get(0));
+		assertEquals(1, right.size());
+		assertArrayEquals(new int[] { 3, 0, 0 }, right.get(0));
+	}
+
+	/** Tests that walks at different resolution levels are kept apart. */
+	@Test
+	public void testLevels() {
+		final SequentialAccessDetector detector = //
+			new SequentialAccessDetector(10, 1, 1, 1);
+		detector.access(1, new int[] { 0, 0, 0 }, 0, 0, 64, 64);
+		detector.access(1, new int[] { 1, 0, 0 }, 0, 0, 64, 64);
+
+		// the walk at the old level predicts nothing at the new one
+		assertTrue(detector.access(0, new int[] { 2, 0, 0 }, 0, 0, 64, 64)
+			.isEmpty());
+		assertTrue(detector.access(0, new int[] { 3, 0, 0 }, 0, 0, 64, 64)
+			.isEmpty());
+
+		// and continues where it left off when reads return to its level
+		final List<int[]> next = //
+			detector.access(1, new int[] { 2, 0, 0 }, 0, 0, 64, 64);
+		assertEquals(1, next.size());
+		assertArrayEquals(new int[] { 3, 0, 0 }, next.get(0));
+	}
+
+	/**
+	 * Tests that predictions fill the given array, limited to its length.
+	 */
+	@Test
+	public void testReusedOutput() {
+		final SequentialAccessDetector detector = //
+			new SequentialAccessDetector(10, 2, 3, 3);
+		final int[][] next = new int[2][3];
+		assertEquals(0, detector.access(0, new int[] { 4, 0, 0 }, 0, 0, 64, 64,
+			next));
+		assertEquals(0, detector.access(0, new int[] { 4, 1, 0 }, 0, 0, 64, 64,
+			next));
+		assertEquals(2, detector.access(0, new int[] { 5, 0, 0 }, 0, 0, 64, 64,
+			next));
+		assertArrayEquals(new int[] { 5, 1, 0 }, next[0]);
+		assertArrayEquals(new int[] { 6, 0, 0 }, next[1]);
+
+		// near the end of the axis, fewer planes are predicted
+		final int[][] all = new int[3][3];
+		for (int z = 5; z < 8; z++) {
+			detector.access(0, new int[] { z, 0, 1 }, 64, 0, 64, 64, all);
+		}
+		assertEquals(1, detector.access(0, new int[] { 8, 0, 1 }, 64, 0, 64, 64,
+			all));
+		assertArrayEquals(new int[] { 9, 0, 1 }, all[0]);
+	}
+
+	// -- Helper methods --
+
+	private List<int[]> access(final SequentialAccessDetector detector,
+		final int z, final int c, final int t)
+	{
+		return detector.access(new int[] { z, c, t }, 0, 0, 512, 512);
+	}
+
+}